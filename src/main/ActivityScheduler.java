@@ -0,0 +1,238 @@
+package main;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class ActivityScheduler {
+
+    private static final int CHUNK = 4096;
+    private static final byte KEEP = 0, DROP = 1, EXPOSE = 2;
+
+    private final Epidemic epidemic;
+    private final Organism[] agents;
+    private final int width;
+    private final FenwickGrid infectious;
+    private final int[] counts = new int[State.VALUES.length];
+
+    private int[] active = new int[64];
+    private int activeCount;
+    private final boolean[] isActive;
+    private byte[] decisions = new byte[64];
+    private int[] pressures = new int[64];
+
+    private int[] sources = new int[64];
+    private int sourceCount;
+
+    private final int[][] wheel;
+    private final int[] wheelCount;
+    private final int wheelMask;
+
+    public ActivityScheduler(Epidemic epidemic) {
+        this.epidemic = epidemic;
+        this.agents = epidemic.getAgents();
+        Grid grid = epidemic.getGrid();
+        this.width = grid.getWidth();
+        infectious = new FenwickGrid(width, grid.getHeight());
+        isActive = new boolean[agents.length];
+        int size = Integer.highestOneBit(Math.max(1, epidemic.getLatentSteps())) * 2;
+        wheel = new int[size][];
+        wheelCount = new int[size];
+        wheelMask = size - 1;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new int[16];
+        }
+        for (Organism org : agents) {
+            counts[org.getState().ordinal()]++;
+            if (org.getState() == State.INFECTIOUS) {
+                addSource(org);
+            } else if (org.getState() == State.EXPOSED) {
+                schedule(org);
+            }
+        }
+        for (int s = 0; s < sourceCount; s++) {
+            wakeAround(sources[s]);
+        }
+    }
+
+    void step(int current) {
+        decideSusceptible(current);
+        applySusceptible(current);
+        advanceSources(current);
+        advanceWheel(current);
+    }
+
+    private void decideSusceptible(int current) {
+        if (decisions.length < activeCount) {
+            decisions = new byte[active.length];
+            pressures = new int[active.length];
+        }
+        int radius = epidemic.getRadius();
+        int chunks = (activeCount + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int end = Math.min(activeCount, (chunk + 1) * CHUNK);
+            for (int i = chunk * CHUNK; i < end; i++) {
+                Organism org = agents[active[i]];
+                if (org.getState() != State.SUSCEPTIBLE) {
+                    decisions[i] = DROP;
+                    continue;
+                }
+                int cell = epidemic.getCell(org.getId());
+                int row = cell / width;
+                int column = cell % width;
+                int pressure = infectious.count(row - radius, column - radius, row + radius, column + radius);
+                pressures[i] = pressure;
+                if (pressure == 0) {
+                    decisions[i] = DROP;
+                } else if (epidemic.infects(org.getId(), pressure, epidemic.regionOf(row, column), current)) {
+                    decisions[i] = EXPOSE;
+                } else {
+                    decisions[i] = KEEP;
+                }
+            }
+        });
+    }
+
+    private void applySusceptible(int current) {
+        InfectionTree recorder = epidemic.getRecorder();
+        int radius = epidemic.getRadius();
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            int id = active[i];
+            if (decisions[i] == KEEP) {
+                active[kept++] = id;
+                continue;
+            }
+            isActive[id] = false;
+            if (decisions[i] == EXPOSE) {
+                Organism org = agents[id];
+                org.setState(State.EXPOSED, current);
+                counts[State.SUSCEPTIBLE.ordinal()]--;
+                counts[State.EXPOSED.ordinal()]++;
+                schedule(org);
+                if (recorder != null) {
+                    int cell = epidemic.getCell(id);
+                    int row = cell / width;
+                    int column = cell % width;
+                    int infector = infectious.find(row - radius, column - radius, row + radius, column + radius,
+                            epidemic.infectorRank(id, pressures[i], current));
+                    Organism source = epidemic.getGrid().getOrg(infector / width, infector % width);
+                    recorder.record(id, source.getId(), current);
+                }
+            }
+        }
+        activeCount = kept;
+    }
+
+    private void advanceSources(int current) {
+        int kept = 0;
+        for (int s = 0; s < sourceCount; s++) {
+            Organism org = agents[sources[s]];
+            int cell = epidemic.getCell(org.getId());
+            if (org.getState() == State.INFECTIOUS) {
+                if (!epidemic.recovers(org, epidemic.regionOf(cell / width, cell % width), current)) {
+                    sources[kept++] = org.getId();
+                    continue;
+                }
+                org.setState(State.RECOVERED, current);
+                counts[State.INFECTIOUS.ordinal()]--;
+                counts[State.RECOVERED.ordinal()]++;
+            }
+            infectious.add(cell / width, cell % width, -1);
+        }
+        sourceCount = kept;
+    }
+
+    private void advanceWheel(int current) {
+        int bucket = current & wheelMask;
+        int[] due = wheel[bucket];
+        int count = wheelCount[bucket];
+        wheel[bucket] = new int[Math.max(16, count)];
+        wheelCount[bucket] = 0;
+        for (int i = 0; i < count; i++) {
+            Organism org = agents[due[i]];
+            if (org.getState() != State.EXPOSED) {
+                continue;
+            }
+            if (!epidemic.becomesInfectious(org, current)) {
+                schedule(org);
+                continue;
+            }
+            org.setState(State.INFECTIOUS, current);
+            counts[State.EXPOSED.ordinal()]--;
+            counts[State.INFECTIOUS.ordinal()]++;
+            addSource(org);
+            wakeAround(org.getId());
+        }
+    }
+
+    private void schedule(Organism org) {
+        int bucket = (org.getStateStep() + epidemic.getLatentSteps()) & wheelMask;
+        if (wheelCount[bucket] == wheel[bucket].length) {
+            wheel[bucket] = Arrays.copyOf(wheel[bucket], wheel[bucket].length * 2);
+        }
+        wheel[bucket][wheelCount[bucket]++] = org.getId();
+    }
+
+    private void addSource(Organism org) {
+        if (sourceCount == sources.length) {
+            sources = Arrays.copyOf(sources, sourceCount * 2);
+        }
+        sources[sourceCount++] = org.getId();
+        int cell = epidemic.getCell(org.getId());
+        infectious.add(cell / width, cell % width, 1);
+    }
+
+    private void wakeAround(int id) {
+        Grid grid = epidemic.getGrid();
+        int radius = epidemic.getRadius();
+        int cell = epidemic.getCell(id);
+        int row = cell / width;
+        int column = cell % width;
+        int bottom = Math.min(row + radius, grid.getHeight() - 1);
+        int right = Math.min(column + radius, width - 1);
+        for (int r = Math.max(row - radius, 0); r <= bottom; r++) {
+            for (int c = Math.max(column - radius, 0); c <= right; c++) {
+                Organism org = grid.getOrg(r, c);
+                if (org != null && org.getState() == State.SUSCEPTIBLE && !isActive[org.getId()]) {
+                    isActive[org.getId()] = true;
+                    if (activeCount == active.length) {
+                        active = Arrays.copyOf(active, activeCount * 2);
+                    }
+                    active[activeCount++] = org.getId();
+                }
+            }
+        }
+    }
+
+    void changed(Organism org, State old) {
+        counts[old.ordinal()]--;
+        counts[org.getState().ordinal()]++;
+        if (org.getState() == State.EXPOSED) {
+            schedule(org);
+        } else if (org.getState() == State.INFECTIOUS) {
+            addSource(org);
+            wakeAround(org.getId());
+        }
+    }
+
+    int count(State state) {
+        return counts[state.ordinal()];
+    }
+
+    int countInfectious(int top, int left, int bottom, int right) {
+        return infectious.count(top, left, bottom, right);
+    }
+
+    int[] getSources() {
+        return sources;
+    }
+
+    int getSourceCount() {
+        return sourceCount;
+    }
+
+    public int getActiveCount() {
+        return activeCount + sourceCount;
+    }
+
+}
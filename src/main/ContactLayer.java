@@ -0,0 +1,9 @@
+package main;
+
+public enum ContactLayer {
+
+    HOUSEHOLD, WORKPLACE, SCHOOL;
+
+    public static final ContactLayer[] VALUES = values();
+
+}
@@ -0,0 +1,420 @@
+package main;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class ContactNetwork {
+
+    private static final int EDGES_PER_RANGE = 1 << 16;
+
+    private final int vertices;
+    private final int[] offsets;
+    private final int[] targets;
+    private final float[] weights;
+    private final int[] ranges;
+    private int[] seen;
+    private int sweepStamp;
+
+    public ContactNetwork(int[] offsets, int[] targets, float[] weights) {
+        if (offsets.length == 0 || offsets[offsets.length - 1] != targets.length) {
+            throw new IllegalArgumentException("Offsets do not cover " + targets.length + " targets");
+        }
+        if (weights != null && weights.length != targets.length) {
+            throw new IllegalArgumentException("Expected " + targets.length + " weights, got " + weights.length);
+        }
+        this.vertices = offsets.length - 1;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.ranges = splitByEdges();
+    }
+
+    private int[] splitByEdges() {
+        int parts = (int) Math.max(1, Math.min(vertices, (long) targets.length / EDGES_PER_RANGE));
+        int[] bounds = new int[parts + 1];
+        for (int part = 1; part < parts; part++) {
+            long edge = (long) targets.length * part / parts;
+            int vertex = Arrays.binarySearch(offsets, 0, vertices + 1, (int) edge);
+            if (vertex < 0) {
+                vertex = -vertex - 1;
+            }
+            bounds[part] = Math.max(bounds[part - 1], Math.min(vertex, vertices));
+        }
+        bounds[parts] = vertices;
+        return bounds;
+    }
+
+    public static ContactNetwork fromEdges(int vertices, int[] from, int[] to, float[] weight) {
+        int[] offsets = new int[vertices + 1];
+        for (int i = 0; i < from.length; i++) {
+            offsets[from[i] + 1]++;
+            offsets[to[i] + 1]++;
+        }
+        for (int v = 0; v < vertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] cursor = Arrays.copyOf(offsets, vertices);
+        int[] targets = new int[offsets[vertices]];
+        float[] weights = weight == null ? null : new float[targets.length];
+        for (int i = 0; i < from.length; i++) {
+            int a = cursor[from[i]]++;
+            int b = cursor[to[i]]++;
+            targets[a] = to[i];
+            targets[b] = from[i];
+            if (weights != null) {
+                weights[a] = weight[i];
+                weights[b] = weight[i];
+            }
+        }
+        return new ContactNetwork(offsets, targets, weights);
+    }
+
+    public static ContactNetwork cliques(int vertices, int groupSize) {
+        int[] offsets = new int[vertices + 1];
+        for (int v = 0; v < vertices; v++) {
+            int start = v / groupSize * groupSize;
+            int end = Math.min(start + groupSize, vertices);
+            offsets[v + 1] = offsets[v] + end - start - 1;
+        }
+        int[] targets = new int[offsets[vertices]];
+        for (int v = 0; v < vertices; v++) {
+            int start = v / groupSize * groupSize;
+            int end = Math.min(start + groupSize, vertices);
+            int i = offsets[v];
+            for (int u = start; u < end; u++) {
+                if (u != v) {
+                    targets[i++] = u;
+                }
+            }
+        }
+        return new ContactNetwork(offsets, targets, null);
+    }
+
+    public static ContactNetwork load(Path file) throws IOException {
+        int[] degrees = new int[1024];
+        int vertices = 0;
+        long edges = 0;
+        boolean weighted = false;
+        try (EdgeReader reader = new EdgeReader(file)) {
+            while (reader.next()) {
+                int max = Math.max(reader.from, reader.to);
+                if (max >= degrees.length) {
+                    degrees = Arrays.copyOf(degrees, Math.max(max + 1, degrees.length * 2));
+                }
+                vertices = Math.max(vertices, max + 1);
+                degrees[reader.from]++;
+                degrees[reader.to]++;
+                weighted |= reader.hasWeight;
+                edges += 2;
+            }
+        }
+        if (edges > Integer.MAX_VALUE - 8) {
+            throw new IOException(file + " has too many edges: " + edges / 2);
+        }
+        int[] offsets = new int[vertices + 1];
+        for (int v = 0; v < vertices; v++) {
+            offsets[v + 1] = offsets[v] + degrees[v];
+        }
+        int[] cursor = degrees;
+        System.arraycopy(offsets, 0, cursor, 0, vertices);
+        int[] targets = new int[(int) edges];
+        float[] weights = weighted ? new float[(int) edges] : null;
+        try (EdgeReader reader = new EdgeReader(file)) {
+            while (reader.next()) {
+                int a = cursor[reader.from]++;
+                int b = cursor[reader.to]++;
+                targets[a] = reader.to;
+                targets[b] = reader.from;
+                if (weights != null) {
+                    weights[a] = reader.weight;
+                    weights[b] = reader.weight;
+                }
+            }
+        }
+        return new ContactNetwork(offsets, targets, weights);
+    }
+
+    public int sweep(Organism[] agents, double transmissionProbability, long seed, int step) {
+        return sweep(agents, transmissionProbability, seed, step, null);
+    }
+
+    public int sweep(Organism[] agents, double transmissionProbability, long seed, int step,
+            InfectionTree recorder) {
+        int[] events = sweepEvents(agents, transmissionProbability, seed, step);
+        for (int i = 1; recorder != null && i <= 2 * events[0]; i += 2) {
+            recorder.record(events[i], events[i + 1], step);
+        }
+        return events[0];
+    }
+
+    int[] sweepEvents(Organism[] agents, double transmissionProbability, long seed, int step) {
+        int[][] infections = IntStream.range(0, ranges.length - 1).parallel()
+                .mapToObj(range -> sweepRange(agents, transmissionProbability, seed, step, range))
+                .toArray(int[][]::new);
+        int[] events = { 0 };
+        for (int[] range : infections) {
+            for (int i = 1; i <= 2 * range[0]; i += 2) {
+                events = append(events, range[i], range[i + 1]);
+            }
+        }
+        return events;
+    }
+
+    int[] sweepFrontier(Organism[] agents, double transmissionProbability, long seed, int step, int[] sources,
+            int sourceCount) {
+        if (seen == null || seen.length < vertices) {
+            seen = new int[vertices];
+            sweepStamp = 0;
+        }
+        if (++sweepStamp == 0) {
+            Arrays.fill(seen, 0);
+            sweepStamp = 1;
+        }
+        int[] events = { 0 };
+        for (int s = 0; s < sourceCount; s++) {
+            int source = sources[s];
+            if (source >= vertices || agents[source].getState() != State.INFECTIOUS) {
+                continue;
+            }
+            for (int e = offsets[source]; e < offsets[source + 1]; e++) {
+                int v = targets[e];
+                if (seen[v] != sweepStamp) {
+                    seen[v] = sweepStamp;
+                    events = tryInfect(agents, v, transmissionProbability, seed, step, events);
+                }
+            }
+        }
+        return events;
+    }
+
+    private int[] sweepRange(Organism[] agents, double transmissionProbability, long seed, int step, int range) {
+        int[] events = { 0 };
+        for (int v = ranges[range]; v < ranges[range + 1]; v++) {
+            events = tryInfect(agents, v, transmissionProbability, seed, step, events);
+        }
+        return events;
+    }
+
+    private int[] tryInfect(Organism[] agents, int v, double transmissionProbability, long seed, int step,
+            int[] events) {
+        Organism org = agents[v];
+        if (org == null || !org.isAlive() || org.getState() != State.SUSCEPTIBLE) {
+            return events;
+        }
+        double escape = 1;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            Organism contact = agents[targets[e]];
+            if (contact != null && contact.isAlive() && contact.getState() == State.INFECTIOUS) {
+                escape *= 1 - transmissionProbability * (weights == null ? 1 : weights[e]);
+            }
+        }
+        if (escape < 1 && CounterRandom.uniform(seed, step, v, 0) >= escape) {
+            org.setState(State.EXPOSED, step);
+            return append(events, v, pickInfector(agents, v, transmissionProbability,
+                    CounterRandom.uniform(seed, step, v, 1)));
+        }
+        return events;
+    }
+
+    private static int[] append(int[] events, int infectee, int infector) {
+        int n = events[0]++;
+        if (2 * n + 3 > events.length) {
+            events = Arrays.copyOf(events, 2 * events.length + 1);
+        }
+        events[2 * n + 1] = infectee;
+        events[2 * n + 2] = infector;
+        return events;
+    }
+
+    private int pickInfector(Organism[] agents, int v, double transmissionProbability, double uniform) {
+        double total = 0;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            total += infectionWeight(agents, e, transmissionProbability);
+        }
+        double target = uniform * total;
+        int last = -1;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+            double weight = infectionWeight(agents, e, transmissionProbability);
+            if (weight > 0) {
+                last = targets[e];
+                target -= weight;
+                if (target < 0) {
+                    break;
+                }
+            }
+        }
+        return last;
+    }
+
+    private double infectionWeight(Organism[] agents, int e, double transmissionProbability) {
+        Organism contact = agents[targets[e]];
+        if (contact == null || !contact.isAlive() || contact.getState() != State.INFECTIOUS) {
+            return 0;
+        }
+        return transmissionProbability * (weights == null ? 1 : weights[e]);
+    }
+
+    public int getVertexCount() {
+        return vertices;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    public int degree(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    public float getWeight(int edge) {
+        return weights == null ? 1 : weights[edge];
+    }
+
+    public int firstEdge(int vertex) {
+        return offsets[vertex];
+    }
+
+    public int endEdge(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    private static class EdgeReader implements AutoCloseable {
+
+        private final Path file;
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position, limit;
+        private long line;
+
+        int from, to;
+        float weight;
+        boolean hasWeight;
+
+        EdgeReader(Path file) throws IOException {
+            this.file = file;
+            this.in = new FileInputStream(file.toFile());
+        }
+
+        boolean next() throws IOException {
+            while (true) {
+                int c = skipBlanks();
+                if (c < 0) {
+                    return false;
+                }
+                line++;
+                if (c == '\n' || c == '\r') {
+                    position++;
+                    continue;
+                }
+                if (c == '#' || c == '%') {
+                    skipLine();
+                    continue;
+                }
+                from = readInt();
+                if (skipBlanks() < 0) {
+                    throw error("missing target");
+                }
+                to = readInt();
+                c = skipBlanks();
+                hasWeight = c >= 0 && c != '\n' && c != '\r' && c != '#';
+                weight = hasWeight ? readFloat() : 1;
+                skipLine();
+                return true;
+            }
+        }
+
+        private int peek() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+
+        private int skipBlanks() throws IOException {
+            int c;
+            while ((c = peek()) == ' ' || c == '\t' || c == ',') {
+                position++;
+            }
+            return c;
+        }
+
+        private void skipLine() throws IOException {
+            int c;
+            while ((c = peek()) >= 0) {
+                position++;
+                if (c == '\n') {
+                    return;
+                }
+            }
+        }
+
+        private int readInt() throws IOException {
+            long value = 0;
+            int digits = 0;
+            int c;
+            while ((c = peek()) >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                position++;
+                if (++digits > 10 || value > Integer.MAX_VALUE) {
+                    throw error("vertex out of range");
+                }
+            }
+            if (digits == 0) {
+                throw error(c < 0 ? "unexpected end of file" : "expected a vertex, found '" + (char) c + "'");
+            }
+            return (int) value;
+        }
+
+        private float readFloat() throws IOException {
+            double value = 0;
+            double scale = 0;
+            int digits = 0;
+            int c;
+            while ((c = peek()) >= '0' && c <= '9' || c == '.') {
+                position++;
+                if (c == '.') {
+                    if (scale != 0) {
+                        throw error("malformed weight");
+                    }
+                    scale = 1;
+                } else {
+                    value = value * 10 + (c - '0');
+                    scale *= 10;
+                    digits++;
+                }
+            }
+            if (digits == 0) {
+                throw error("malformed weight");
+            }
+            return (float) (scale == 0 ? value : value / scale);
+        }
+
+        private IOException error(String message) {
+            return new IOException(file + ":" + line + ": " + message);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+}
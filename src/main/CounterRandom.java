@@ -0,0 +1,21 @@
+package main;
+
+final class CounterRandom {
+
+    private CounterRandom() {
+    }
+
+    static double uniform(long seed, int step, int id, int stream) {
+        long z = mix(seed + 0x632BE59BD9B4E019L * (stream + 1));
+        z = mix(z ^ (((long) step << 32) | (id & 0xFFFFFFFFL)));
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,397 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class Epidemic {
+
+    private final Grid grid;
+    private final NeighbourhoodTable table;
+    private final long seed;
+    private int step;
+    private Organism[] agents = new Organism[0];
+    private final ContactNetwork[] networks = new ContactNetwork[ContactLayer.VALUES.length];
+    private final double[] layerTransmission = new double[ContactLayer.VALUES.length];
+
+    private int radius = 2;
+    private double transmissionProbability = 0.03;
+    private int latentSteps = 3;
+    private int infectiousSteps = 7;
+    private InfectionTree recorder;
+
+    private int regionSize = 32;
+    private int regionsPerRow;
+    double[] regionTransmission;
+    double[] regionTesting;
+    final double[] layerScale = new double[ContactLayer.VALUES.length];
+    private InterventionSchedule.Table interventions;
+
+    private int[] cellOf = new int[0];
+    private ActivityScheduler scheduler;
+    private boolean tableStale;
+
+    public Epidemic(Grid grid, long seed) {
+        this.grid = grid;
+        this.seed = seed;
+        table = new NeighbourhoodTable(grid.getWidth(), grid.getHeight());
+        setRegionSize(regionSize);
+    }
+
+    public void populate(double density, int infected) {
+        SplittableRandom random = new SplittableRandom(seed);
+        grid.clear();
+        List<Organism> placed = new ArrayList<>();
+        for (int row = 0; row < grid.getHeight(); row++) {
+            for (int column = 0; column < grid.getWidth(); column++) {
+                if (random.nextDouble() < density) {
+                    Person person = new Person();
+                    grid.place(person, row, column);
+                    placed.add(person);
+                }
+            }
+        }
+        agents = placed.toArray(new Organism[0]);
+        cellOf = new int[agents.length];
+        int id = 0;
+        for (int row = 0; row < grid.getHeight(); row++) {
+            for (int column = 0; column < grid.getWidth(); column++) {
+                Organism org = grid.getOrg(row, column);
+                if (org != null) {
+                    org.setId(id);
+                    cellOf[id++] = row * grid.getWidth() + column;
+                }
+            }
+        }
+        infected = Math.min(infected, agents.length);
+        while (infected > 0) {
+            Organism org = grid.getOrg(random.nextInt(grid.getHeight()), random.nextInt(grid.getWidth()));
+            if (org != null && org.getState() == State.SUSCEPTIBLE) {
+                org.setState(State.INFECTIOUS, 0);
+                infected--;
+            }
+        }
+        step = 0;
+        recorder = null;
+        setInterventions(null);
+        table.rebuild(grid);
+        tableStale = false;
+        if (scheduler != null) {
+            scheduler = new ActivityScheduler(this);
+        }
+    }
+
+    public void step() {
+        if (interventions != null) {
+            interventions.apply(step + 1);
+        }
+        int current = ++step;
+        for (ContactLayer layer : ContactLayer.VALUES) {
+            ContactNetwork network = networks[layer.ordinal()];
+            if (network == null || layerScale[layer.ordinal()] <= 0) {
+                continue;
+            }
+            double probability = layerTransmission[layer.ordinal()] * layerScale[layer.ordinal()];
+            long layerSeed = seed + layer.ordinal() + 1;
+            int[] events = scheduler == null ? network.sweepEvents(agents, probability, layerSeed, current)
+                    : network.sweepFrontier(agents, probability, layerSeed, current, scheduler.getSources(),
+                            scheduler.getSourceCount());
+            for (int i = 1; i <= 2 * events[0]; i += 2) {
+                if (recorder != null) {
+                    recorder.record(events[i], events[i + 1], current);
+                }
+                if (scheduler != null) {
+                    scheduler.changed(agents[events[i]], State.SUSCEPTIBLE);
+                }
+            }
+        }
+        if (scheduler != null) {
+            scheduler.step(current);
+            tableStale = true;
+        } else {
+            int[][] infections = IntStream.range(0, grid.getHeight()).parallel()
+                    .mapToObj(row -> stepRow(row, current)).toArray(int[][]::new);
+            if (recorder != null) {
+                for (int[] events : infections) {
+                    for (int i = 1; i < events[0]; i += 2) {
+                        recorder.record(events[i], events[i + 1], current);
+                    }
+                }
+            }
+            table.rebuild(grid);
+        }
+        if (recorder != null) {
+            recorder.endStep(current);
+        }
+    }
+
+    private int[] stepRow(int row, int current) {
+        int regionRow = row / regionSize * regionsPerRow;
+        int[] events = NO_EVENTS;
+        for (int column = 0; column < grid.getWidth(); column++) {
+            Organism org = grid.getOrg(row, column);
+            if (org == null || !org.isAlive()) {
+                continue;
+            }
+            int region = regionRow + column / regionSize;
+            switch (org.getState()) {
+            case SUSCEPTIBLE:
+                int pressure = table.countAround(State.INFECTIOUS, row, column, radius);
+                if (pressure > 0 && infects(org.getId(), pressure, region, current)) {
+                    org.setState(State.EXPOSED, current);
+                    if (recorder != null) {
+                        int cell = table.find(State.INFECTIOUS, row - radius, column - radius, row + radius,
+                                column + radius, infectorRank(org.getId(), pressure, current));
+                        Organism infector = grid.getOrg(cell / grid.getWidth(), cell % grid.getWidth());
+                        events = append(events, org.getId(), infector.getId());
+                    }
+                }
+                break;
+            case EXPOSED:
+                if (becomesInfectious(org, current)) {
+                    org.setState(State.INFECTIOUS, current);
+                }
+                break;
+            case INFECTIOUS:
+                if (recovers(org, region, current)) {
+                    org.setState(State.RECOVERED, current);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return events;
+    }
+
+    boolean infects(int id, int pressure, int region, int current) {
+        double escape = 1 - transmissionProbability * regionTransmission[region];
+        return CounterRandom.uniform(seed, current, id, 0) < 1 - Math.pow(escape, pressure);
+    }
+
+    int infectorRank(int id, int pressure, int current) {
+        return Math.min(pressure - 1, (int) (CounterRandom.uniform(seed, current, id, 1) * pressure));
+    }
+
+    boolean becomesInfectious(Organism org, int current) {
+        return current - org.getStateStep() >= latentSteps;
+    }
+
+    boolean recovers(Organism org, int region, int current) {
+        return current - org.getStateStep() >= infectiousSteps || regionTesting[region] > 0
+                && CounterRandom.uniform(seed, current, org.getId(), 2) < regionTesting[region];
+    }
+
+    private static final int[] NO_EVENTS = { 1 };
+
+    private static int[] append(int[] events, int infectee, int infector) {
+        if (events == NO_EVENTS) {
+            events = new int[9];
+            events[0] = 1;
+        } else if (events[0] + 2 > events.length) {
+            events = Arrays.copyOf(events, events.length * 2 + 1);
+        }
+        events[events[0]++] = infectee;
+        events[events[0]++] = infector;
+        return events;
+    }
+
+    private void recordSeeds() {
+        for (Organism org : agents) {
+            if (org.getState() != State.SUSCEPTIBLE && recorder.getInfectionStep(org.getId()) == InfectionTree.NONE) {
+                recorder.record(org.getId(), InfectionTree.NONE, step);
+            }
+        }
+        recorder.endStep(step);
+    }
+
+    public void setRecorder(InfectionTree recorder) {
+        this.recorder = recorder;
+        if (recorder != null) {
+            recordSeeds();
+        }
+    }
+
+    public InfectionTree getRecorder() {
+        return recorder;
+    }
+
+    public void setContactNetwork(ContactLayer layer, ContactNetwork network, double transmissionProbability) {
+        if (network != null && network.getVertexCount() > agents.length) {
+            throw new IllegalArgumentException(
+                    "Network has " + network.getVertexCount() + " vertices, but there are only " + agents.length + " agents");
+        }
+        networks[layer.ordinal()] = network;
+        layerTransmission[layer.ordinal()] = transmissionProbability;
+    }
+
+    public ContactNetwork getContactNetwork(ContactLayer layer) {
+        return networks[layer.ordinal()];
+    }
+
+    public Organism[] getAgents() {
+        return agents;
+    }
+
+    public int count(State state) {
+        return scheduler != null ? scheduler.count(state) : getTable().total(state);
+    }
+
+    public void setActivityScheduling(boolean enabled) {
+        scheduler = enabled ? new ActivityScheduler(this) : null;
+        if (!enabled) {
+            getTable();
+        }
+    }
+
+    public boolean isActivityScheduling() {
+        return scheduler != null;
+    }
+
+    public int getActiveCount() {
+        return scheduler != null ? scheduler.getActiveCount() : agents.length;
+    }
+
+    void changeState(Organism org, State state, int step) {
+        State old = org.getState();
+        org.setState(state, step);
+        if (scheduler != null) {
+            scheduler.changed(org, old);
+        }
+    }
+
+    int getCell(int id) {
+        return cellOf[id];
+    }
+
+    int getLatentSteps() {
+        return latentSteps;
+    }
+
+    public void setRegionSize(int regionSize) {
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("Region size must be positive: " + regionSize);
+        }
+        this.regionSize = regionSize;
+        regionsPerRow = (grid.getWidth() + regionSize - 1) / regionSize;
+        int regions = regionsPerRow * ((grid.getHeight() + regionSize - 1) / regionSize);
+        regionTransmission = new double[regions];
+        regionTesting = new double[regions];
+        Arrays.fill(regionTransmission, 1);
+        Arrays.fill(layerScale, 1);
+        interventions = null;
+    }
+
+    public int getRegionSize() {
+        return regionSize;
+    }
+
+    public int getRegionCount() {
+        return regionTransmission.length;
+    }
+
+    public int regionOf(int row, int column) {
+        return row / regionSize * regionsPerRow + column / regionSize;
+    }
+
+    public int getRegionTop(int region) {
+        return region / regionsPerRow * regionSize;
+    }
+
+    public int getRegionLeft(int region) {
+        return region % regionsPerRow * regionSize;
+    }
+
+    public int countInRegion(State state, int region) {
+        int top = getRegionTop(region);
+        int left = getRegionLeft(region);
+        if (scheduler != null && state == State.INFECTIOUS) {
+            return scheduler.countInfectious(top, left, top + regionSize - 1, left + regionSize - 1);
+        }
+        return getTable().count(state, top, left, top + regionSize - 1, left + regionSize - 1);
+    }
+
+    public boolean expose(int row, int column) {
+        Organism org = grid.getOrg(row, column);
+        if (org == null || !org.isAlive() || org.getState() != State.SUSCEPTIBLE) {
+            return false;
+        }
+        changeState(org, State.EXPOSED, step + 1);
+        if (recorder != null) {
+            recorder.record(org.getId(), InfectionTree.NONE, step + 1);
+        }
+        return true;
+    }
+
+    public double getRegionTransmission(int region) {
+        return regionTransmission[region];
+    }
+
+    public double getRegionTesting(int region) {
+        return regionTesting[region];
+    }
+
+    public double getLayerScale(ContactLayer layer) {
+        return layerScale[layer.ordinal()];
+    }
+
+    public void setInterventions(InterventionSchedule schedule) {
+        Arrays.fill(regionTransmission, 1);
+        Arrays.fill(regionTesting, 0);
+        Arrays.fill(layerScale, 1);
+        interventions = schedule == null ? null : schedule.compile(this, step + 1);
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    public NeighbourhoodTable getTable() {
+        if (tableStale) {
+            table.rebuild(grid);
+            tableStale = false;
+        }
+        return table;
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public void setRadius(int radius) {
+        this.radius = radius;
+        if (scheduler != null) {
+            scheduler = new ActivityScheduler(this);
+        }
+    }
+
+    public double getTransmissionProbability() {
+        return transmissionProbability;
+    }
+
+    public void setTransmissionProbability(double transmissionProbability) {
+        this.transmissionProbability = transmissionProbability;
+    }
+
+    public void setLatentSteps(int latentSteps) {
+        this.latentSteps = latentSteps;
+        if (scheduler != null) {
+            scheduler = new ActivityScheduler(this);
+        }
+    }
+
+    public void setInfectiousSteps(int infectiousSteps) {
+        this.infectiousSteps = infectiousSteps;
+    }
+
+}
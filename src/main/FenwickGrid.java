@@ -0,0 +1,84 @@
+package main;
+
+import java.util.Arrays;
+
+public class FenwickGrid {
+
+    private final int width, height, stride;
+    private final int[] tree;
+
+    public FenwickGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+        tree = new int[(height + 1) * stride];
+    }
+
+    public void add(int row, int column, int delta) {
+        for (int i = row + 1; i <= height; i += i & -i) {
+            int base = i * stride;
+            for (int j = column + 1; j <= width; j += j & -j) {
+                tree[base + j] += delta;
+            }
+        }
+    }
+
+    private int prefix(int row, int column) {
+        int sum = 0;
+        for (int i = row + 1; i > 0; i -= i & -i) {
+            int base = i * stride;
+            for (int j = column + 1; j > 0; j -= j & -j) {
+                sum += tree[base + j];
+            }
+        }
+        return sum;
+    }
+
+    public int count(int top, int left, int bottom, int right) {
+        top = Math.max(top, 0);
+        left = Math.max(left, 0);
+        bottom = Math.min(bottom, height - 1);
+        right = Math.min(right, width - 1);
+        if (top > bottom || left > right) {
+            return 0;
+        }
+        return prefix(bottom, right) - prefix(top - 1, right) - prefix(bottom, left - 1) + prefix(top - 1, left - 1);
+    }
+
+    public int find(int top, int left, int bottom, int right, int k) {
+        top = Math.max(top, 0);
+        left = Math.max(left, 0);
+        bottom = Math.min(bottom, height - 1);
+        right = Math.min(right, width - 1);
+        if (k < 0 || k >= count(top, left, bottom, right)) {
+            return -1;
+        }
+        int low = top, high = bottom;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (count(top, left, mid, right) > k) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        int row = low;
+        k -= count(top, left, row - 1, right);
+        low = left;
+        high = right;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (count(row, left, row, mid) > k) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return row * width + low;
+    }
+
+    public void clear() {
+        Arrays.fill(tree, 0);
+    }
+
+}
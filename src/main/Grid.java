@@ -5,6 +5,7 @@ public class Grid {
     public static int DEFAULT_W = 128;
     public static int DEFAULT_H = 128;
 
+    private final int width, height;
     private Field[][] grid;
 
     public Grid() {
@@ -12,20 +13,23 @@ public class Grid {
     }
 
     public Grid(int width, int height) {
-        grid = new Field[width][height];
+        this.width = width;
+        this.height = height;
+        grid = new Field[height][width];
+        clear();
     }
 
     public void setup() {
-        for (int x = 0; x < DEFAULT_H; x++) {
-            for (int y = 0; y < DEFAULT_H; y++) {
-                grid[x][y] = new Field();
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                grid[row][column] = new Field();
             }
         }
     }
 
     public void clear() {
-        for (int row = 0; row < DEFAULT_H; row++) {
-            for (int column = 0; column < DEFAULT_H; column++) {
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
                 grid[row][column] = Field.getEmpty();
             }
         }
@@ -36,7 +40,16 @@ public class Grid {
     }
 
     public void place(Organism org, Position p) {
-        getField(p).set(org);
+        place(org, p.getRow(), p.getColumn());
+    }
+
+    public void place(Organism org, int row, int column) {
+        Field field = grid[row][column];
+        if (field.isEmpty()) {
+            field = new Field();
+            grid[row][column] = field;
+        }
+        field.set(org);
     }
 
     public Field getField(Position p) {
@@ -47,4 +60,16 @@ public class Grid {
         return getField(p).get();
     }
 
-}
\ No newline at end of file
+    public Organism getOrg(int row, int column) {
+        return grid[row][column].get();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+}
@@ -0,0 +1,248 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+public class InfectionTree implements AutoCloseable {
+
+    public static final int NONE = -1;
+
+    private static final int BLOCK = 1 << 16;
+
+    public interface Visitor {
+        void infection(int infectee, int infector, int step);
+    }
+
+    private final int memoryBlocks;
+    private final File spillFile;
+    private DataOutputStream spill;
+    private long spilledEvents;
+
+    private final ArrayDeque<int[]> blocks = new ArrayDeque<>();
+    private int[] current = new int[3 * BLOCK];
+    private int currentCount;
+    private long events;
+
+    private final int[] infectedAt;
+    private final int[] secondary;
+    private int[] offspring = new int[16];
+    private int[] generationIntervals = new int[16];
+    private long generationIntervalSum;
+    private long generationIntervalCount;
+
+    private final int window;
+    private int[] cohortInfections = new int[64];
+    private int[] cohortSecondary = new int[64];
+    private int[] localInfections = new int[64];
+    private double[] pressure = new double[64];
+    private long windowInfections;
+    private double windowPressure;
+    private double[] reff = new double[64];
+    private int steps;
+
+    public InfectionTree(int agents, int window, File spillFile, long memoryEvents) {
+        this.infectedAt = new int[agents];
+        this.secondary = new int[agents];
+        Arrays.fill(infectedAt, NONE);
+        this.window = Math.max(1, window);
+        this.spillFile = spillFile;
+        this.memoryBlocks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryEvents / BLOCK));
+    }
+
+    public InfectionTree(int agents, int window) {
+        this(agents, window, null, Long.MAX_VALUE);
+    }
+
+    public void record(int infectee, int infector, int step) {
+        if (infectedAt[infectee] != NONE) {
+            throw new IllegalStateException("Agent " + infectee + " was already infected at step " + infectedAt[infectee]);
+        }
+        append(infectee, infector, step);
+        infectedAt[infectee] = step;
+        offspring[0]++;
+        cohortInfections = grow(cohortInfections, step);
+        cohortSecondary = grow(cohortSecondary, step);
+        cohortInfections[step]++;
+        if (infector == NONE) {
+            return;
+        }
+        localInfections = grow(localInfections, step);
+        localInfections[step]++;
+        int k = secondary[infector]++;
+        offspring[k]--;
+        offspring = grow(offspring, k + 1);
+        offspring[k + 1]++;
+        int cohort = infectedAt[infector];
+        cohortSecondary[cohort]++;
+        int interval = step - cohort;
+        generationIntervals = grow(generationIntervals, interval);
+        generationIntervals[interval]++;
+        generationIntervalSum += interval;
+        generationIntervalCount++;
+    }
+
+    public void endStep(int step) {
+        if (step < steps) {
+            throw new IllegalStateException("Step " + step + " already ended");
+        }
+        cohortInfections = grow(cohortInfections, step);
+        cohortSecondary = grow(cohortSecondary, step);
+        localInfections = grow(localInfections, step);
+        pressure = grow(pressure, step);
+        reff = grow(reff, step);
+        for (int t = steps; t <= step; t++) {
+            double lambda = 0;
+            if (generationIntervalCount > 0) {
+                int longest = Math.min(t, generationIntervals.length - 1);
+                for (int s = 1; s <= longest; s++) {
+                    lambda += (double) cohortInfections[t - s] * generationIntervals[s];
+                }
+                lambda /= generationIntervalCount;
+            }
+            pressure[t] = lambda;
+            windowInfections += localInfections[t];
+            windowPressure += lambda;
+            if (t - window >= 0) {
+                windowInfections -= localInfections[t - window];
+                windowPressure -= pressure[t - window];
+            }
+            reff[t] = windowPressure > 0 ? windowInfections / windowPressure : Double.NaN;
+        }
+        steps = step + 1;
+    }
+
+    public double getReff(int step) {
+        return step < steps ? reff[step] : Double.NaN;
+    }
+
+    public double getCohortReproductionNumber(int step) {
+        return step < cohortInfections.length && cohortInfections[step] > 0
+                ? (double) cohortSecondary[step] / cohortInfections[step] : Double.NaN;
+    }
+
+    public int getSecondaryCases(int agent) {
+        return secondary[agent];
+    }
+
+    public int getInfectionStep(int agent) {
+        return infectedAt[agent];
+    }
+
+    public int[] getSecondaryCaseDistribution() {
+        int last = offspring.length - 1;
+        while (last > 0 && offspring[last] == 0) {
+            last--;
+        }
+        return Arrays.copyOf(offspring, last + 1);
+    }
+
+    public int[] getGenerationIntervalDistribution() {
+        int last = generationIntervals.length - 1;
+        while (last > 0 && generationIntervals[last] == 0) {
+            last--;
+        }
+        return Arrays.copyOf(generationIntervals, last + 1);
+    }
+
+    public double getMeanGenerationInterval() {
+        return generationIntervalCount == 0 ? Double.NaN : (double) generationIntervalSum / generationIntervalCount;
+    }
+
+    public long getEventCount() {
+        return events;
+    }
+
+    public long getSpilledEventCount() {
+        return spilledEvents;
+    }
+
+    public int getSteps() {
+        return steps;
+    }
+
+    public void forEach(Visitor visitor) {
+        if (spilledEvents > 0) {
+            try {
+                if (spill != null) {
+                    spill.flush();
+                }
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(spillFile), 1 << 16))) {
+                    for (long i = 0; i < spilledEvents; i++) {
+                        visitor.infection(in.readInt(), in.readInt(), in.readInt());
+                    }
+                }
+            } catch (EOFException e) {
+                throw new UncheckedIOException("Spill file " + spillFile + " is truncated", e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        for (int[] block : blocks) {
+            visit(block, BLOCK, visitor);
+        }
+        visit(current, currentCount, visitor);
+    }
+
+    private static void visit(int[] block, int count, Visitor visitor) {
+        for (int i = 0; i < count; i++) {
+            visitor.infection(block[3 * i], block[3 * i + 1], block[3 * i + 2]);
+        }
+    }
+
+    private void append(int infectee, int infector, int step) {
+        if (currentCount == BLOCK) {
+            blocks.addLast(current);
+            current = blocks.size() > memoryBlocks && spillFile != null ? spillOldest() : new int[3 * BLOCK];
+            currentCount = 0;
+        }
+        int i = 3 * currentCount++;
+        current[i] = infectee;
+        current[i + 1] = infector;
+        current[i + 2] = step;
+        events++;
+    }
+
+    private int[] spillOldest() {
+        int[] block = blocks.removeFirst();
+        try {
+            if (spill == null) {
+                spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), 1 << 16));
+            }
+            for (int value : block) {
+                spill.writeInt(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        spilledEvents += BLOCK;
+        return block;
+    }
+
+    private static int[] grow(int[] array, int index) {
+        return index < array.length ? array : Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+    }
+
+    private static double[] grow(double[] array, int index) {
+        return index < array.length ? array : Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+    }
+
+}
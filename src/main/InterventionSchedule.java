@@ -0,0 +1,287 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class InterventionSchedule {
+
+    public enum Kind {
+        LOCKDOWN, LAYER, VACCINATION, TESTING
+    }
+
+    private static class Intervention {
+        Kind kind;
+        int from, to;
+        int top, left, bottom, right;
+        ContactLayer layer;
+        double value;
+        EnumSet<State> targets;
+    }
+
+    private final List<Intervention> interventions = new ArrayList<>();
+
+    public InterventionSchedule lockdown(int from, int to, int top, int left, int bottom, int right,
+            double transmissionScale) {
+        return add(Kind.LOCKDOWN, from, to, top, left, bottom, right, null, transmissionScale, null);
+    }
+
+    public InterventionSchedule closeLayer(int from, int to, ContactLayer layer, double scale) {
+        return add(Kind.LAYER, from, to, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, layer, scale, null);
+    }
+
+    public InterventionSchedule vaccinate(int from, int to, int top, int left, int bottom, int right,
+            double fractionPerStep, EnumSet<State> targets) {
+        return add(Kind.VACCINATION, from, to, top, left, bottom, right, null, fractionPerStep,
+                EnumSet.copyOf(targets));
+    }
+
+    public InterventionSchedule testing(int from, int to, int top, int left, int bottom, int right,
+            double detectionProbability) {
+        return add(Kind.TESTING, from, to, top, left, bottom, right, null, detectionProbability, null);
+    }
+
+    private InterventionSchedule add(Kind kind, int from, int to, int top, int left, int bottom, int right,
+            ContactLayer layer, double value, EnumSet<State> targets) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid step range [" + from + ", " + to + ")");
+        }
+        if (value < 0 || kind != Kind.LOCKDOWN && kind != Kind.LAYER && value > 1) {
+            throw new IllegalArgumentException(kind + " value out of range: " + value);
+        }
+        Intervention intervention = new Intervention();
+        intervention.kind = kind;
+        intervention.from = from;
+        intervention.to = to;
+        intervention.top = top;
+        intervention.left = left;
+        intervention.bottom = bottom;
+        intervention.right = right;
+        intervention.layer = layer;
+        intervention.value = value;
+        intervention.targets = targets;
+        interventions.add(intervention);
+        return this;
+    }
+
+    Table compile(Epidemic epidemic, int firstStep) {
+        return new Table(epidemic, interventions.toArray(new Intervention[0]), firstStep);
+    }
+
+    static class Table {
+
+        private final Epidemic epidemic;
+        private final Intervention[] interventions;
+        private final int[][] regions;
+        private final long[] changes;
+        private int nextChange;
+
+        private final boolean[] active;
+        private final List<Integer> activeVaccinations = new ArrayList<>();
+        private final double[][] doseCarry;
+
+        private int[] regionStart;
+        private int[] regionAgents;
+        private int[] regionCursor;
+        private final SplittableRandom random;
+
+        private final boolean[] dirtyRegion;
+        private final int[] dirtyList;
+        private int dirtyCount;
+        private boolean dirtyLayers;
+
+        Table(Epidemic epidemic, Intervention[] interventions, int firstStep) {
+            this.epidemic = epidemic;
+            this.interventions = interventions;
+            this.random = new SplittableRandom(epidemic.getSeed() ^ 0x5DEECE66DL);
+            int regionCount = epidemic.getRegionCount();
+            dirtyRegion = new boolean[regionCount];
+            dirtyList = new int[regionCount];
+            active = new boolean[interventions.length];
+            doseCarry = new double[interventions.length][];
+
+            regions = new int[interventions.length][];
+            long[] pending = new long[2 * interventions.length];
+            int count = 0;
+            for (int i = 0; i < interventions.length; i++) {
+                regions[i] = regionsOf(interventions[i]);
+                if (interventions[i].kind == Kind.VACCINATION) {
+                    doseCarry[i] = new double[regions[i].length];
+                }
+                if (interventions[i].to > firstStep && interventions[i].from < interventions[i].to) {
+                    pending[count++] = change(interventions[i].to, false, i);
+                    pending[count++] = change(Math.max(interventions[i].from, firstStep), true, i);
+                }
+            }
+            changes = Arrays.copyOf(pending, count);
+            Arrays.sort(changes);
+        }
+
+        private static long change(int step, boolean start, int i) {
+            return (long) step << 32 | (start ? 1L << 31 : 0) | i;
+        }
+
+        private int[] regionsOf(Intervention intervention) {
+            if (intervention.kind == Kind.LAYER) {
+                return new int[0];
+            }
+            int size = epidemic.getRegionSize();
+            Grid grid = epidemic.getGrid();
+            int top = Math.max(intervention.top, 0) / size;
+            int left = Math.max(intervention.left, 0) / size;
+            int bottom = Math.min(intervention.bottom, grid.getHeight() - 1);
+            int right = Math.min(intervention.right, grid.getWidth() - 1);
+            if (bottom < 0 || right < 0 || intervention.top > bottom || intervention.left > right) {
+                return new int[0];
+            }
+            bottom /= size;
+            right /= size;
+            int[] result = new int[(bottom - top + 1) * (right - left + 1)];
+            int i = 0;
+            for (int row = top; row <= bottom; row++) {
+                for (int column = left; column <= right; column++) {
+                    result[i++] = epidemic.regionOf(row * size, column * size);
+                }
+            }
+            return result;
+        }
+
+        void apply(int step) {
+            int first = nextChange;
+            while (nextChange < changes.length && changes[nextChange] >> 32 <= step) {
+                long change = changes[nextChange++];
+                int i = (int) change & Integer.MAX_VALUE;
+                boolean start = (change & 1L << 31) != 0;
+                if (active[i] == start) {
+                    continue;
+                }
+                active[i] = start;
+                if (interventions[i].kind == Kind.VACCINATION) {
+                    if (start) {
+                        activeVaccinations.add(i);
+                    } else {
+                        activeVaccinations.remove(Integer.valueOf(i));
+                    }
+                } else if (interventions[i].kind == Kind.LAYER) {
+                    dirtyLayers = true;
+                } else {
+                    for (int region : regions[i]) {
+                        if (!dirtyRegion[region]) {
+                            dirtyRegion[region] = true;
+                            dirtyList[dirtyCount++] = region;
+                        }
+                    }
+                }
+            }
+            if (nextChange > first) {
+                recompute();
+            }
+            for (int i : activeVaccinations) {
+                vaccinate(i, step);
+            }
+        }
+
+        private void recompute() {
+            if (dirtyLayers) {
+                Arrays.fill(epidemic.layerScale, 1);
+                for (int i = 0; i < interventions.length; i++) {
+                    if (active[i] && interventions[i].kind == Kind.LAYER) {
+                        epidemic.layerScale[interventions[i].layer.ordinal()] *= interventions[i].value;
+                    }
+                }
+                dirtyLayers = false;
+            }
+            if (dirtyCount == 0) {
+                return;
+            }
+            for (int d = 0; d < dirtyCount; d++) {
+                epidemic.regionTransmission[dirtyList[d]] = 1;
+                epidemic.regionTesting[dirtyList[d]] = 0;
+            }
+            for (int i = 0; i < interventions.length; i++) {
+                if (!active[i] || interventions[i].kind != Kind.LOCKDOWN && interventions[i].kind != Kind.TESTING) {
+                    continue;
+                }
+                for (int region : regions[i]) {
+                    if (!dirtyRegion[region]) {
+                        continue;
+                    }
+                    if (interventions[i].kind == Kind.LOCKDOWN) {
+                        epidemic.regionTransmission[region] *= interventions[i].value;
+                    } else {
+                        double missed = 1 - epidemic.regionTesting[region];
+                        epidemic.regionTesting[region] = 1 - missed * (1 - interventions[i].value);
+                    }
+                }
+            }
+            for (int d = 0; d < dirtyCount; d++) {
+                dirtyRegion[dirtyList[d]] = false;
+            }
+            dirtyCount = 0;
+        }
+
+        private void vaccinate(int i, int step) {
+            if (regionAgents == null) {
+                indexAgents();
+            }
+            Intervention intervention = interventions[i];
+            for (int r = 0; r < regions[i].length; r++) {
+                int region = regions[i][r];
+                int population = regionStart[region + 1] - regionStart[region];
+                double doses = doseCarry[i][r] + intervention.value * population;
+                int whole = (int) doses;
+                doseCarry[i][r] = doses - whole;
+                int limit = regionStart[region + 1];
+                while (whole > 0 && regionCursor[region] < limit) {
+                    int cursor = regionCursor[region];
+                    int pick = cursor + random.nextInt(limit - cursor);
+                    int agent = regionAgents[pick];
+                    Organism org = epidemic.getAgents()[agent];
+                    boolean eligible = org.isAlive() && intervention.targets.contains(org.getState());
+                    if (eligible || !org.isAlive() || org.getState() == State.RECOVERED) {
+                        regionAgents[pick] = regionAgents[cursor];
+                        regionAgents[regionCursor[region]++] = agent;
+                        if (eligible) {
+                            epidemic.changeState(org, State.RECOVERED, step);
+                            whole--;
+                        }
+                    } else {
+                        regionAgents[pick] = regionAgents[--limit];
+                        regionAgents[limit] = agent;
+                    }
+                }
+            }
+        }
+
+        private void indexAgents() {
+            Grid grid = epidemic.getGrid();
+            int regionCount = epidemic.getRegionCount();
+            regionStart = new int[regionCount + 1];
+            for (int row = 0; row < grid.getHeight(); row++) {
+                for (int column = 0; column < grid.getWidth(); column++) {
+                    if (grid.getOrg(row, column) != null) {
+                        regionStart[epidemic.regionOf(row, column) + 1]++;
+                    }
+                }
+            }
+            for (int region = 0; region < regionCount; region++) {
+                regionStart[region + 1] += regionStart[region];
+            }
+            regionAgents = new int[regionStart[regionCount]];
+            regionCursor = Arrays.copyOf(regionStart, regionCount);
+            for (int row = 0; row < grid.getHeight(); row++) {
+                for (int column = 0; column < grid.getWidth(); column++) {
+                    Organism org = grid.getOrg(row, column);
+                    if (org != null) {
+                        regionAgents[regionCursor[epidemic.regionOf(row, column)]++] = org.getId();
+                    }
+                }
+            }
+            System.arraycopy(regionStart, 0, regionCursor, 0, regionCount);
+        }
+
+    }
+
+}
@@ -1,9 +1,28 @@
 package main;
 
+import java.util.Arrays;
+
 public class Main {
 
     public static void main(String[] args) {
-
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int radius = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        Epidemic epidemic = new Epidemic(new Grid(), 42);
+        epidemic.setRadius(radius);
+        epidemic.populate(0.5, 5);
+        int agents = epidemic.getAgents().length;
+        epidemic.setContactNetwork(ContactLayer.HOUSEHOLD, ContactNetwork.cliques(agents, 4), 0.1);
+        InfectionTree tree = new InfectionTree(agents, 7);
+        epidemic.setRecorder(tree);
+        for (int i = 0; i < steps; i++) {
+            epidemic.step();
+            System.out.printf("%4d  S %6d  E %6d  I %6d  R %6d  Reff %5.2f%n", epidemic.getStep(),
+                    epidemic.count(State.SUSCEPTIBLE), epidemic.count(State.EXPOSED),
+                    epidemic.count(State.INFECTIOUS), epidemic.count(State.RECOVERED),
+                    tree.getReff(epidemic.getStep()));
+        }
+        System.out.printf("mean generation interval %.2f, secondary cases %s%n", tree.getMeanGenerationInterval(),
+                Arrays.toString(tree.getSecondaryCaseDistribution()));
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,233 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class Metapopulation {
+
+    private static final int PATCHES_PER_TASK = 256;
+
+    private final int patches, ages;
+    private final double[] contacts;
+    private final double[] susceptible, exposed, infectious, recovered;
+    private final double[] visitors;
+    private double beta = 0.05;
+    private double incubation = 1 - Math.exp(-1.0 / 3);
+    private double recovery = 1 - Math.exp(-1.0 / 7);
+    private int step;
+
+    private int[] flowFrom = new int[0], flowTo = new int[0];
+    private double[] flowRate = new double[0];
+
+    private final List<Coupling> couplings = new ArrayList<>();
+    private final SplittableRandom random;
+
+    private static class Coupling {
+        Epidemic epidemic;
+        int patch, region;
+        double rate;
+        double carry;
+        double patchInfectious;
+    }
+
+    public Metapopulation(int patches, double[][] contactMatrix, long seed) {
+        this.patches = patches;
+        this.ages = contactMatrix.length;
+        contacts = new double[ages * ages];
+        for (int a = 0; a < ages; a++) {
+            if (contactMatrix[a].length != ages) {
+                throw new IllegalArgumentException("Contact matrix must be square, row " + a + " has "
+                        + contactMatrix[a].length + " entries");
+            }
+            System.arraycopy(contactMatrix[a], 0, contacts, a * ages, ages);
+        }
+        susceptible = new double[patches * ages];
+        exposed = new double[patches * ages];
+        infectious = new double[patches * ages];
+        recovered = new double[patches * ages];
+        visitors = new double[patches];
+        random = new SplittableRandom(seed);
+    }
+
+    public void setRates(double beta, double latentSteps, double infectiousSteps) {
+        this.beta = beta;
+        this.incubation = 1 - Math.exp(-1 / latentSteps);
+        this.recovery = 1 - Math.exp(-1 / infectiousSteps);
+    }
+
+    public void setPopulation(int patch, double[] ageCounts) {
+        if (ageCounts.length != ages) {
+            throw new IllegalArgumentException("Expected " + ages + " age bands, got " + ageCounts.length);
+        }
+        int base = patch * ages;
+        System.arraycopy(ageCounts, 0, susceptible, base, ages);
+        Arrays.fill(exposed, base, base + ages, 0);
+        Arrays.fill(infectious, base, base + ages, 0);
+        Arrays.fill(recovered, base, base + ages, 0);
+    }
+
+    public void seed(int patch, int age, double count) {
+        int i = patch * ages + age;
+        count = Math.min(count, susceptible[i]);
+        susceptible[i] -= count;
+        infectious[i] += count;
+    }
+
+    public void addMigration(int from, int to, double rate) {
+        int n = flowFrom.length;
+        flowFrom = Arrays.copyOf(flowFrom, n + 1);
+        flowTo = Arrays.copyOf(flowTo, n + 1);
+        flowRate = Arrays.copyOf(flowRate, n + 1);
+        flowFrom[n] = from;
+        flowTo[n] = to;
+        flowRate[n] = rate;
+    }
+
+    public void couple(Epidemic epidemic, int patch, int region, double rate) {
+        Coupling coupling = new Coupling();
+        coupling.epidemic = epidemic;
+        coupling.patch = patch;
+        coupling.region = region;
+        coupling.rate = rate;
+        couplings.add(coupling);
+    }
+
+    public void step() {
+        Arrays.fill(visitors, 0);
+        for (Coupling coupling : couplings) {
+            visitors[coupling.patch] += coupling.rate * coupling.epidemic.countInRegion(State.INFECTIOUS, coupling.region);
+        }
+        for (Coupling coupling : couplings) {
+            coupling.patchInfectious = total(State.INFECTIOUS, coupling.patch);
+        }
+
+        int tasks = (patches + PATCHES_PER_TASK - 1) / PATCHES_PER_TASK;
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            double[] force = new double[ages];
+            double[] prevalence = new double[ages];
+            int end = Math.min(patches, (task + 1) * PATCHES_PER_TASK);
+            for (int patch = task * PATCHES_PER_TASK; patch < end; patch++) {
+                advance(patch, force, prevalence);
+            }
+        });
+
+        for (int f = 0; f < flowFrom.length; f++) {
+            move(susceptible, flowFrom[f], flowTo[f], flowRate[f]);
+            move(exposed, flowFrom[f], flowTo[f], flowRate[f]);
+            move(infectious, flowFrom[f], flowTo[f], flowRate[f]);
+            move(recovered, flowFrom[f], flowTo[f], flowRate[f]);
+        }
+
+        for (Coupling coupling : couplings) {
+            importInto(coupling);
+        }
+        step++;
+    }
+
+    private void advance(int patch, double[] force, double[] prevalence) {
+        int base = patch * ages;
+        double population = 0;
+        for (int a = 0; a < ages; a++) {
+            double n = susceptible[base + a] + exposed[base + a] + infectious[base + a] + recovered[base + a];
+            prevalence[a] = n > 0 ? infectious[base + a] / n : 0;
+            population += n;
+        }
+        double visiting = population > 0 ? visitors[patch] / population : 0;
+        for (int a = 0; a < ages; a++) {
+            int row = a * ages;
+            double sum = 0;
+            for (int b = 0; b < ages; b++) {
+                sum += contacts[row + b] * (prevalence[b] + visiting);
+            }
+            force[a] = 1 - Math.exp(-beta * sum);
+        }
+        for (int a = 0; a < ages; a++) {
+            int i = base + a;
+            double infected = susceptible[i] * force[a];
+            double onset = exposed[i] * incubation;
+            double recovering = infectious[i] * recovery;
+            susceptible[i] -= infected;
+            exposed[i] += infected - onset;
+            infectious[i] += onset - recovering;
+            recovered[i] += recovering;
+        }
+    }
+
+    private void move(double[] compartment, int from, int to, double rate) {
+        int source = from * ages;
+        int target = to * ages;
+        for (int a = 0; a < ages; a++) {
+            double moving = compartment[source + a] * rate;
+            compartment[source + a] -= moving;
+            compartment[target + a] += moving;
+        }
+    }
+
+    private void importInto(Coupling coupling) {
+        Epidemic epidemic = coupling.epidemic;
+        double expected = coupling.carry
+                + coupling.rate * coupling.patchInfectious * epidemic.getTransmissionProbability();
+        int arrivals = (int) expected;
+        coupling.carry = expected - arrivals;
+        int size = epidemic.getRegionSize();
+        int top = epidemic.getRegionTop(coupling.region);
+        int left = epidemic.getRegionLeft(coupling.region);
+        int height = Math.min(size, epidemic.getGrid().getHeight() - top);
+        int width = Math.min(size, epidemic.getGrid().getWidth() - left);
+        for (int tries = 4 * arrivals; arrivals > 0 && tries > 0; tries--) {
+            if (epidemic.expose(top + random.nextInt(height), left + random.nextInt(width))) {
+                arrivals--;
+            }
+        }
+    }
+
+    public double get(State state, int patch, int age) {
+        return compartment(state)[patch * ages + age];
+    }
+
+    public double total(State state) {
+        double sum = 0;
+        for (double value : compartment(state)) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    public double total(State state, int patch) {
+        double[] compartment = compartment(state);
+        double sum = 0;
+        for (int a = 0; a < ages; a++) {
+            sum += compartment[patch * ages + a];
+        }
+        return sum;
+    }
+
+    private double[] compartment(State state) {
+        switch (state) {
+        case SUSCEPTIBLE:
+            return susceptible;
+        case EXPOSED:
+            return exposed;
+        case INFECTIOUS:
+            return infectious;
+        default:
+            return recovered;
+        }
+    }
+
+    public int getPatchCount() {
+        return patches;
+    }
+
+    public int getAgeBandCount() {
+        return ages;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+}
@@ -0,0 +1,139 @@
+package main;
+
+import java.util.stream.IntStream;
+
+public class NeighbourhoodTable {
+
+    private static final int COLUMN_BLOCK = 64;
+
+    private final int width, height, stride;
+    private final int[][] tables;
+
+    public NeighbourhoodTable(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = width + 1;
+        tables = new int[State.VALUES.length][(height + 1) * stride];
+    }
+
+    public void rebuild(Grid grid) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight()
+                    + ", table is " + width + "x" + height);
+        }
+        IntStream.range(0, height).parallel().forEach(row -> prefixRow(grid, row));
+        int blocks = (width + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+        IntStream.range(0, blocks).parallel().forEach(this::prefixColumns);
+    }
+
+    private void prefixRow(Grid grid, int row) {
+        int base = (row + 1) * stride;
+        int[] sums = new int[tables.length];
+        for (int column = 0; column < width; column++) {
+            Organism org = grid.getOrg(row, column);
+            if (org != null && org.isAlive()) {
+                sums[org.getState().ordinal()]++;
+            }
+            for (int s = 0; s < tables.length; s++) {
+                tables[s][base + column + 1] = sums[s];
+            }
+        }
+    }
+
+    private void prefixColumns(int block) {
+        int from = block * COLUMN_BLOCK + 1;
+        int to = Math.min(from + COLUMN_BLOCK, stride);
+        for (int[] table : tables) {
+            for (int row = 2; row <= height; row++) {
+                int base = row * stride;
+                int above = base - stride;
+                for (int column = from; column < to; column++) {
+                    table[base + column] += table[above + column];
+                }
+            }
+        }
+    }
+
+    public int count(State state, int top, int left, int bottom, int right) {
+        top = Math.max(top, 0);
+        left = Math.max(left, 0);
+        bottom = Math.min(bottom, height - 1);
+        right = Math.min(right, width - 1);
+        if (top > bottom || left > right) {
+            return 0;
+        }
+        int[] table = tables[state.ordinal()];
+        int upper = top * stride;
+        int lower = (bottom + 1) * stride;
+        return table[lower + right + 1] - table[lower + left] - table[upper + right + 1] + table[upper + left];
+    }
+
+    public int find(State state, int top, int left, int bottom, int right, int k) {
+        top = Math.max(top, 0);
+        left = Math.max(left, 0);
+        bottom = Math.min(bottom, height - 1);
+        right = Math.min(right, width - 1);
+        if (k < 0 || k >= count(state, top, left, bottom, right)) {
+            return -1;
+        }
+        int low = top, high = bottom;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (count(state, top, left, mid, right) > k) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        int row = low;
+        k -= count(state, top, left, row - 1, right);
+        low = left;
+        high = right;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (count(state, row, left, row, mid) > k) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return row * width + low;
+    }
+
+    public int countAround(State state, int row, int column, int radius) {
+        return count(state, row - radius, column - radius, row + radius, column + radius);
+    }
+
+    public int occupied(int top, int left, int bottom, int right) {
+        int total = 0;
+        for (State state : State.VALUES) {
+            total += count(state, top, left, bottom, right);
+        }
+        return total;
+    }
+
+    public double density(State state, int row, int column, int radius) {
+        int top = Math.max(row - radius, 0);
+        int left = Math.max(column - radius, 0);
+        int bottom = Math.min(row + radius, height - 1);
+        int right = Math.min(column + radius, width - 1);
+        if (top > bottom || left > right) {
+            return 0;
+        }
+        int cells = (bottom - top + 1) * (right - left + 1);
+        return (double) count(state, top, left, bottom, right) / cells;
+    }
+
+    public int total(State state) {
+        return tables[state.ordinal()][height * stride + width];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+}
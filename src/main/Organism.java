@@ -3,16 +3,40 @@ package main;
 public abstract class Organism {
 
     private boolean alive;
+    private State state;
+    private int stateStep;
+    private int id = -1;
 
     public Organism() {
         alive = true;
-
+        state = State.SUSCEPTIBLE;
     }
 
     public boolean isAlive() {
         return alive;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state, int step) {
+        this.state = state;
+        stateStep = step;
+    }
+
+    public int getStateStep() {
+        return stateStep;
+    }
+
     abstract public void act();
 
-}
\ No newline at end of file
+}
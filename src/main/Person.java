@@ -0,0 +1,9 @@
+package main;
+
+public class Person extends Organism {
+
+    @Override
+    public void act() {
+    }
+
+}
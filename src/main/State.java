@@ -0,0 +1,9 @@
+package main;
+
+public enum State {
+
+    SUSCEPTIBLE, EXPOSED, INFECTIOUS, RECOVERED;
+
+    public static final State[] VALUES = values();
+
+}
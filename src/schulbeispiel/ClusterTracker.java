@@ -0,0 +1,394 @@
+package schulbeispiel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Zählt die zusammenhängenden Gruppen (Cluster) von Tieren derselben Art im
+ * Feld. Zwei Positionen gehören zusammen, wenn sie benachbart sind (auch
+ * diagonal, wie bei {@link Field#neighborPositions}) und mit derselben Tierart
+ * besetzt sind.
+ *
+ * Die Cluster werden in einer Union-Find-Struktur gehalten. Als
+ * {@link FieldListener} merkt sich der Tracker nur, welche Positionen sich
+ * geändert haben; erst {@link #update()} arbeitet die Änderungen ein. Neu
+ * besetzte Positionen werden mit ihren Nachbarn vereinigt. Da sich ein Cluster
+ * beim Räumen einer Position teilen kann, was Union-Find nicht abbilden kann,
+ * wird jeder Cluster, aus dem eine Position geräumt wurde, aus seinen
+ * Positionen neu aufgebaut. Dazu sind die Positionen jedes Clusters in einer
+ * Ringliste verkettet. Der Aufwand pro Schritt hängt so von den Änderungen und
+ * der Größe der betroffenen Cluster ab, nicht von der Größe des Feldes. Nur
+ * wenn dabei ein großer Teil des Feldes besucht werden müsste, wird alles in
+ * einem Durchlauf über das Feld neu aufgebaut.
+ */
+public class ClusterTracker implements FieldListener {
+    // Die Anzahl der Fächer im Größenhistogramm (Fach k: Größe 2^k bis 2^(k+1)-1)
+    public static final int HISTOGRAM_BUCKETS = 32;
+
+    private final Field field;
+    private final int depth, width;
+    private final int cells;
+
+    // Der Vorgänger im Union-Find-Baum, -1 für eine leere Position
+    private final int[] parent;
+    // Die nächste Position im Ring des Clusters
+    private final int[] next;
+    // Die Größe des Clusters (nur für Wurzeln gültig)
+    private final int[] size;
+    // Die Tierart des Clusters (nur für Wurzeln gültig). Eine Wurzel kann seit
+    // dem letzten update geräumt worden sein, deshalb wird die Art nicht aus dem
+    // Feld gelesen.
+    private final int[] rootCode;
+
+    // Die seit dem letzten update geänderten Positionen
+    private final BitSet pending;
+    private int[] pendingCells = new int[256];
+    private int pendingCount;
+    private boolean cleared;
+
+    // Arbeitsspeicher für update
+    private final BitSet marked;
+    private int[] work = new int[256];
+    private int[] roots = new int[64];
+
+    // Die Statistik pro Tierkennung
+    private final int[] clusterCount = new int[Species.MAX_SPECIES + 1];
+    private final long[][] histogram = new long[Species.MAX_SPECIES + 1][];
+    // Die Anzahl der Cluster pro Größe, um den größten Cluster zu kennen. Die
+    // Arrays wachsen mit dem größten bisher gezählten Cluster, statt von Anfang
+    // an so groß wie das Feld zu sein.
+    private final int[][] sizeCounts = new int[Species.MAX_SPECIES + 1][];
+    private final int[] largest = new int[Species.MAX_SPECIES + 1];
+    // Werden die Statistiken beim Vereinigen nachgeführt? (nicht beim Neuaufbau)
+    private boolean trackStats;
+
+    /**
+     * Erzeuge einen Tracker für das gegebene Feld und melde ihn als Beobachter
+     * an.
+     *
+     * @param field das Feld
+     */
+    public ClusterTracker(Field field) {
+        if ((long) field.getDepth() * field.getWidth() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Field too large for cluster tracking");
+        }
+        this.field = field;
+        depth = field.getDepth();
+        width = field.getWidth();
+        cells = depth * width;
+        parent = new int[cells];
+        next = new int[cells];
+        size = new int[cells];
+        rootCode = new int[cells];
+        pending = new BitSet(cells);
+        marked = new BitSet(cells);
+        rebuild();
+        field.addListener(this);
+    }
+
+    /**
+     * Melde den Tracker beim Feld ab.
+     */
+    public void detach() {
+        field.removeListener(this);
+    }
+
+    public void cellChanged(int row, int column, int oldCode, int newCode) {
+        int cell = row * width + column;
+        if (!pending.get(cell)) {
+            pending.set(cell);
+            if (pendingCount == pendingCells.length) {
+                pendingCells = Arrays.copyOf(pendingCells, pendingCount * 2);
+            }
+            pendingCells[pendingCount++] = cell;
+        }
+    }
+
+    public void fieldCleared() {
+        cleared = true;
+    }
+
+    /**
+     * Arbeite alle Änderungen seit dem letzten Aufruf ein. Die Abfragen rufen
+     * diese Methode selbst auf.
+     */
+    public void update() {
+        if (cleared || pendingCount > cells / 8) {
+            rebuild();
+        } else if (pendingCount > 0) {
+            applyChanges();
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            pending.clear(pendingCells[i]);
+        }
+        pendingCount = 0;
+        cleared = false;
+    }
+
+    /**
+     * @param code die Tierkennung
+     * @return die Anzahl der Cluster dieser Tierart
+     */
+    public int getClusterCount(int code) {
+        update();
+        return clusterCount[code];
+    }
+
+    /**
+     * @param code die Tierkennung
+     * @return die Größe des größten Clusters dieser Tierart, 0 ohne Cluster
+     */
+    public int getLargestCluster(int code) {
+        update();
+        return largest[code];
+    }
+
+    /**
+     * Liefere die Verteilung der Clustergrößen. Fach k zählt die Cluster mit
+     * einer Größe von 2^k bis 2^(k+1)-1.
+     *
+     * @param code die Tierkennung
+     * @return eine Kopie des Histogramms mit HISTOGRAM_BUCKETS Fächern
+     */
+    public long[] getSizeHistogram(int code) {
+        update();
+        return histogram[code] == null ? new long[HISTOGRAM_BUCKETS] : histogram[code].clone();
+    }
+
+    /**
+     * Liefere eine Beschreibung der Cluster, wie
+     * {@link FieldStatistics#getResidentInfo}.
+     *
+     * @return für jede Tierart die Anzahl der Cluster und die Größe des größten
+     */
+    public String getClusterInfo() {
+        update();
+        StringBuilder info = new StringBuilder();
+        for (int code = 1; code < clusterCount.length; code++) {
+            if (clusterCount[code] > 0) {
+                info.append(Species.classOf(code).getName()).append(": ").append(clusterCount[code])
+                        .append(" Cluster, größter ").append(getLargestCluster(code)).append(' ');
+            }
+        }
+        return info.toString();
+    }
+
+    /**
+     * Baue die Cluster aller Positionen neu auf. Jede Position wird nur mit den
+     * bereits besuchten Nachbarn (links, oben links, oben, oben rechts)
+     * vereinigt.
+     */
+    private void rebuild() {
+        Arrays.fill(clusterCount, 0);
+        Arrays.fill(largest, 0);
+        for (int code = 0; code < histogram.length; code++) {
+            if (histogram[code] != null) {
+                Arrays.fill(histogram[code], 0);
+                Arrays.fill(sizeCounts[code], 0);
+            }
+        }
+        // Die Statistik wird erst am Ende aus den fertigen Clustern bestimmt
+        trackStats = false;
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                int cell = row * width + column;
+                int code = field.getCode(row, column);
+                if (code == Species.EMPTY) {
+                    parent[cell] = -1;
+                    continue;
+                }
+                makeSet(cell, code);
+                if (column > 0) {
+                    unionIfSame(cell, cell - 1, code);
+                }
+                if (row > 0) {
+                    int above = cell - width;
+                    if (column > 0) {
+                        unionIfSame(cell, above - 1, code);
+                    }
+                    unionIfSame(cell, above, code);
+                    if (column + 1 < width) {
+                        unionIfSame(cell, above + 1, code);
+                    }
+                }
+            }
+        }
+        trackStats = true;
+        for (int cell = 0; cell < cells; cell++) {
+            if (parent[cell] == cell) {
+                addStats(rootCode[cell], size[cell]);
+            }
+        }
+    }
+
+    /**
+     * Arbeite die geänderten Positionen ein. Jeder Cluster, zu dem eine
+     * geänderte Position gehörte, wird aufgelöst; seine Positionen werden
+     * zusammen mit den geänderten Positionen neu eingefügt.
+     */
+    private void applyChanges() {
+        // Die betroffenen Cluster bestimmen
+        int rootCount = 0;
+        for (int i = 0; i < pendingCount; i++) {
+            int cell = pendingCells[i];
+            if (parent[cell] >= 0) {
+                int root = find(cell);
+                if (!marked.get(root)) {
+                    marked.set(root);
+                    if (rootCount == roots.length) {
+                        roots = Arrays.copyOf(roots, rootCount * 2);
+                    }
+                    roots[rootCount++] = root;
+                }
+            }
+        }
+        long affected = pendingCount;
+        for (int i = 0; i < rootCount; i++) {
+            marked.clear(roots[i]);
+            affected += size[roots[i]];
+        }
+        // Ein Neuaufbau liest das Feld der Reihe nach und ist schneller, als
+        // einen großen Teil des Feldes über die Ringlisten zu besuchen.
+        if (affected > cells / 8) {
+            rebuild();
+            return;
+        }
+
+        // Ihre Positionen und die geänderten Positionen sammeln und lösen
+        int workCount = 0;
+        for (int i = 0; i < rootCount; i++) {
+            int root = roots[i];
+            removeStats(rootCode[root], size[root]);
+            int cell = root;
+            do {
+                if (workCount == work.length) {
+                    work = Arrays.copyOf(work, workCount * 2);
+                }
+                work[workCount++] = cell;
+                marked.set(cell);
+                cell = next[cell];
+            } while (cell != root);
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            int cell = pendingCells[i];
+            if (!marked.get(cell)) {
+                if (workCount == work.length) {
+                    work = Arrays.copyOf(work, workCount * 2);
+                }
+                work[workCount++] = cell;
+                marked.set(cell);
+            }
+        }
+        for (int i = 0; i < workCount; i++) {
+            parent[work[i]] = -1;
+        }
+
+        // Neu einfügen, dann mit allen gleichen Nachbarn vereinigen
+        for (int i = 0; i < workCount; i++) {
+            int cell = work[i];
+            marked.clear(cell);
+            int code = field.getCode(cell / width, cell % width);
+            if (code != Species.EMPTY) {
+                makeSet(cell, code);
+            }
+        }
+        for (int i = 0; i < workCount; i++) {
+            int cell = work[i];
+            if (parent[cell] < 0) {
+                continue;
+            }
+            int row = cell / width;
+            int column = cell % width;
+            int code = field.getCode(row, column);
+            for (int dr = -1; dr <= 1; dr++) {
+                int r = row + dr;
+                if (r < 0 || r >= depth) {
+                    continue;
+                }
+                for (int dc = -1; dc <= 1; dc++) {
+                    int c = column + dc;
+                    if ((dr != 0 || dc != 0) && c >= 0 && c < width) {
+                        unionIfSame(cell, r * width + c, code);
+                    }
+                }
+            }
+        }
+    }
+
+    private void makeSet(int cell, int code) {
+        parent[cell] = cell;
+        next[cell] = cell;
+        size[cell] = 1;
+        rootCode[cell] = code;
+        if (trackStats) {
+            addStats(code, 1);
+        }
+    }
+
+    private void unionIfSame(int cell, int neighbour, int code) {
+        if (parent[neighbour] < 0 || rootCode[find(neighbour)] != code) {
+            return;
+        }
+        int a = find(cell);
+        int b = find(neighbour);
+        if (a == b) {
+            return;
+        }
+        if (size[a] < size[b]) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        if (trackStats) {
+            // Erst den neuen Cluster zählen, damit der größte nicht gesucht werden muss
+            addStats(code, size[a] + size[b]);
+            removeStats(code, size[a]);
+            removeStats(code, size[b]);
+        }
+        parent[b] = a;
+        size[a] += size[b];
+        // Die beiden Ringe zu einem verbinden
+        int swap = next[a];
+        next[a] = next[b];
+        next[b] = swap;
+    }
+
+    private int find(int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    private void addStats(int code, int clusterSize) {
+        clusterCount[code]++;
+        if (histogram[code] == null) {
+            histogram[code] = new long[HISTOGRAM_BUCKETS];
+            sizeCounts[code] = new int[64];
+        }
+        if (clusterSize >= sizeCounts[code].length) {
+            int length = (int) Math.min(cells + 1L, Math.max(clusterSize + 1L, 2L * sizeCounts[code].length));
+            sizeCounts[code] = Arrays.copyOf(sizeCounts[code], length);
+        }
+        histogram[code][31 - Integer.numberOfLeadingZeros(clusterSize)]++;
+        sizeCounts[code][clusterSize]++;
+        if (clusterSize > largest[code]) {
+            largest[code] = clusterSize;
+        }
+    }
+
+    private void removeStats(int code, int clusterSize) {
+        clusterCount[code]--;
+        histogram[code][31 - Integer.numberOfLeadingZeros(clusterSize)]--;
+        int[] counts = sizeCounts[code];
+        counts[clusterSize]--;
+        if (clusterSize == largest[code]) {
+            int max = clusterSize;
+            while (max > 0 && counts[max] == 0) {
+                max--;
+            }
+            largest[code] = max;
+        }
+    }
+}
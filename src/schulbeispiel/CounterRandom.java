@@ -0,0 +1,61 @@
+package schulbeispiel;
+
+/**
+ * Ein zählerbasierter Zufallsgenerator. Die Zahlen eines Stroms hängen nur vom
+ * Startwert, vom Schritt, von der Kennung des Tieres, von der Nummer des
+ * Stroms und von einem Zähler ab, nicht davon, in welcher Reihenfolge oder in
+ * welchem Prozess die Tiere agieren. Jede Zahl ist ein SplitMix64-Hashwert
+ * dieser Werte.
+ */
+final class CounterRandom {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    // Der Schlüssel des aktuellen Stroms und die Anzahl der gelieferten Zahlen
+    private long key;
+    private int counter;
+
+    /**
+     * Beginne einen neuen Strom.
+     *
+     * @param seed   der Startwert der Simulation
+     * @param step   der Schritt
+     * @param id     die Kennung des Tieres
+     * @param stream die Nummer des Stroms, damit ein Tier in einem Schritt
+     *               mehrere unabhängige Ströme benutzen kann
+     */
+    void reset(long seed, int step, long id, int stream) {
+        long z = mix(seed + GOLDEN * (stream + 1));
+        z = mix(z ^ step);
+        key = mix(z ^ id);
+        counter = 0;
+    }
+
+    /**
+     * @return die nächste Zahl des Stroms
+     */
+    long nextLong() {
+        return mix(key + GOLDEN * ++counter);
+    }
+
+    /**
+     * @return eine gleichverteilte Zahl aus [0, 1)
+     */
+    double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * @param bound die obere Grenze (ausschließlich), höchstens 2^31 - 1
+     * @return eine gleichverteilte ganze Zahl aus [0, bound)
+     */
+    int nextInt(int bound) {
+        return (int) (nextDouble() * bound);
+    }
+
+    private static long mix(long z) {
+        z += GOLDEN;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,146 @@
+package schulbeispiel;
+
+import java.util.Arrays;
+
+/**
+ * Eine Dichtepyramide über einem Feld. Auf Stufe k ist das Feld in Kacheln mit
+ * einer Kantenlänge von 2^k Positionen eingeteilt, und für jede Kachel wird die
+ * Anzahl der Tiere jeder Tierart gezählt. Die Zähler werden über einen
+ * {@link FieldListener} bei jeder Änderung des Feldes nachgeführt; das kostet
+ * pro Änderung einen Zähler pro Stufe. Eine Ansicht kann damit für jede
+ * Vergrößerung die passende Stufe wählen und muss nie mehr Kacheln lesen, als
+ * sie Pixel anzeigt.
+ */
+public class DensityPyramid implements FieldListener {
+    private final Field field;
+    private final int levels;
+    // Die Zähler pro Stufe, Tierkennung und Kachel; Stufe 0 ist das Feld selbst
+    private final int[][][] counts;
+    // Die Gesamtzahl pro Tierkennung
+    private final int[] totals;
+
+    /**
+     * Erzeuge die Pyramide für das gegebene Feld und melde sie als Beobachter an.
+     *
+     * @param field das Feld
+     */
+    public DensityPyramid(Field field) {
+        this.field = field;
+        int size = Math.max(field.getDepth(), field.getWidth());
+        int l = 0;
+        while ((1 << l) < size) {
+            l++;
+        }
+        levels = l;
+        counts = new int[levels + 1][Species.MAX_SPECIES + 1][];
+        totals = new int[Species.MAX_SPECIES + 1];
+        rebuild();
+        field.addListener(this);
+    }
+
+    /**
+     * Melde die Pyramide beim Feld ab.
+     */
+    public void detach() {
+        field.removeListener(this);
+    }
+
+    /**
+     * @return das Feld dieser Pyramide
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return die höchste Stufe; dort deckt eine einzige Kachel das ganze Feld ab
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Liefere die Anzahl der Tiere einer Tierart in einer Kachel.
+     *
+     * @param level  die Stufe (mindestens 1)
+     * @param code   die Tierkennung
+     * @param tileRow die Zeile der Kachel
+     * @param tileColumn die Spalte der Kachel
+     * @return die Anzahl der Tiere in der Kachel
+     */
+    public int getCount(int level, int code, int tileRow, int tileColumn) {
+        int[] tiles = counts[level][code];
+        if (tiles == null) {
+            return 0;
+        }
+        return tiles[tileRow * tilesX(level) + tileColumn];
+    }
+
+    /**
+     * @return die Gesamtzahl der Tiere mit der gegebenen Kennung im Feld
+     */
+    public int getTotal(int code) {
+        return totals[code];
+    }
+
+    /**
+     * @return die Anzahl der Kachelspalten auf der gegebenen Stufe
+     */
+    public int tilesX(int level) {
+        return (field.getWidth() + (1 << level) - 1) >> level;
+    }
+
+    /**
+     * @return die Anzahl der Kachelzeilen auf der gegebenen Stufe
+     */
+    public int tilesY(int level) {
+        return (field.getDepth() + (1 << level) - 1) >> level;
+    }
+
+    public void cellChanged(int row, int column, int oldCode, int newCode) {
+        if (oldCode != Species.EMPTY) {
+            add(row, column, oldCode, -1);
+        }
+        if (newCode != Species.EMPTY) {
+            add(row, column, newCode, 1);
+        }
+    }
+
+    public void fieldCleared() {
+        for (int level = 1; level <= levels; level++) {
+            for (int[] tiles : counts[level]) {
+                if (tiles != null) {
+                    Arrays.fill(tiles, 0);
+                }
+            }
+        }
+        Arrays.fill(totals, 0);
+    }
+
+    /**
+     * Zähle das ganze Feld neu aus.
+     */
+    private void rebuild() {
+        fieldCleared();
+        for (int row = 0; row < field.getDepth(); row++) {
+            for (int column = 0; column < field.getWidth(); column++) {
+                int code = field.getCode(row, column);
+                if (code != Species.EMPTY) {
+                    add(row, column, code, 1);
+                }
+            }
+        }
+    }
+
+    private void add(int row, int column, int code, int delta) {
+        totals[code] += delta;
+        for (int level = 1; level <= levels; level++) {
+            int[] tiles = counts[level][code];
+            if (tiles == null) {
+                tiles = new int[tilesX(level) * tilesY(level)];
+                counts[level][code] = tiles;
+            }
+            tiles[(row >> level) * tilesX(level) + (column >> level)] += delta;
+        }
+    }
+}
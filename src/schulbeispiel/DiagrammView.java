@@ -5,12 +5,13 @@ import java.awt.*;
 import java.awt.image.*;
 import javax.swing.*;
 import java.util.*;
+import java.util.List;
 
 /**
- * Die Ansicht zeigt die Entwicklung zweier Populationen als Liniengraph über
- * die Zeit. Die aktuelle Version stellt immer genau zwei unterschiedliche
- * Tierklassen dar. Falls weitere Tiere eingeführt werden, werden diese nicht
- * automatisch berücksichtigt.
+ * Die Ansicht zeigt die Entwicklung der Populationen als Liniengraph über die
+ * Zeit. Dargestellt wird jede Tierklasse, für die eine Farbe definiert wurde,
+ * in der Reihenfolge, in der die Farben definiert wurden. Der Graph zeigt
+ * immer den gesamten bisherigen Lauf.
  * 
  * @author Michael Kölling und David J. Barnes
  * @version 2016.03.18
@@ -24,7 +25,7 @@ public class DiagrammView implements SimulationView {
     private static JLabel countLabel;
 
     // Die Klassen, die von dieser Ansicht beobachtet werden
-    private Set<Class> classes;
+    private List<Class> classes;
     // Eine Map für die Farben der Simulationsteilnehmer
     private Map<Class, Color> colors;
     // Ein Statistik-Objekt zur Berechnung und Speicherung
@@ -40,8 +41,8 @@ public class DiagrammView implements SimulationView {
      */
     public DiagrammView(int width, int height, int startMax) {
         stats = new FieldStatistics();
-        classes = new HashSet<>();
-        colors = new HashMap<>();
+        classes = new ArrayList<>();
+        colors = new LinkedHashMap<>();
 
         if (window == null) {
             window = createWindow(width, height, startMax);
@@ -60,21 +61,21 @@ public class DiagrammView implements SimulationView {
      */
     public void setColor(Class organismClass, Color color) {
         colors.put(organismClass, color);
-        classes = colors.keySet();
+        classes = new ArrayList<>(colors.keySet());
     }
 
     /**
      * Zeige den aktuellen Zustand des Feldes. Der Status wird durch einen
-     * Liniengraphen für zwei Klassen im Feld dargestellt. Diese Ansicht
-     * funktioniert auf dem aktuellen Stand nur für genau zwei Klassen (nicht mehr
-     * und nicht weniger). Wenn das Feld mehr als zwei unterschiedliche Tierspezies
-     * enthält, werden dennoch nur zwei Klassen dargestellt.
+     * Liniengraphen mit einer Linie für jede Klasse dargestellt, für die eine
+     * Farbe definiert wurde.
      * 
      * @param step  welcher Iterationsschritt ist dies?
      * @param field das Feld, das angezeigt werden soll
      */
     public void showStatus(int step, Field field) {
+        Object event = SimulationEvents.EVENTS.beginRepaint();
         graph.refresh(step, field, stats);
+        SimulationEvents.EVENTS.endRepaint(event, "DiagrammView", step);
     }
 
     /**
@@ -124,123 +125,107 @@ public class DiagrammView implements SimulationView {
 
     // ============================================================================
     /**
-     * Eingebettete Klasse: eine Komponente zum Anzeigen des Graphen.
+     * Eingebettete Klasse: eine Komponente zum Anzeigen des Graphen. Die Werte
+     * werden in einem {@link SeriesHistory} gesammelt, und der Graph wird bei jedem
+     * Schritt vollständig aus diesen Werten neu gezeichnet. Jede Pixelspalte zeigt
+     * Minimum und Maximum der Schritte, die auf sie entfallen. Der Aufwand pro Bild
+     * hängt damit nur von der Breite des Graphen ab, nicht von der Länge des Laufes.
      */
     class GraphPanel extends JComponent {
+        // Der Anteil der Höhe, der über dem größten Wert frei bleibt
         private static final double SCALINGS_FACTOR = 0.8;
 
         // Ein interner Bildpuffer, der zum Zeichnen benutzt wird. Für die
         // eigentliche Anzeige wird dieser Bildpuffer dann auf den Bildschirm kopiert.
         private BufferedImage graphPicture;
-        private int lastValue1, lastValue2;
-        private int yMax;
+        // Der Verlauf aller Reihen
+        private SeriesHistory history;
+        // Die Werte des aktuellen Schrittes
+        private int[] values;
+        private int startMax;
 
         /**
          * Erzeuge einen neuen leeren GraphPanel.
          */
         public GraphPanel(int width, int height, int startMax) {
             graphPicture = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.startMax = startMax;
             deletePicture();
-            lastValue1 = height;
-            lastValue2 = height;
-            yMax = startMax;
         }
 
         /**
          * Stelle eine neue Simulation auf dem Panel dar.
          */
         public void newRun() {
-            int height = graphPicture.getHeight();
-            int width = graphPicture.getWidth();
-
-            Graphics g = graphPicture.getGraphics();
-            g.copyArea(4, 0, width - 4, height, -4, 0);
-            g.setColor(Color.BLACK);
-            g.drawLine(width - 4, 0, width - 4, height);
-            g.drawLine(width - 2, 0, width - 2, height);
-            lastValue1 = height;
-            lastValue2 = height;
-            repaint();
+            if (history != null) {
+                history.clear();
+            }
+            deletePicture();
         }
 
         /**
          * Zeige eine neuen Datenpunkt an.
          */
         public void refresh(int step, Field field, FieldStatistics stats) {
-            if (classes.size() >= 2) {
-                Iterator<Class> it = classes.iterator();
-                Class klasse1 = it.next();
-                Class klasse2 = it.next();
-
-                stats.reset();
-                int count1 = stats.getResidentCount(field, klasse1);
-                int count2 = stats.getResidentCount(field, klasse2);
-
-                Graphics g = graphPicture.getGraphics();
-
-                int height = graphPicture.getHeight();
-                int width = graphPicture.getWidth();
-
-                // verschiebe den Graphen um einen Pixel nach links
-                g.copyArea(1, 0, width - 1, height, -1, 0);
-
-                // berechne y, prüfe, ob es außerhalb des Bildschirms liegt. Skaliere notfalls
-                // herunter.
-                int y = height - ((height * count1) / yMax) - 1;
-                while (y < 0) {
-                    scaleDown();
-                    y = height - ((height * count1) / yMax) - 1;
-                }
-                g.setColor(LIGHTGREY);
-                g.drawLine(width - 2, y, width - 2, height);
-                g.setColor(colors.get(klasse1));
-                g.drawLine(width - 3, lastValue1, width - 2, y);
-                lastValue1 = y;
-
-                y = height - ((height * count2) / yMax) - 1;
-                while (y < 0) {
-                    scaleDown();
-                    y = height - ((height * count2) / yMax) - 1;
-                }
-                g.setColor(LIGHTGREY);
-                g.drawLine(width - 2, y, width - 2, height);
-                g.setColor(colors.get(klasse2));
-                g.drawLine(width - 3, lastValue2, width - 2, y);
-                lastValue2 = y;
-
-                repaint();
+            if (classes.isEmpty()) {
+                return;
+            }
+            if (history == null || history.getSeries() != classes.size()) {
+                history = new SeriesHistory(classes.size(), 2 * graphPicture.getWidth());
+                values = new int[classes.size()];
+            }
 
-                stepLabel.setText("" + step);
-                countLabel.setText(stats.getResidentInfo(field));
+            stats.reset();
+            for (int i = 0; i < values.length; i++) {
+                values[i] = stats.getResidentCount(field, classes.get(i));
             }
+            history.add(values);
+            redraw();
+
+            stepLabel.setText("" + step);
+            countLabel.setText(stats.getResidentInfo(field));
         }
 
         /**
-         * Skaliere den aktuellen Graphen vertikal etwas herunter, so dass im oberen
-         * Bereich mehr Platz bleibt.
+         * Zeichne den Graphen aus dem Verlauf neu. Die y-Achse wird so gewählt, dass
+         * der größte bisherige Wert im unteren Teil des Bildes liegt.
          */
-        public void scaleDown() {
+        private void redraw() {
             Graphics g = graphPicture.getGraphics();
-            int hoehe = graphPicture.getHeight();
-            int breite = graphPicture.getWidth();
-
-            BufferedImage tmpBild = new BufferedImage(breite, (int) (hoehe * SCALINGS_FACTOR),
-                    BufferedImage.TYPE_INT_RGB);
-            Graphics2D gtmp = (Graphics2D) tmpBild.getGraphics();
-
-            gtmp.scale(1.0, SCALINGS_FACTOR);
-            gtmp.drawImage(graphPicture, 0, 0, null);
-
-            int header = (int) (hoehe * (1.0 - SCALINGS_FACTOR));
-
+            int height = graphPicture.getHeight();
+            int width = graphPicture.getWidth();
             g.setColor(Color.WHITE);
-            g.fillRect(0, 0, breite, header);
-            g.drawImage(tmpBild, 0, header, null);
-
-            yMax = (int) (yMax / SCALINGS_FACTOR);
-            lastValue1 = header + (int) (lastValue1 * SCALINGS_FACTOR);
-            lastValue2 = header + (int) (lastValue2 * SCALINGS_FACTOR);
-
+            g.fillRect(0, 0, width, height);
+
+            int buckets = history.getBuckets();
+            int columns = Math.min(width, buckets);
+            double yMax = Math.max(startMax, history.getMaxValue() / SCALINGS_FACTOR);
+
+            for (int s = 0; s < history.getSeries(); s++) {
+                Color color = colors.get(classes.get(s));
+                int lastY = -1;
+                for (int x = 0; x < columns; x++) {
+                    // Die Eimer, die auf diese Pixelspalte entfallen
+                    int from = (int) ((long) x * buckets / columns);
+                    int to = (int) ((long) (x + 1) * buckets / columns);
+                    int low = Integer.MAX_VALUE;
+                    int high = Integer.MIN_VALUE;
+                    for (int b = from; b < to; b++) {
+                        low = Math.min(low, history.getMin(s, b));
+                        high = Math.max(high, history.getMax(s, b));
+                    }
+                    int yLow = height - (int) (height * low / yMax) - 1;
+                    int yHigh = height - (int) (height * high / yMax) - 1;
+                    g.setColor(LIGHTGREY);
+                    g.drawLine(x, yHigh, x, height);
+                    g.setColor(color);
+                    if (lastY >= 0) {
+                        g.drawLine(x - 1, lastY, x, (yLow + yHigh) / 2);
+                    }
+                    g.drawLine(x, yLow, x, yHigh);
+                    lastY = (yLow + yHigh) / 2;
+                }
+            }
             repaint();
         }
 
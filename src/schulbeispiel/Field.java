@@ -1,6 +1,8 @@
 
 package schulbeispiel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -21,7 +23,16 @@ public class Field {
     // Die Tiefe und die Breite des Feldes
     private int depth, width;
     // Speicher für die Tiere
-    private Object[][] field;
+    private FieldStorage field;
+    // Der Zobrist-Hashwert der aktuellen Belegung
+    private long stateHash;
+    // Die höchste Anzahl an Positionsobjekten, die ein Feld aufbewahrt
+    private static final int MAX_CACHED_POSITIONS = 1 << 16;
+    // Die zuletzt benutzten Positionsobjekte, nach dem Index der Position
+    // modulo der Länge abgelegt
+    private Position[] positionCache;
+    // Die Beobachter, die über Änderungen informiert werden
+    private FieldListener[] listeners = new FieldListener[0];
 
     /**
      * Erzeuge ein Feld mit den angegebenen Dimensionen.
@@ -30,29 +41,97 @@ public class Field {
      * @param width die Breite des Feldes
      */
     public Field(int depth, int width) {
-        this.depth = depth;
-        this.width = width;
-        field = new Object[depth][width];
+        this(new HeapFieldStorage(depth, width));
+    }
+
+    /**
+     * Erzeuge ein Feld, das den gegebenen Speicher benutzt.
+     * 
+     * @param storage der Speicher für die Tiere
+     */
+    public Field(FieldStorage storage) {
+        this.depth = storage.getDepth();
+        this.width = storage.getWidth();
+        field = storage;
+        long cells = (long) depth * width;
+        int capacity = Integer.highestOneBit((int) Math.max(1, Math.min(cells, MAX_CACHED_POSITIONS)));
+        if (capacity < cells && capacity < MAX_CACHED_POSITIONS) {
+            capacity *= 2;
+        }
+        positionCache = new Position[capacity];
+    }
+
+    /**
+     * Liefere ein Positionsobjekt für die gegebene Zeile und Spalte. Positionen
+     * sind unveränderlich, deshalb werden die Objekte wiederverwendet. Der
+     * Vorrat ist begrenzt: bis zu 2^16 Positionen hat jede Position ihren festen
+     * Platz, in größeren Feldern teilen sich mehrere Positionen einen Platz und
+     * nur die zuletzt angefragte wird aufbewahrt. Positionen müssen deshalb mit
+     * equals verglichen werden.
+     * 
+     * @param row    die Zeile
+     * @param column die Spalte
+     * @return die Position
+     */
+    public Position positionAt(int row, int column) {
+        int slot = (int) (((long) row * width + column) & (positionCache.length - 1));
+        Position position = positionCache[slot];
+        if (position == null || position.getRow() != row || position.getColumn() != column) {
+            position = new Position(row, column);
+            positionCache[slot] = position;
+        }
+        return position;
     }
 
     /**
      * Räume das Feld.
      */
     public void clear() {
-        for (int zeile = 0; zeile < depth; zeile++) {
-            for (int spalte = 0; spalte < width; spalte++) {
-                field[zeile][spalte] = null;
-            }
+        field.clear();
+        stateHash = 0;
+        for (FieldListener listener : listeners) {
+            listener.fieldCleared();
         }
     }
 
+    /**
+     * Melde einen Beobachter an, der über jede Änderung der Belegung informiert
+     * wird.
+     * 
+     * @param listener der Beobachter
+     */
+    public synchronized void addListener(FieldListener listener) {
+        FieldListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Melde einen Beobachter wieder ab.
+     * 
+     * @param listener der Beobachter
+     */
+    public synchronized void removeListener(FieldListener listener) {
+        List<FieldListener> remaining = new ArrayList<>(Arrays.asList(listeners));
+        remaining.remove(listener);
+        listeners = remaining.toArray(new FieldListener[remaining.size()]);
+    }
+
+    /**
+     * Gib den Speicher des Feldes frei. Danach darf das Feld nicht mehr benutzt
+     * werden.
+     */
+    public void release() {
+        field.release();
+    }
+
     /**
      * Räume die gegebene Position.
      * 
      * @param position die zu leerende Position
      */
     public void clear(Position position) {
-        field[position.getRow()][position.getColumn()] = null;
+        set(position.getRow(), position.getColumn(), null, Species.EMPTY);
     }
 
     /**
@@ -64,7 +143,7 @@ public class Field {
      * @param column   die Spaltenkoordinate der Position
      */
     public void place(Object orgamism, int row, int column) {
-        place(orgamism, new Position(row, column));
+        place(orgamism, positionAt(row, column));
     }
 
     /**
@@ -75,7 +154,65 @@ public class Field {
      * @param position die Position, an der das Tier platziert werden soll
      */
     public void place(Object organism, Position position) {
-        field[position.getRow()][position.getColumn()] = organism;
+        set(position.getRow(), position.getColumn(), organism, Species.codeOf(organism));
+    }
+
+    /**
+     * Lege ein Objekt im Speicher ab, führe den Hashwert der Belegung nach und
+     * benachrichtige die Beobachter.
+     */
+    private void set(int row, int column, Object organism, int code) {
+        int oldCode = field.getCode(row, column);
+        field.set(row, column, organism, code);
+        if (oldCode != code) {
+            long index = (long) row * width + column;
+            stateHash ^= cellHash(index, oldCode) ^ cellHash(index, code);
+            for (FieldListener listener : listeners) {
+                listener.cellChanged(row, column, oldCode, code);
+            }
+        }
+    }
+
+    /**
+     * Prüfe, ob mehrere Threads gleichzeitig aus dem Feld lesen dürfen, solange
+     * niemand schreibt. Ein {@link MappedFieldStorage} blendet beim Lesen Bänder
+     * ein und aus und erlaubt das nicht.
+     * 
+     * @return true, wenn gleichzeitiges Lesen erlaubt ist
+     */
+    boolean isConcurrentReadSafe() {
+        return !(field instanceof MappedFieldStorage);
+    }
+
+    /**
+     * Liefere den Hashwert der aktuellen Belegung des Feldes. Er wird bei jedem
+     * Platzieren und Räumen in konstanter Zeit nachgeführt und hängt nur davon
+     * ab, welche Tierart an welcher Position steht. Zwei Felder mit gleicher
+     * Belegung haben denselben Hashwert, ein leeres Feld hat den Hashwert 0.
+     * 
+     * @return der Hashwert der Belegung
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Liefere den Zufallsschlüssel für eine Tierart an einer Position. Statt einer
+     * Tabelle mit einem Schlüssel pro Position und Tierart wird der Schlüssel mit
+     * der SplitMix64-Funktion aus Position und Kennung berechnet.
+     * 
+     * @param index die Position als Index (Zeile * Breite + Spalte)
+     * @param code  die Kennung der Tierart
+     * @return der Schlüssel, 0 für eine leere Position
+     */
+    private static long cellHash(long index, int code) {
+        if (code == Species.EMPTY) {
+            return 0;
+        }
+        long z = (index << 8 | code) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /**
@@ -98,7 +235,19 @@ public class Field {
      *         eingetragen ist
      */
     public Object getObjectAt(int row, int column) {
-        return field[row][column];
+        return field.get(row, column);
+    }
+
+    /**
+     * Liefere die Kennung der Tierart an der angegebenen Position.
+     * 
+     * @param row    die gewünschte Zeile
+     * @param column die gewünschte Spalte
+     * @return die Kennung der Tierart (siehe {@link Species}) oder
+     *         {@link Species#EMPTY}, wenn dort kein Tier eingetragen ist
+     */
+    public int getCode(int row, int column) {
+        return field.getCode(row, column);
     }
 
     /**
@@ -171,7 +320,7 @@ public class Field {
                         int nextColumn = column + sDiff;
                         // Ungueltige Positionen und Ausgangsposition ausschliessen.
                         if (nextColumn >= 0 && nextColumn < width && (zDiff != 0 || sDiff != 0)) {
-                            positions.add(new Position(nextRow, nextColumn));
+                            positions.add(positionAt(nextRow, nextColumn));
                         }
                     }
                 }
@@ -0,0 +1,23 @@
+package schulbeispiel;
+
+/**
+ * Ein Beobachter für die Änderungen an einem Feld. Er wird bei jeder Änderung
+ * der Belegung einer Position benachrichtigt und kann so eigene Daten über das
+ * Feld schrittweise nachführen, statt das ganze Feld erneut zu durchlaufen.
+ */
+public interface FieldListener {
+    /**
+     * Die Tierart an einer Position hat sich geändert.
+     *
+     * @param row     die Zeile der Position
+     * @param column  die Spalte der Position
+     * @param oldCode die bisherige Kennung (siehe {@link Species})
+     * @param newCode die neue Kennung
+     */
+    void cellChanged(int row, int column, int oldCode, int newCode);
+
+    /**
+     * Das ganze Feld wurde geräumt.
+     */
+    void fieldCleared();
+}
@@ -0,0 +1,50 @@
+package schulbeispiel;
+
+/**
+ * Einfache Schleifen über alle Positionen eines Feldes, die nur mit
+ * Tierkennungen und Arrays arbeiten. Farben und Zähler werden über die
+ * Kennung der Tierart (siehe {@link Species}) aus Arrays gelesen; für leere
+ * Positionen steht der Eintrag 0 bereit, so dass keine Fallunterscheidung
+ * nötig ist.
+ */
+public class FieldRaster {
+
+    /**
+     * Schreibe für jede Position des Feldes die Farbe ihrer Tierart in einen
+     * Bildpuffer (eine Zeile nach der anderen) und zähle dabei die Tierarten.
+     * 
+     * @param field   das Feld
+     * @param palette die Farbe (RGB) pro Tierkennung, Index 0 für leere
+     *                Positionen
+     * @param pixels  der Bildpuffer mit mindestens Tiefe * Breite Einträgen
+     * @param counts  die Zähler pro Tierkennung, werden erhöht
+     */
+    public static void rasterize(Field field, int[] palette, int[] pixels, int[] counts) {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        int i = 0;
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                int code = field.getCode(row, column);
+                pixels[i++] = palette[code];
+                counts[code]++;
+            }
+        }
+    }
+
+    /**
+     * Zähle die Tierarten im Feld.
+     * 
+     * @param field  das Feld
+     * @param counts die Zähler pro Tierkennung, werden erhöht
+     */
+    public static void count(Field field, int[] counts) {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        for (int row = 0; row < depth; row++) {
+            for (int column = 0; column < width; column++) {
+                counts[field.getCode(row, column)]++;
+            }
+        }
+    }
+}
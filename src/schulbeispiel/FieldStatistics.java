@@ -1,30 +1,34 @@
 package schulbeispiel;
 
-import java.awt.Color;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * Diese Klasse sammelt und liefert statistische Daten über den Zustand eines
  * Feldes. Auf sehr flexible Weise: Es wird ein Zähler angelegt und gepflegt für
- * jede Objektklasse, die im Feld gefunden wird.
+ * jede Objektklasse, die im Feld gefunden wird. Die Zähler liegen in einem
+ * Array, das über die Kennung der Tierart (siehe {@link Species}) adressiert
+ * wird.
  * 
  * @author David J. Barnes und Michael Kölling
  * @version 2016.02.29
  */
 public class FieldStatistics {
     // Die Zähler für die jeweiligen Akteurstypen (Fuchs, Hase, etc.)
-    // in der Simulation.
-    private HashMap<Class, Counter> counter;
+    // in der Simulation, nach Tierkennung. Index 0 zählt die leeren Positionen.
+    private int[] counter;
+    // Wurde die Tierart im Feld schon einmal gefunden?
+    private boolean[] seen;
     // Sind die Zählerstände momentan aktuell?
     private boolean counterNow;
+    // Führt die Zählerstände nach, solange die Statistik einem Feld folgt
+    private FieldListener follower;
 
     /**
      * Erzeuge ein FeldStatistik-Objekt.
      */
     public FieldStatistics() {
-        // Wir legen eine Sammlung für die Zähler an, die wir für
-        // die gefundenen Tierarten erzeugen.
-        counter = new HashMap<>();
+        counter = new int[Species.MAX_SPECIES + 1];
+        seen = new boolean[Species.MAX_SPECIES + 1];
         counterNow = false;
     }
 
@@ -38,12 +42,13 @@ public class FieldStatistics {
         if (!counterNow) {
             determineCountingNumbers(field);
         }
-        for (Class key : counter.keySet()) {
-            Counter info = counter.get(key);
-            buffer.append(info.getName());
-            buffer.append(": ");
-            buffer.append(info.getCount());
-            buffer.append(' ');
+        for (int id = 1; id < counter.length; id++) {
+            if (seen[id]) {
+                buffer.append(Species.classOf(id).getName());
+                buffer.append(": ");
+                buffer.append(counter[id]);
+                buffer.append(' ');
+            }
         }
         return buffer.toString();
     }
@@ -51,15 +56,24 @@ public class FieldStatistics {
     /**
      * Liefere die Anzahl der Individuen in der Population einer gegebenen Klasse.
      * 
-     * @return einen int-Wert mit der Anzahl für diese Klasse
+     * @return einen int-Wert mit der Anzahl für diese Klasse (0, wenn die Klasse
+     *         im Feld noch nie vorkam)
      */
     public int getResidentCount(Field field, Class key) {
+        return getResidentCount(field, Species.idOf(key));
+    }
+
+    /**
+     * Liefere die Anzahl der Individuen in der Population einer gegebenen Tierart.
+     * 
+     * @param id die Kennung der Tierart
+     * @return einen int-Wert mit der Anzahl für diese Tierart
+     */
+    public int getResidentCount(Field field, int id) {
         if (!counterNow) {
             determineCountingNumbers(field);
         }
-
-        Counter info = counter.get(key);
-        return info.getCount();
+        return counter[id];
     }
 
     /**
@@ -67,10 +81,7 @@ public class FieldStatistics {
      */
     public void reset() {
         counterNow = false;
-        for (Class key : counter.keySet()) {
-            Counter singleCounter = counter.get(key);
-            singleCounter.reset();
-        }
+        Arrays.fill(counter, 0);
     }
 
     /**
@@ -79,14 +90,71 @@ public class FieldStatistics {
      * @param organism Klasse der Tierart, für die erhöht werden soll
      */
     public void increaseCounter(Class organism) {
-        Counter singleCounter = counter.get(organism);
-        if (singleCounter == null) {
-            // Wir haben noch keinen Zähler für
-            // diese Spezies - also neu anlegen
-            singleCounter = new Counter(organism.getName());
-            counter.put(organism, singleCounter);
+        increaseCounter(Species.idOf(organism), 1);
+    }
+
+    /**
+     * Erhöhe den Zähler für eine Tierart um eine bereits bekannte Anzahl, z.B.
+     * aus einer {@link DensityPyramid}.
+     * 
+     * @param id    die Kennung der Tierart, für die erhöht werden soll
+     * @param count die Anzahl der Tiere dieser Art
+     */
+    public void increaseCounter(int id, int count) {
+        counter[id] += count;
+        seen[id] = true;
+    }
+
+    /**
+     * Übernimm die Zählerstände aus einem Zählarray, wie es
+     * {@link FieldRaster#rasterize} füllt.
+     * 
+     * @param counts die Anzahl pro Tierkennung, Index 0 für leere Positionen
+     */
+    public void addCounts(int[] counts) {
+        for (int id = 1; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                increaseCounter(id, counts[id]);
+            }
         }
-        singleCounter.increase();
+    }
+
+    /**
+     * Führe die Zählerstände bei jeder Änderung des Feldes nach, statt das Feld
+     * bei jeder Abfrage neu auszuzählen. Das Feld wird dafür einmal ausgezählt,
+     * danach melden sich die Änderungen über einen {@link FieldListener}.
+     * {@link #reset()} darf danach nicht mehr aufgerufen werden.
+     * 
+     * @param field das Feld, dessen Bewohner gezählt werden
+     */
+    public void follow(Field field) {
+        determineCountingNumbers(field);
+        follower = new FieldListener() {
+            public void cellChanged(int row, int column, int oldCode, int newCode) {
+                if (oldCode != Species.EMPTY) {
+                    counter[oldCode]--;
+                }
+                if (newCode != Species.EMPTY) {
+                    increaseCounter(newCode, 1);
+                }
+            }
+
+            public void fieldCleared() {
+                Arrays.fill(counter, 0);
+            }
+        };
+        field.addListener(follower);
+    }
+
+    /**
+     * Höre auf, dem Feld zu folgen (siehe {@link #follow(Field)}).
+     * 
+     * @param field das Feld, dem die Statistik bisher folgt
+     */
+    public void unfollow(Field field) {
+        field.removeListener(follower);
+        follower = null;
+        reset();
     }
 
     /**
@@ -108,9 +176,8 @@ public class FieldStatistics {
         if (!counterNow) {
             determineCountingNumbers(field);
         }
-        for (Class key : counter.keySet()) {
-            Counter info = counter.get(key);
-            if (info.getCount() > 0) {
+        for (int id = 1; id < counter.length; id++) {
+            if (counter[id] > 0) {
                 notNull++;
             }
         }
@@ -125,15 +192,12 @@ public class FieldStatistics {
      * @param field das Feld, für das die Statistik erstellt werden soll
      */
     private void determineCountingNumbers(Field field) {
+        Object event = SimulationEvents.EVENTS.beginRecount();
         reset();
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int column = 0; column < field.getWidth(); column++) {
-                Object tier = field.getObjectAt(row, column);
-                if (tier != null) {
-                    increaseCounter(tier.getClass());
-                }
-            }
-        }
+        int[] counts = new int[counter.length];
+        FieldRaster.count(field, counts);
+        addCounts(counts);
         counterNow = true;
+        SimulationEvents.EVENTS.endRecount(event, (long) field.getDepth() * field.getWidth());
     }
 }
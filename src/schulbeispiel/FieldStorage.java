@@ -0,0 +1,58 @@
+package schulbeispiel;
+
+/**
+ * Der Speicher hinter einem Feld. Für jede Position werden das dort abgelegte
+ * Objekt und die Kennung seiner Tierart (siehe {@link Species}) verwaltet.
+ * Unterschiedliche Implementierungen legen diese Daten im Java-Heap oder
+ * außerhalb davon ab.
+ */
+public interface FieldStorage {
+    /**
+     * @return die Tiefe (Anzahl der Zeilen) des Speichers
+     */
+    int getDepth();
+
+    /**
+     * @return die Breite (Anzahl der Spalten) des Speichers
+     */
+    int getWidth();
+
+    /**
+     * Liefere das Objekt an der gegebenen Position.
+     *
+     * @param row    die Zeile
+     * @param column die Spalte
+     * @return das Objekt oder null, wenn die Position leer ist
+     */
+    Object get(int row, int column);
+
+    /**
+     * Liefere die Kennung der Tierart an der gegebenen Position.
+     *
+     * @param row    die Zeile
+     * @param column die Spalte
+     * @return die Kennung oder {@link Species#EMPTY}
+     */
+    int getCode(int row, int column);
+
+    /**
+     * Lege ein Objekt an der gegebenen Position ab. Ein Objekt, das dort bereits
+     * abgelegt war, geht verloren.
+     *
+     * @param row      die Zeile
+     * @param column   die Spalte
+     * @param organism das Objekt oder null, um die Position zu leeren
+     * @param code     die Kennung der Tierart des Objektes
+     */
+    void set(int row, int column, Object organism, int code);
+
+    /**
+     * Leere alle Positionen.
+     */
+    void clear();
+
+    /**
+     * Gib den Speicher frei. Danach darf der Speicher nicht mehr benutzt werden.
+     */
+    void release();
+}
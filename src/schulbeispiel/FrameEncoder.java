@@ -0,0 +1,245 @@
+package schulbeispiel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.Deflater;
+
+/**
+ * Kodiert den Zustand eines Feldes als Schlüssel- oder Deltabild im Format des
+ * {@link ReplayRecorder}. Welche Positionen sich seit dem letzten Bild geändert
+ * haben, erfährt der Kodierer als {@link FieldListener} vom Feld. Das fertige
+ * Bild liegt mit Deflate komprimiert in einem Puffer, der beim nächsten Bild
+ * wiederverwendet wird. Der Kodierer wird vom {@link ReplayRecorder} und von
+ * der {@link LiveView} benutzt.
+ */
+final class FrameEncoder implements FieldListener {
+    private final Field field;
+    // Die Kennungen aller Positionen beim letzten kodierten Bild
+    private final byte[] last;
+    // Die Positionen, die sich seit dem letzten Schritt geändert haben könnten
+    private final BitSet dirty;
+    // Wurde das Feld seit dem letzten Schritt geräumt?
+    private boolean cleared;
+    // Die Anzahl der Tierkennungen beim letzten Schlüsselbild, 0 vor dem ersten
+    private int speciesCount;
+
+    // Der Puffer für die Nutzdaten des aktuellen Bildes
+    private byte[] payload = new byte[1 << 12];
+    private int length;
+    // Die Nutzdaten werden danach noch mit Deflate komprimiert
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] compressed = new byte[1 << 12];
+    private int compressedLength;
+
+    /**
+     * Erzeuge einen Kodierer und melde ihn beim Feld an.
+     *
+     * @param field das Feld, dessen Zustand kodiert wird
+     */
+    FrameEncoder(Field field) {
+        if ((long) field.getDepth() * field.getWidth() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Field too large for replay");
+        }
+        this.field = field;
+        last = new byte[field.getDepth() * field.getWidth()];
+        dirty = new BitSet(last.length);
+        field.addListener(this);
+    }
+
+    /**
+     * Melde den Kodierer beim Feld ab.
+     */
+    void detach() {
+        field.removeListener(this);
+    }
+
+    /**
+     * @return das Feld, dessen Zustand kodiert wird
+     */
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * Ein Deltabild reicht nicht, wenn noch kein Schlüsselbild kodiert wurde,
+     * das Feld geräumt wurde oder neue Tierarten hinzugekommen sind.
+     *
+     * @return true, wenn das nächste Bild ein Schlüsselbild sein muss
+     */
+    boolean isKeyframeNeeded() {
+        return speciesCount == 0 || cleared || Species.count() != speciesCount;
+    }
+
+    /**
+     * Kodiere das ganze Feld: die Anzahl der Tierkennungen und die Klassennamen
+     * zu den Kennungen ab 1, dann Zeile für Zeile die Läufe (Länge, Kennung)
+     * gleicher Kennung.
+     */
+    void encodeKeyframe() {
+        length = 0;
+        speciesCount = Species.count();
+        putVarInt(speciesCount);
+        for (int id = 1; id < speciesCount; id++) {
+            byte[] name = Species.classOf(id).getName().getBytes(StandardCharsets.UTF_8);
+            putVarInt(name.length);
+            putBytes(name, 0, name.length);
+        }
+        int width = field.getWidth();
+        int runCode = -1;
+        int runLength = 0;
+        int index = 0;
+        for (int row = 0; row < field.getDepth(); row++) {
+            for (int column = 0; column < width; column++) {
+                int code = field.getCode(row, column);
+                last[index++] = (byte) code;
+                if (code != runCode) {
+                    if (runLength > 0) {
+                        putVarInt(runLength);
+                        putByte(runCode);
+                    }
+                    runCode = code;
+                    runLength = 0;
+                }
+                runLength++;
+            }
+        }
+        putVarInt(runLength);
+        putByte(runCode);
+        compress();
+    }
+
+    /**
+     * Kodiere die Positionen, die sich seit dem letzten Bild geändert haben.
+     * Jede geänderte Position ergibt eine Zahl aus dem Abstand zur vorigen
+     * geänderten Position und der neuen Kennung: Abstand * Anzahl der
+     * Tierkennungen + Kennung.
+     */
+    void encodeDelta() {
+        // Eine Position kann sich im selben Schritt geändert und wieder
+        // zurückgeändert haben; sie wird dann nicht gespeichert.
+        length = 0;
+        int width = field.getWidth();
+        int previous = -1;
+        for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+            int code = field.getCode(index / width, index % width);
+            if ((byte) code != last[index]) {
+                last[index] = (byte) code;
+                putVarInt((long) (index - previous - 1) * speciesCount + code);
+                previous = index;
+            }
+        }
+        compress();
+    }
+
+    /**
+     * Beende einen Schritt. Die Änderungen bis hierher gelten als kodiert, auch
+     * wenn in diesem Schritt kein Bild kodiert wurde; das nächste Bild muss dann
+     * ein Schlüsselbild sein.
+     *
+     * @param encoded wurde in diesem Schritt ein Bild kodiert?
+     */
+    void endStep(boolean encoded) {
+        dirty.clear();
+        cleared = false;
+        if (!encoded) {
+            speciesCount = 0;
+        }
+    }
+
+    /**
+     * @return die Länge der Nutzdaten des letzten Bildes vor der Kompression
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * @return der Puffer mit den komprimierten Nutzdaten des letzten Bildes
+     */
+    byte[] getCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @return die Länge der komprimierten Nutzdaten des letzten Bildes
+     */
+    int getCompressedLength() {
+        return compressedLength;
+    }
+
+    /**
+     * Liefere das letzte Bild, wie es in einer Aufzeichnung steht: die Art, die
+     * Schrittnummer, die Länge der Nutzdaten und der komprimierten Nutzdaten als
+     * varint, gefolgt von den komprimierten Nutzdaten.
+     *
+     * @param type die Art des Bildes (ReplayRecorder.KEYFRAME oder DELTA)
+     * @param step die Schrittnummer
+     * @return das Bild in einem neuen Array
+     */
+    byte[] toFrame(int type, int step) {
+        byte[] frame = new byte[1 + 3 * 5 + compressedLength];
+        frame[0] = (byte) type;
+        int offset = putVarInt(frame, 1, step);
+        offset = putVarInt(frame, offset, length);
+        offset = putVarInt(frame, offset, compressedLength);
+        System.arraycopy(compressed, 0, frame, offset, compressedLength);
+        return Arrays.copyOf(frame, offset + compressedLength);
+    }
+
+    public void cellChanged(int row, int column, int oldCode, int newCode) {
+        dirty.set(row * field.getWidth() + column);
+    }
+
+    public void fieldCleared() {
+        cleared = true;
+    }
+
+    private void compress() {
+        deflater.reset();
+        deflater.setInput(payload, 0, length);
+        deflater.finish();
+        compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+    }
+
+    private static int putVarInt(byte[] target, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset++] = (byte) value;
+        return offset;
+    }
+
+    private void putVarInt(long value) {
+        ensure(10);
+        while ((value & ~0x7F) != 0) {
+            payload[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        payload[length++] = (byte) value;
+    }
+
+    private void putByte(int value) {
+        ensure(1);
+        payload[length++] = (byte) value;
+    }
+
+    private void putBytes(byte[] values, int offset, int count) {
+        ensure(count);
+        System.arraycopy(values, offset, payload, length, count);
+        length += count;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > payload.length) {
+            payload = Arrays.copyOf(payload, Math.max(payload.length * 2, length + extra));
+        }
+    }
+}
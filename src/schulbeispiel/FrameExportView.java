@@ -0,0 +1,246 @@
+package schulbeispiel;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+
+/**
+ * Eine Ansicht ohne Fenster, die jeden Schritt als Einzelbild in ein
+ * Verzeichnis schreibt, z.B. um daraus ein Video zu erzeugen. Jede Position
+ * wird zu einem Pixel. Der Simulations-Thread schreibt das Feld nur in einen
+ * freien Bildpuffer; das Kodieren und Schreiben der Dateien übernehmen mehrere
+ * Hintergrund-Threads. Die Bildpuffer werden wiederverwendet. Der
+ * Simulations-Thread wartet nur, wenn alle Bildpuffer noch auf ihre Kodierung
+ * warten.
+ */
+public class FrameExportView implements SimulationView {
+    // Die Farbe für leere Positionen
+    private static final Color EMPTY_COLOR = Color.white;
+    // Die Farbe für Objekte ohne definierte Farbe
+    private static final Color UNDEF_COLOR = Color.gray;
+
+    /**
+     * Die möglichen Dateiformate der Einzelbilder.
+     */
+    public enum Format {
+        // PNG-Dateien
+        PNG,
+        // Rohdaten: drei Bytes (Rot, Grün, Blau) pro Pixel, zeilenweise
+        RGB
+    }
+
+    private final File directory;
+    private final Format format;
+    private final int depth, width;
+    // Die freien Bildpuffer
+    private final BlockingQueue<int[]> freeFrames;
+    // Die Threads zum Kodieren der Bilder
+    private final ExecutorService encoders;
+    // Die Farben (RGB) nach Tierkennung, Index 0 für leere Positionen
+    private int[] palette;
+    private FieldStatistics stats;
+    // Die laufende Nummer des nächsten Bildes
+    private int frame;
+    // Der erste Fehler beim Schreiben eines Bildes
+    private volatile IOException failure;
+
+    /**
+     * Erzeuge eine Ansicht, die Einzelbilder in das gegebene Verzeichnis schreibt.
+     *
+     * @param directory das Zielverzeichnis (wird bei Bedarf angelegt)
+     * @param depth     die Tiefe des Feldes
+     * @param width     die Breite des Feldes
+     * @param format    das Dateiformat der Bilder
+     * @param threads   die Anzahl der Threads zum Kodieren
+     * @param frames    die Anzahl der Bildpuffer, also wie viele Bilder höchstens
+     *                  auf ihre Kodierung warten
+     */
+    public FrameExportView(File directory, int depth, int width, Format format, int threads, int frames) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new UncheckedIOException(new IOException("Could not create directory " + directory));
+        }
+        this.directory = directory;
+        this.format = format;
+        this.depth = depth;
+        this.width = width;
+        freeFrames = new ArrayBlockingQueue<>(frames);
+        for (int i = 0; i < frames; i++) {
+            freeFrames.add(new int[depth * width]);
+        }
+        // Die Warteschlange kann nie mehr Aufträge enthalten, als es Bildpuffer gibt.
+        encoders = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private int count;
+
+                    public synchronized Thread newThread(Runnable task) {
+                        Thread thread = new Thread(task, "frame-encoder-" + ++count);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        palette = new int[] { EMPTY_COLOR.getRGB() };
+        stats = new FieldStatistics();
+    }
+
+    /**
+     * Definiere eine Farbe für die gegebene Tierklasse.
+     *
+     * @param organismClass das Klassenobjekt der Tierklasse
+     * @param color         die zu benutzende Farbe für die Tierklasse
+     */
+    public void setColor(Class organismClass, Color color) {
+        int id = Species.idOf(organismClass);
+        growPalette(id + 1);
+        palette[id] = color.getRGB();
+    }
+
+    /**
+     * Entscheide, ob die Simulation weiterlaufen soll.
+     *
+     * @return true wenn noch mehr als eine Spezies lebendig ist
+     */
+    public boolean isActive(Field field) {
+        return stats.istAktiv(field);
+    }
+
+    /**
+     * Schreibe das Feld in einen freien Bildpuffer und übergib ihn zum Kodieren.
+     *
+     * @param step  welcher Iterationsschritt ist dies?
+     * @param field das Feld, das angezeigt werden soll
+     */
+    public void showStatus(int step, Field field) {
+        if (failure != null) {
+            throw new UncheckedIOException("Could not write frame", failure);
+        }
+        int[] pixels;
+        try {
+            pixels = freeFrames.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        growPalette(Species.count());
+        int[] counts = new int[palette.length];
+        FieldRaster.rasterize(field, palette, pixels, counts);
+        stats.reset();
+        stats.addCounts(counts);
+        stats.countingFinished();
+
+        final int[] framePixels = pixels;
+        final File file = new File(directory,
+                String.format("frame_%06d.%s", frame++, format.name().toLowerCase()));
+        encoders.execute(new Runnable() {
+            public void run() {
+                try {
+                    write(framePixels, file);
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    freeFrames.add(framePixels);
+                }
+            }
+        });
+    }
+
+    /**
+     * Bereite einen neuen Lauf vor. Die Nummerierung der Bilder läuft weiter.
+     */
+    public void reset() {
+        stats.reset();
+    }
+
+    /**
+     * Warte, bis alle Bilder geschrieben sind, und beende die Hintergrund-Threads.
+     */
+    public void close() throws IOException {
+        encoders.shutdown();
+        try {
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Kodiere einen Bildpuffer in die gegebene Datei.
+     */
+    private void write(int[] pixels, File file) throws IOException {
+        if (format == Format.PNG) {
+            // Das Bild benutzt den Bildpuffer direkt, ohne ihn zu kopieren.
+            DirectColorModel model = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+            WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), width,
+                    depth, width, model.getMasks(), null);
+            BufferedImage image = new BufferedImage(model, raster, false, null);
+            if (!ImageIO.write(image, "png", file)) {
+                throw new IOException("No PNG writer available");
+            }
+        } else {
+            byte[] row = new byte[width * 3];
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+                for (int y = 0; y < depth; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int color = pixels[y * width + x];
+                        row[3 * x] = (byte) (color >> 16);
+                        row[3 * x + 1] = (byte) (color >> 8);
+                        row[3 * x + 2] = (byte) color;
+                    }
+                    out.write(row);
+                }
+            }
+        }
+    }
+
+    private void growPalette(int size) {
+        if (palette.length < size) {
+            int oldSize = palette.length;
+            palette = Arrays.copyOf(palette, size);
+            Arrays.fill(palette, oldSize, size, UNDEF_COLOR.getRGB());
+        }
+    }
+
+    /**
+     * Führe eine Simulation ohne Fenster aus und schreibe jeden Schritt als Bild.
+     *
+     * @param args Zielverzeichnis, Anzahl der Schritte, Tiefe und Breite (alle
+     *             optional)
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "frames");
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 120;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        FrameExportView view = new FrameExportView(directory, depth, width, Format.PNG, threads, 2 * threads);
+        view.setColor(Hase.class, Color.ORANGE);
+        view.setColor(Fuchs.class, Color.BLUE);
+        Simulator simulator = new Simulator(new Field(depth, width), Collections.<SimulationView>singletonList(view));
+        long start = System.nanoTime();
+        simulator.simulate(steps);
+        view.close();
+        System.out.printf("%d Schritte in %.1f s%n", simulator.getStep(), (System.nanoTime() - start) / 1e9);
+    }
+}
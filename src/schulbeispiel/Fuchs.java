@@ -11,22 +11,12 @@ import java.util.Random;
  * @version 2016.03.18
  */
 public class Fuchs extends Organism {
-    // Eigenschaften aller Füchse (Klassenvariablen)
-
-    // Das Alter, in dem ein Fuchs gebärfähig wird.
-    private static final int GEBAER_ALTER = 15;
-    // Das Höchstalter eines Fuchses.
-    private static final int MAX_ALTER = 150;
-    // Die Wahrscheinlichkeit, mit der ein Fuchs Nachwuchs gebärt.
-    private static final double GEBAER_WAHRSCHEINLICHKEIT = 0.08;
-    // Die maximale Größe eines Wurfes (Anzahl der Jungen).
-    private static final int MAX_WURFGROESSE = 2;
-    // Der Nährwert eines einzelnen Hasen. Letztendlich ist
-    // dies die Anzahl der Schritte, die ein Fuchs bis zur
-    // nächsten Mahlzeit laufen kann.
-    private static final int HASEN_NAEHRWERT = 9;
+    // Eigenschaften aller Füchse (Klassenvariablen).
+
     // Ein gemeinsamer Zufallsgenerator, der die Geburten steuert.
     private static final Random rand = Randomnumbergenerator.getRNG();
+    // Der Vorrat an gestorbenen Füchsen für neue Geburten
+    private static final OrganismPool<Fuchs> POOL = new OrganismPool<>(100000);
 
     // Individuelle Eigenschaften (Instanzfelder).
 
@@ -34,11 +24,13 @@ public class Fuchs extends Organism {
     private int alter;
     // Der Futter-Level, der durch das Fressen von Hasen erhöht wird.
     private int futterLevel;
+    // Die Eigenschaften der Füchse in der Simulation dieses Fuchses
+    private SpeciesParameters eigenschaften;
 
     /**
-     * Erzeuge einen Fuchs. Ein Fuchs wird entweder neugeboren (Alter 0 Jahre und
-     * nicht hungrig) oder kann mit einem zufälligen Alter und zufälligem
-     * Hungergefühl erzeugt werden.
+     * Erzeuge einen Fuchs mit den vorgegebenen Eigenschaften. Ein Fuchs wird
+     * entweder neugeboren (Alter 0 Jahre und nicht hungrig) oder kann mit einem
+     * zufälligen Alter und zufälligem Hungergefühl erzeugt werden.
      * 
      * @param zufaelligesAlter falls true, hat der neue Fuchs ein zufälliges Alter
      *                         und einen zufälligen Futter-Level
@@ -46,13 +38,66 @@ public class Fuchs extends Organism {
      * @param position         die Position im Feld
      */
     public Fuchs(boolean zufaelligesAlter, Field feld, Position position) {
+        this(zufaelligesAlter, feld, position, new SpeciesParameters());
+    }
+
+    /**
+     * Erzeuge einen Fuchs.
+     * 
+     * @param zufaelligesAlter falls true, hat der neue Fuchs ein zufälliges Alter
+     *                         und einen zufälligen Futter-Level
+     * @param feld             das aktuelle belegte Feld
+     * @param position         die Position im Feld
+     * @param eigenschaften    die Eigenschaften der Füchse in dieser Simulation
+     */
+    public Fuchs(boolean zufaelligesAlter, Field feld, Position position, SpeciesParameters eigenschaften) {
         super(feld, position);
+        this.eigenschaften = eigenschaften;
+        initZustand(zufaelligesAlter);
+    }
+
+    /**
+     * Liefere einen neuen Fuchs. Wenn möglich, wird dafür ein gestorbener Fuchs
+     * aus dem Vorrat wiederverwendet.
+     * 
+     * @param zufaelligesAlter falls true, hat der neue Fuchs ein zufälliges Alter
+     *                         und einen zufälligen Futter-Level
+     * @param feld             das aktuelle belegte Feld
+     * @param position         die Position im Feld
+     * @param eigenschaften    die Eigenschaften der Füchse in dieser Simulation
+     * @return der neue Fuchs
+     */
+    public static Fuchs create(boolean zufaelligesAlter, Field feld, Position position,
+            SpeciesParameters eigenschaften) {
+        Fuchs fuchs = POOL.obtain();
+        if (fuchs == null) {
+            return new Fuchs(zufaelligesAlter, feld, position, eigenschaften);
+        }
+        fuchs.reinit(feld, position);
+        fuchs.eigenschaften = eigenschaften;
+        fuchs.initZustand(zufaelligesAlter);
+        return fuchs;
+    }
+
+    /**
+     * Lege diesen gestorbenen Fuchs in den Vorrat.
+     */
+    protected void recycle() {
+        eigenschaften = null;
+        forget();
+        POOL.release(this);
+    }
+
+    /**
+     * Setze Alter und Futter-Level eines neuen Fuchses.
+     */
+    private void initZustand(boolean zufaelligesAlter) {
         if (zufaelligesAlter) {
-            alter = rand.nextInt(MAX_ALTER);
-            futterLevel = rand.nextInt(HASEN_NAEHRWERT);
+            alter = rand.nextInt(eigenschaften.getFuchsMaxAlter());
+            futterLevel = rand.nextInt(eigenschaften.getHasenNaehrwert());
         } else {
             alter = 0;
-            futterLevel = HASEN_NAEHRWERT;
+            futterLevel = eigenschaften.getHasenNaehrwert();
         }
     }
 
@@ -88,7 +133,7 @@ public class Fuchs extends Organism {
      */
     private void alterErhoehen() {
         alter++;
-        if (alter > MAX_ALTER) {
+        if (alter > eigenschaften.getFuchsMaxAlter()) {
             die();
         }
     }
@@ -120,7 +165,7 @@ public class Fuchs extends Organism {
                 Hase hase = (Hase) tier;
                 if (hase.isAlive()) {
                     hase.die();
-                    futterLevel = HASEN_NAEHRWERT;
+                    futterLevel = eigenschaften.getHasenNaehrwert();
                     return pos;
                 }
             }
@@ -142,7 +187,7 @@ public class Fuchs extends Organism {
         int geburten = traechtig();
         for (int b = 0; b < geburten && frei.size() > 0; b++) {
             Position pos = frei.remove(0);
-            Fuchs jung = new Fuchs(false, feld, pos);
+            Fuchs jung = Fuchs.create(false, feld, pos, eigenschaften);
             neueFuechse.add(jung);
         }
     }
@@ -154,8 +199,8 @@ public class Fuchs extends Organism {
      */
     private int traechtig() {
         int wurfgroesse = 0;
-        if (kannGebaeren() && rand.nextDouble() <= GEBAER_WAHRSCHEINLICHKEIT) {
-            wurfgroesse = rand.nextInt(MAX_WURFGROESSE) + 1;
+        if (kannGebaeren() && rand.nextDouble() <= eigenschaften.getFuchsGebaerWahrscheinlichkeit()) {
+            wurfgroesse = rand.nextInt(eigenschaften.getFuchsMaxWurfgroesse()) + 1;
         }
         return wurfgroesse;
     }
@@ -164,7 +209,70 @@ public class Fuchs extends Organism {
      * Ein Fuchs kann gebären, wenn er das gebärfähige Alter erreicht hat.
      */
     private boolean kannGebaeren() {
-        return alter >= GEBAER_ALTER;
+        return alter >= eigenschaften.getFuchsGebaerAlter();
+    }
+
+    /**
+     * Der erste Teil eines gleichzeitigen Schrittes ({@link SynchronousUpdate}):
+     * der Fuchs wird älter und hungriger und stirbt eventuell.
+     */
+    void altern() {
+        alterErhoehen();
+        hungerVergroessern();
+    }
+
+    /**
+     * Der Fuchs hat in einem gleichzeitigen Schritt einen Hasen gefressen.
+     */
+    void fressen() {
+        futterLevel = eigenschaften.getHasenNaehrwert();
+    }
+
+    /**
+     * Erzeuge die Wurfgroesse für einen gleichzeitigen Schritt aus dem
+     * Zufallsstrom dieses Fuchses.
+     * 
+     * @param random der Zufallsstrom des Fuchses in diesem Schritt
+     * @return Wurfgroesse (kann null sein)
+     */
+    int traechtig(CounterRandom random) {
+        int wurfgroesse = 0;
+        if (kannGebaeren() && random.nextDouble() <= eigenschaften.getFuchsGebaerWahrscheinlichkeit()) {
+            wurfgroesse = random.nextInt(eigenschaften.getFuchsMaxWurfgroesse()) + 1;
+        }
+        return wurfgroesse;
+    }
+
+    /**
+     * @return das Alter des Fuchses
+     */
+    int getAlter() {
+        return alter;
+    }
+
+    /**
+     * Setze das Alter des Fuchses, z.B. wenn er aus einem anderen Prozess übernommen
+     * wird.
+     * 
+     * @param alter das neue Alter
+     */
+    void setAlter(int alter) {
+        this.alter = alter;
     }
 
+    /**
+     * @return der Futter-Level des Fuchses
+     */
+    int getFutterLevel() {
+        return futterLevel;
+    }
+
+    /**
+     * Setze den Futter-Level des Fuchses.
+     * 
+     * @param futterLevel der neue Futter-Level
+     */
+    void setFutterLevel(int futterLevel) {
+        this.futterLevel = futterLevel;
+    }
 }
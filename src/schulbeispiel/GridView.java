@@ -2,13 +2,18 @@ package schulbeispiel;
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 /**
  * Die Ansicht zeigt für jede Position ein gefärbtes Rechteck, das den
  * jeweiligen Inhalt repräsentiert. Die Farben für die verschiedenen Tierarten
- * können mit der Methode setzeFarbe definiert werden.
+ * können mit der Methode setzeFarbe definiert werden. Ist das Feld größer als
+ * die Ansicht, wird statt einzelner Positionen die Dichte jeder Tierart als
+ * Farbmischung gezeigt. Mit dem Mausrad kann vergrößert, durch Ziehen mit der
+ * Maus verschoben und mit einem Doppelklick wieder das ganze Feld gezeigt
+ * werden.
  * 
  * @author Michael Kölling und David J. Barnes
  * @version 2016.03.18
@@ -25,11 +30,14 @@ public class GridView extends JFrame implements SimulationView {
     private JLabel countLabel, population;
     private Fieldview fieldview;
 
-    // Eine Map für die Farben der Simulationsteilnehmer
-    private Map<Class<?>, Color> colors;
+    // Die Farben (RGB) der Simulationsteilnehmer nach ihrer Tierkennung. Index 0
+    // enthält die Farbe für leere Positionen.
+    private int[] palette;
     // Ein Statistik-Objekt zur Berechnung und Speicherung
     // von Simulationsdaten
     private FieldStatistics stats;
+    // Die Dichtepyramide des angezeigten Feldes
+    private DensityPyramid pyramid;
 
     /**
      * Erzeuge eine Ansicht mit der gegebenen Breite und Höhe.
@@ -39,7 +47,7 @@ public class GridView extends JFrame implements SimulationView {
      */
     public GridView(int height, int width) {
         stats = new FieldStatistics();
-        colors = new HashMap<>();
+        palette = new int[] { EMPTY_COLOR.getRGB() };
 
         setTitle("Simulation");
         countLabel = new JLabel(COUNT_PREFIX, JLabel.CENTER);
@@ -58,58 +66,63 @@ public class GridView extends JFrame implements SimulationView {
     }
 
     /**
-     * Definiere eine Farbe für die gegebene Tierklasse.
+     * Definiere eine Farbe für die gegebene Tierklasse. Die Tierklasse erhält
+     * dabei ihre Kennung, über die die Farbe beim Zeichnen gefunden wird.
      * 
      * @param organism das Klassenobjekt der Tierklasse
      * @param color    die zu benutzende Farbe für die Tierklasse
      */
     public void setColor(Class organism, Color color) {
-        colors.put(organism, color);
+        int id = Species.idOf(organism);
+        growPalette(id + 1);
+        palette[id] = color.getRGB();
     }
 
     /**
-     * @return die definierte Farbe für die gegebene Tierklasse
+     * Vergrößere die Farbtabelle, so dass sie die gegebene Anzahl an Kennungen
+     * enthält. Tierarten ohne definierte Farbe erhalten UNDEF_COLOR.
      */
-    private Color getColor(Class organism) {
-        Color farbe = colors.get(organism);
-        if (farbe == null) {
-            // für die gegebene Klasse ist keine Farbe definiert
-            return UNDEF_COLOR;
-        } else {
-            return farbe;
+    private void growPalette(int size) {
+        if (palette.length < size) {
+            int oldSize = palette.length;
+            palette = Arrays.copyOf(palette, size);
+            Arrays.fill(palette, oldSize, size, UNDEF_COLOR.getRGB());
         }
     }
 
     /**
-     * Zeige den aktuellen Zustand des Feldes.
+     * Zeige den aktuellen Zustand des Feldes. Die Zählerstände stammen aus der
+     * Dichtepyramide, das Feld muss dafür nicht durchlaufen werden.
      * 
      * @param step  welcher Iterationsschritt ist dies?
      * @param field das Feld, das angezeigt werden soll
      */
     public void showStatus(int step, Field field) {
+        Object event = SimulationEvents.EVENTS.beginRepaint();
         if (!isVisible())
             setVisible(true);
 
         countLabel.setText(COUNT_PREFIX + step);
-        stats.reset();
-
-        fieldview.prepareDrawing();
+        if (pyramid == null || pyramid.getField() != field) {
+            if (pyramid != null) {
+                pyramid.detach();
+            }
+            pyramid = new DensityPyramid(field);
+        }
 
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int column = 0; column < field.getWidth(); column++) {
-                Object organism = field.getObjectAt(row, column);
-                if (organism != null) {
-                    stats.increaseCounter(organism.getClass());
-                    fieldview.drawMarker(column, row, getColor(organism.getClass()));
-                } else {
-                    fieldview.drawMarker(column, row, EMPTY_COLOR);
-                }
+        stats.reset();
+        growPalette(Species.count());
+        for (int code = 1; code < palette.length; code++) {
+            if (pyramid.getTotal(code) > 0) {
+                stats.increaseCounter(code, pyramid.getTotal(code));
             }
         }
         stats.countingFinished();
 
         population.setText(POPULATION_PREFIX + stats.getResidentInfo(field));
-        fieldview.repaint();
+        fieldview.show(pyramid, palette);
+
+        SimulationEvents.EVENTS.endRepaint(event, "GridView", step);
     }
 
     /**
@@ -135,15 +148,45 @@ public class GridView extends JFrame implements SimulationView {
      * Benutzungsschnittstelle definiert. Diese Komponente zeigt das Feld an. Dies
      * ist fortgeschrittene GUI-Technik - Sie können sie für Ihr Projekt ignorieren,
      * wenn Sie wollen.
+     * 
+     * Das Bild wird Pixel für Pixel in einen Bildpuffer geschrieben. Zeigt ein
+     * Pixel mehr als eine Position, wird die Farbe aus der Dichte der Tierarten
+     * in der passenden Stufe der Dichtepyramide gemischt. Der Aufwand pro Bild
+     * hängt damit von der Anzahl der Pixel ab und nicht von der Größe des Feldes.
+     * 
+     * Gezeichnet wird im Thread der Simulation (showStatus) und nach Mausaktionen
+     * im Event-Dispatch-Thread. Der Ausschnitt, die Pyramide, die Farbtabelle
+     * und der Bildpuffer werden deshalb nur unter der Sperre der Komponente
+     * gelesen und geändert. Wird während eines laufenden Schritts gezeichnet,
+     * kann das Bild einen halb ausgeführten Schritt zeigen; der nächste Aufruf
+     * von showStatus zeichnet es neu.
+     * 
+     * Die Sperre schützt das Feld nicht. Nach Mausaktionen werden die einzelnen
+     * Positionen deshalb nur gelesen, wenn das Feld gleichzeitiges Lesen erlaubt
+     * (siehe {@link Field#isConcurrentReadSafe()}). Sonst zeigt die Ansicht bis
+     * zum nächsten Schritt die feinste Stufe der Pyramide.
      */
     private class Fieldview extends JPanel {
         private final int STRETCH_FACTOR = 6;
+        // Ab dieser Vergrößerung wird zwischen den Positionen eine Lücke gelassen
+        private final int GAP_SCALE = 3;
+        // Der Faktor für einen Schritt des Mausrades
+        private final double ZOOM_STEP = 1.25;
+        // Die Farbe außerhalb des Feldes
+        private final int OUTSIDE_COLOR = Color.lightGray.getRGB();
 
         private int fieldWidth, fieldHeight;
-        private int xFactor, yFactor;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        private BufferedImage fieldImage;
+        private int[] pixels;
+        // Pixel pro Position und die Position in der linken oberen Ecke
+        private double scale, originX, originY;
+        // Wurde der Ausschnitt vom Benutzer verändert?
+        private boolean userView;
+        // Die zuletzt gezeichnete Pyramide und Farbtabelle
+        private DensityPyramid pyramid;
+        private int[] palette;
+        // Der Startpunkt beim Ziehen mit der Maus
+        private Point dragStart;
 
         /**
          * Erzeuge eine neue Komponente zur Feldansicht.
@@ -151,44 +194,220 @@ public class GridView extends JFrame implements SimulationView {
         public Fieldview(int height, int width) {
             fieldHeight = height;
             fieldWidth = width;
-            size = new Dimension(0, 0);
+            MouseAdapter mouse = new MouseAdapter() {
+                public void mouseWheelMoved(MouseWheelEvent e) {
+                    double factor = Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+                    zoom(e.getX(), e.getY(), factor);
+                }
+
+                public void mousePressed(MouseEvent e) {
+                    dragStart = e.getPoint();
+                }
+
+                public void mouseDragged(MouseEvent e) {
+                    if (dragStart != null) {
+                        pan(e.getX() - dragStart.x, e.getY() - dragStart.y);
+                        dragStart = e.getPoint();
+                    }
+                }
+
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) {
+                        showWholeField();
+                    }
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
         }
 
         /**
          * Der GUI-Verwaltung mitteilen, wie groß wir sein wollen. Der Name der Methode
-         * ist durch die GUI-Verwaltung festgelegt.
+         * ist durch die GUI-Verwaltung festgelegt. Größer als ein Großteil des
+         * Bildschirms wollen wir nicht werden.
          */
         public Dimension getPreferredSize() {
-            return new Dimension(fieldWidth * STRETCH_FACTOR, fieldHeight * STRETCH_FACTOR);
+            Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+            return new Dimension(Math.min(fieldWidth * STRETCH_FACTOR, screen.width * 3 / 4),
+                    Math.min(fieldHeight * STRETCH_FACTOR, screen.height * 3 / 4));
+        }
+
+        /**
+         * Vergrößere um den gegebenen Faktor, so dass die Position unter dem
+         * Mauszeiger an ihrem Platz bleibt.
+         */
+        private synchronized void zoom(int x, int y, double factor) {
+            double cellX = originX + x / scale;
+            double cellY = originY + y / scale;
+            scale *= factor;
+            originX = cellX - x / scale;
+            originY = cellY - y / scale;
+            userView = true;
+            refresh(false);
+        }
+
+        /**
+         * Verschiebe den Ausschnitt um die gegebene Anzahl Pixel.
+         */
+        private synchronized void pan(int dx, int dy) {
+            originX -= dx / scale;
+            originY -= dy / scale;
+            userView = true;
+            refresh(false);
+        }
+
+        /**
+         * Zeige wieder das ganze Feld.
+         */
+        private synchronized void showWholeField() {
+            userView = false;
+            refresh(false);
+        }
+
+        /**
+         * @param simulationThread wird im Thread der Simulation gezeichnet?
+         */
+        private void refresh(boolean simulationThread) {
+            if (pyramid != null) {
+                render(simulationThread);
+                repaint();
+            }
+        }
+
+        /**
+         * Zeichne das Feld nach einem Schritt mit der aktuellen Pyramide und
+         * Farbtabelle.
+         * 
+         * @param pyramid die Dichtepyramide des Feldes
+         * @param palette die Farbe (RGB) für jede Tierkennung
+         */
+        public synchronized void show(DensityPyramid pyramid, int[] palette) {
+            this.pyramid = pyramid;
+            this.palette = palette;
+            refresh(true);
+        }
+
+        /**
+         * Zeichne den aktuellen Ausschnitt des Feldes in den Bildpuffer. Der
+         * Aufrufer hält die Sperre der Komponente.
+         * 
+         * @param simulationThread darf das Feld ohne Rücksicht auf den Speicher
+         *                         gelesen werden?
+         */
+        private void render(boolean simulationThread) {
+            Dimension size = getSize();
+            if (size.width <= 0 || size.height <= 0) {
+                return;
+            }
+            if (fieldImage == null || fieldImage.getWidth() != size.width || fieldImage.getHeight() != size.height) {
+                fieldImage = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+                pixels = ((DataBufferInt) fieldImage.getRaster().getDataBuffer()).getData();
+            }
+            if (!userView) {
+                scale = Math.min((double) size.width / fieldWidth, (double) size.height / fieldHeight);
+                originX = 0;
+                originY = 0;
+            }
+            Field field = pyramid.getField();
+            if (scale >= 1 && (simulationThread || field.isConcurrentReadSafe())) {
+                renderCells(field, size.width, size.height);
+            } else {
+                renderDensity(size.width, size.height);
+            }
         }
 
         /**
-         * Bereite eine neue Zeichenrunde vor. Da die Komponente in der Größe geändert
-         * werden kann, muss der Maßstab neu berechnet werden.
+         * Zeichne jede sichtbare Position in ihrer Farbe.
          */
-        public void prepareDrawing() {
-            if (!size.equals(getSize())) { // Größe wurde geändert...
-                size = getSize();
-                fieldImage = fieldview.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xFactor = size.width / fieldWidth;
-                if (xFactor < 1) {
-                    xFactor = STRETCH_FACTOR;
+        private void renderCells(Field field, int w, int h) {
+            int[] columns = new int[w];
+            for (int x = 0; x < w; x++) {
+                columns[x] = cellAt(originX, x, fieldWidth);
+            }
+            boolean gaps = scale >= GAP_SCALE;
+            for (int y = 0; y < h; y++) {
+                int row = cellAt(originY, y, fieldHeight);
+                int offset = y * w;
+                if (row < 0) {
+                    Arrays.fill(pixels, offset, offset + w, OUTSIDE_COLOR);
+                    continue;
+                }
+                boolean rowGap = gaps && cellAt(originY, y + 1, Integer.MAX_VALUE) != row;
+                for (int x = 0; x < w; x++) {
+                    int column = columns[x];
+                    if (column < 0) {
+                        pixels[offset + x] = OUTSIDE_COLOR;
+                    } else if (rowGap || (gaps && x + 1 < w && columns[x + 1] != column)) {
+                        pixels[offset + x] = EMPTY_COLOR.getRGB();
+                    } else {
+                        // Eine Tierart, die während eines Schritts neu
+                        // hinzukommt, hat noch keine Farbe
+                        int code = field.getCode(row, column);
+                        pixels[offset + x] = code < palette.length ? palette[code] : UNDEF_COLOR.getRGB();
+                    }
                 }
-                yFactor = size.height / fieldHeight;
-                if (yFactor < 1) {
-                    yFactor = STRETCH_FACTOR;
+            }
+        }
+
+        /**
+         * Zeichne für jedes Pixel die Dichte der Tierarten. Benutzt wird die
+         * größte Stufe der Pyramide, deren Kacheln nicht größer als ein Pixel sind,
+         * mindestens aber Stufe 1 mit Kacheln aus 2x2 Positionen.
+         */
+        private void renderDensity(int w, int h) {
+            int level = 1;
+            while (level < pyramid.getLevels() && (1 << (level + 1)) <= 1 / scale) {
+                level++;
+            }
+            int tileArea = 1 << (2 * level);
+            int species = Math.min(palette.length, Species.count());
+            int empty = palette[Species.EMPTY];
+            for (int y = 0; y < h; y++) {
+                int row = cellAt(originY, y, fieldHeight);
+                int offset = y * w;
+                for (int x = 0; x < w; x++) {
+                    int column = cellAt(originX, x, fieldWidth);
+                    if (row < 0 || column < 0) {
+                        pixels[offset + x] = OUTSIDE_COLOR;
+                        continue;
+                    }
+                    int tileRow = row >> level;
+                    int tileColumn = column >> level;
+                    // Mische die Farben der Tierarten nach ihrer Dichte mit der
+                    // Farbe für leere Positionen.
+                    int occupied = 0;
+                    int r = 0, g = 0, b = 0;
+                    for (int code = 1; code < species; code++) {
+                        int count = pyramid.getCount(level, code, tileRow, tileColumn);
+                        if (count > 0) {
+                            int color = palette[code];
+                            r += count * ((color >> 16) & 0xFF);
+                            g += count * ((color >> 8) & 0xFF);
+                            b += count * (color & 0xFF);
+                            occupied += count;
+                        }
+                    }
+                    int free = Math.max(0, tileArea - occupied);
+                    r = (r + free * ((empty >> 16) & 0xFF)) / (occupied + free);
+                    g = (g + free * ((empty >> 8) & 0xFF)) / (occupied + free);
+                    b = (b + free * (empty & 0xFF)) / (occupied + free);
+                    pixels[offset + x] = (r << 16) | (g << 8) | b;
                 }
             }
         }
 
         /**
-         * Zeichne an der gegebenen Position ein Rechteck mit der gegebenen Farbe.
+         * Liefere die Position (Zeile oder Spalte) unter einem Pixel.
+         * 
+         * @return die Position oder -1, wenn das Pixel außerhalb des Feldes liegt
          */
-        public void drawMarker(int x, int y, Color color) {
-            g.setColor(color);
-            g.fillRect(x * xFactor, y * yFactor, xFactor - 1, yFactor - 1);
+        private int cellAt(double origin, int pixel, int limit) {
+            double cell = Math.floor(origin + pixel / scale);
+            if (cell < 0 || cell >= limit) {
+                return -1;
+            }
+            return (int) cell;
         }
 
         /**
@@ -196,15 +415,10 @@ public class GridView extends JFrame implements SimulationView {
          * interne Image in die Anzeige. Der Name der Methode ist durch die
          * GUI-Verwaltung festgelegt.
          */
-        public void paintComponent(Graphics g) {
+        public synchronized void paintComponent(Graphics g) {
+            super.paintComponent(g);
             if (fieldImage != null) {
-                Dimension currenSize = getSize();
-                if (size.equals(currenSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
-                } else {
-                    // Größe des aktuellen Images anpassen.
-                    g.drawImage(fieldImage, 0, 0, currenSize.width, currenSize.height, null);
-                }
+                g.drawImage(fieldImage, 0, 0, null);
             }
         }
     }
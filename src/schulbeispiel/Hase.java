@@ -12,36 +12,82 @@ import java.util.Random;
 public class Hase extends Organism {
     // Eigenschaften aller Hasen (Klassenvariablen).
 
-    // Das Alter, in dem ein Hase gebärfähig wird.
-    private static final int GEBAER_ALTER = 5;
-    // Das Höchstalter eines Hasen.
-    private static final int MAX_ALTER = 40;
-    // Die Wahrscheinlichkeit, mit der ein Hase Nachwuchs gebürt.
-    private static final double GEBAER_WAHRSCHEINLICHKEIT = 0.12;
-    // Die maximale Größe eines Wurfes (Anzahl der Jungen)
-    private static final int MAX_WURFGROESSE = 4;
     // Ein gemeinsamer Zufallsgenerator, der die Geburten steuert.
     private static final Random rand = Randomnumbergenerator.getRNG();
+    // Der Vorrat an gestorbenen Hasen für neue Geburten
+    private static final OrganismPool<Hase> POOL = new OrganismPool<>(100000);
 
     // Individuelle Eigenschaften eines Hasen (Instanzfelder).
 
     // Das Alter dieses Hasen.
     private int alter;
-    // Ist dieser Hase noch lebendig?
+    // Die Eigenschaften der Hasen in der Simulation dieses Hasen
+    private SpeciesParameters eigenschaften;
 
     /**
-     * Erzeuge einen neuen Hasen. Ein neuer Hase kann das Alter 0 (neugeboren) oder
-     * ein zufälliges Alter haben.
+     * Erzeuge einen neuen Hasen mit den vorgegebenen Eigenschaften. Ein neuer
+     * Hase kann das Alter 0 (neugeboren) oder ein zufälliges Alter haben.
      *
      * @param zufaelligesAlter soll der Hase ein zufälliges Alter haben?
      * @param feld             das aktuelle belegte Feld
      * @param position         die Position im Feld
      */
     public Hase(boolean zufaelligesAlter, Field feld, Position position) {
+        this(zufaelligesAlter, feld, position, new SpeciesParameters());
+    }
+
+    /**
+     * Erzeuge einen neuen Hasen.
+     *
+     * @param zufaelligesAlter soll der Hase ein zufälliges Alter haben?
+     * @param feld             das aktuelle belegte Feld
+     * @param position         die Position im Feld
+     * @param eigenschaften    die Eigenschaften der Hasen in dieser Simulation
+     */
+    public Hase(boolean zufaelligesAlter, Field feld, Position position, SpeciesParameters eigenschaften) {
         super(feld, position);
+        this.eigenschaften = eigenschaften;
+        initAlter(zufaelligesAlter);
+    }
+
+    /**
+     * Liefere einen neuen Hasen. Wenn möglich, wird dafür ein gestorbener Hase
+     * aus dem Vorrat wiederverwendet.
+     *
+     * @param zufaelligesAlter soll der Hase ein zufälliges Alter haben?
+     * @param feld             das aktuelle belegte Feld
+     * @param position         die Position im Feld
+     * @param eigenschaften    die Eigenschaften der Hasen in dieser Simulation
+     * @return der neue Hase
+     */
+    public static Hase create(boolean zufaelligesAlter, Field feld, Position position,
+            SpeciesParameters eigenschaften) {
+        Hase hase = POOL.obtain();
+        if (hase == null) {
+            return new Hase(zufaelligesAlter, feld, position, eigenschaften);
+        }
+        hase.reinit(feld, position);
+        hase.eigenschaften = eigenschaften;
+        hase.initAlter(zufaelligesAlter);
+        return hase;
+    }
+
+    /**
+     * Lege diesen gestorbenen Hasen in den Vorrat.
+     */
+    protected void recycle() {
+        eigenschaften = null;
+        forget();
+        POOL.release(this);
+    }
+
+    /**
+     * Setze das Alter eines neuen Hasen.
+     */
+    private void initAlter(boolean zufaelligesAlter) {
         alter = 0;
         if (zufaelligesAlter) {
-            alter = rand.nextInt(MAX_ALTER);
+            alter = rand.nextInt(eigenschaften.getHaseMaxAlter());
         }
     }
 
@@ -71,7 +117,7 @@ public class Hase extends Organism {
      */
     private void alterErhoehen() {
         alter++;
-        if (alter > MAX_ALTER) {
+        if (alter > eigenschaften.getHaseMaxAlter()) {
             die();
         }
     }
@@ -90,7 +136,7 @@ public class Hase extends Organism {
         int geburten = traechtig();
         for (int b = 0; b < geburten && frei.size() > 0; b++) {
             Position pos = frei.remove(0);
-            Hase jung = new Hase(false, feld, pos);
+            Hase jung = Hase.create(false, feld, pos, eigenschaften);
             neueHasen.add(jung);
         }
     }
@@ -102,8 +148,8 @@ public class Hase extends Organism {
      */
     private int traechtig() {
         int wurfgroesse = 0;
-        if (kannGebaeren() && rand.nextDouble() <= GEBAER_WAHRSCHEINLICHKEIT) {
-            wurfgroesse = rand.nextInt(MAX_WURFGROESSE) + 1;
+        if (kannGebaeren() && rand.nextDouble() <= eigenschaften.getHaseGebaerWahrscheinlichkeit()) {
+            wurfgroesse = rand.nextInt(eigenschaften.getHaseMaxWurfgroesse()) + 1;
         }
         return wurfgroesse;
     }
@@ -114,6 +160,46 @@ public class Hase extends Organism {
      * @return true wenn der Hase gebärfähig, sonst false
      */
     private boolean kannGebaeren() {
-        return alter >= GEBAER_ALTER;
+        return alter >= eigenschaften.getHaseGebaerAlter();
+    }
+
+    /**
+     * Der erste Teil eines gleichzeitigen Schrittes ({@link SynchronousUpdate}):
+     * der Hase wird älter und stirbt eventuell.
+     */
+    void altern() {
+        alterErhoehen();
+    }
+
+    /**
+     * Erzeuge die Wurfgroesse für einen gleichzeitigen Schritt aus dem
+     * Zufallsstrom dieses Hasen.
+     * 
+     * @param random der Zufallsstrom des Hasen in diesem Schritt
+     * @return Wurfgroesse (kann null sein)
+     */
+    int traechtig(CounterRandom random) {
+        int wurfgroesse = 0;
+        if (kannGebaeren() && random.nextDouble() <= eigenschaften.getHaseGebaerWahrscheinlichkeit()) {
+            wurfgroesse = random.nextInt(eigenschaften.getHaseMaxWurfgroesse()) + 1;
+        }
+        return wurfgroesse;
+    }
+
+    /**
+     * @return das Alter des Hasen
+     */
+    int getAlter() {
+        return alter;
+    }
+
+    /**
+     * Setze das Alter des Hasen, z.B. wenn er aus einem anderen Prozess übernommen
+     * wird.
+     * 
+     * @param alter das neue Alter
+     */
+    void setAlter(int alter) {
+        this.alter = alter;
     }
 }
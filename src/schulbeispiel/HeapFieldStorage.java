@@ -0,0 +1,54 @@
+package schulbeispiel;
+
+/**
+ * Der Standardspeicher für ein Feld: ein zweidimensionales Array im Java-Heap.
+ */
+public class HeapFieldStorage implements FieldStorage {
+    private int depth, width;
+    // Speicher für die Tiere
+    private Object[][] field;
+
+    /**
+     * Erzeuge einen Speicher mit den angegebenen Dimensionen.
+     *
+     * @param depth die Tiefe des Feldes
+     * @param width die Breite des Feldes
+     */
+    public HeapFieldStorage(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        field = new Object[depth][width];
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public Object get(int row, int column) {
+        return field[row][column];
+    }
+
+    public int getCode(int row, int column) {
+        return Species.codeOf(field[row][column]);
+    }
+
+    public void set(int row, int column, Object organism, int code) {
+        field[row][column] = organism;
+    }
+
+    public void clear() {
+        for (int zeile = 0; zeile < depth; zeile++) {
+            for (int spalte = 0; spalte < width; spalte++) {
+                field[zeile][spalte] = null;
+            }
+        }
+    }
+
+    public void release() {
+        field = null;
+    }
+}
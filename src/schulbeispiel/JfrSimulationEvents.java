@@ -0,0 +1,203 @@
+package schulbeispiel;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Die Ereignisse aus {@link SimulationEvents} für den Java Flight Recorder.
+ * Diese Klasse braucht jdk.jfr schon beim Übersetzen (JDK 8u262 oder neuer)
+ * und wird von SimulationEvents nur geladen, wenn die JVM jdk.jfr kennt.
+ */
+final class JfrSimulationEvents extends SimulationEvents {
+
+    @Name("schulbeispiel.Step")
+    @Label("Simulation Step")
+    @Category("Simulation")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Step extends Event {
+        @Label("Step")
+        int step;
+
+        @Label("Organisms")
+        @Description("Number of organisms after the step")
+        int organisms;
+
+        @Label("Births")
+        int births;
+
+        @Label("Deaths")
+        int deaths;
+    }
+
+    @Name("schulbeispiel.Population")
+    @Label("Population")
+    @Category("Simulation")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Population extends Event {
+        @Label("Step")
+        int step;
+
+        @Label("Species")
+        String species;
+
+        @Label("Count")
+        int count;
+    }
+
+    @Name("schulbeispiel.ActBatch")
+    @Label("Act Batch")
+    @Category("Simulation")
+    @Enabled(false)
+    @StackTrace(false)
+    static class ActBatch extends Event {
+        @Label("Step")
+        int step;
+
+        @Label("Species")
+        String species;
+
+        @Label("Count")
+        int count;
+
+        @Label("Act Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long actTime;
+    }
+
+    @Name("schulbeispiel.PopulationBurst")
+    @Label("Birth/Death Burst")
+    @Category("Simulation")
+    @Enabled(false)
+    @StackTrace(false)
+    static class PopulationBurst extends Event {
+        @Label("Step")
+        int step;
+
+        @Label("Births")
+        int births;
+
+        @Label("Deaths")
+        int deaths;
+
+        @Label("Organisms Before")
+        int organismsBefore;
+    }
+
+    @Name("schulbeispiel.Recount")
+    @Label("Field Recount")
+    @Category("Simulation")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Recount extends Event {
+        @Label("Cells")
+        long cells;
+    }
+
+    @Name("schulbeispiel.Repaint")
+    @Label("View Repaint")
+    @Category("Simulation")
+    @Enabled(false)
+    @StackTrace(false)
+    static class Repaint extends Event {
+        @Label("View")
+        String view;
+
+        @Label("Step")
+        int step;
+    }
+
+    Object beginStep() {
+        Step event = new Step();
+        event.begin();
+        return event;
+    }
+
+    void endStep(Object started, int step, int organisms, int births, int deaths) {
+        Step event = (Step) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.step = step;
+            event.organisms = organisms;
+            event.births = births;
+            event.deaths = deaths;
+            event.commit();
+        }
+    }
+
+    boolean isActBatchEnabled() {
+        return new ActBatch().isEnabled();
+    }
+
+    void actBatch(int step, String species, int count, long actTime) {
+        ActBatch event = new ActBatch();
+        event.step = step;
+        event.species = species;
+        event.count = count;
+        event.actTime = actTime;
+        event.commit();
+    }
+
+    boolean isPopulationEnabled() {
+        return new Population().isEnabled();
+    }
+
+    void population(int step, String species, int count) {
+        Population event = new Population();
+        event.step = step;
+        event.species = species;
+        event.count = count;
+        event.commit();
+    }
+
+    boolean isPopulationBurstEnabled() {
+        return new PopulationBurst().isEnabled();
+    }
+
+    void populationBurst(int step, int births, int deaths, int organismsBefore) {
+        PopulationBurst event = new PopulationBurst();
+        event.step = step;
+        event.births = births;
+        event.deaths = deaths;
+        event.organismsBefore = organismsBefore;
+        event.commit();
+    }
+
+    Object beginRecount() {
+        Recount event = new Recount();
+        event.begin();
+        return event;
+    }
+
+    void endRecount(Object started, long cells) {
+        Recount event = (Recount) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.cells = cells;
+            event.commit();
+        }
+    }
+
+    Object beginRepaint() {
+        Repaint event = new Repaint();
+        event.begin();
+        return event;
+    }
+
+    void endRepaint(Object started, String view, int step) {
+        Repaint event = (Repaint) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.view = view;
+            event.step = step;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package schulbeispiel;
+
+import java.util.Arrays;
+
+/**
+ * Ein Histogramm für Laufzeiten in Nanosekunden mit fest vorgegebenen Fächern.
+ * Die Fächer wachsen logarithmisch: jede Zweierpotenz ist in
+ * {@value #SUB_BUCKETS} gleich breite Fächer geteilt, so dass ein Perzentil auf
+ * etwa 12 Prozent genau bestimmt wird. Das Eintragen eines Wertes kostet nur
+ * wenige Rechenschritte und erzeugt keine Objekte.
+ */
+public class LatencyHistogram {
+    // Die Anzahl der Fächer pro Zweierpotenz (als Zweierpotenz)
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Die Anzahl aller Fächer, genug für jeden positiven long-Wert
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+    private long sum;
+
+    /**
+     * Trage eine gemessene Laufzeit ein.
+     *
+     * @param nanos die Laufzeit in Nanosekunden
+     */
+    public synchronized void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[bucket(nanos)]++;
+        total++;
+        sum += nanos;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Liefere die Laufzeit, die der gegebene Anteil der Messungen nicht
+     * überschreitet. Geliefert wird die Obergrenze des Faches, in dem das
+     * Perzentil liegt, höchstens aber das Maximum.
+     *
+     * @param fraction der Anteil, z.B. 0.99 für das 99. Perzentil
+     * @return die Laufzeit in Nanosekunden oder 0 ohne Messungen
+     */
+    public synchronized long getPercentile(double fraction) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBound(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return die größte eingetragene Laufzeit in Nanosekunden
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @return die mittlere Laufzeit in Nanosekunden oder 0 ohne Messungen
+     */
+    public synchronized long getMean() {
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * @return die Anzahl der eingetragenen Laufzeiten
+     */
+    public synchronized long getCount() {
+        return total;
+    }
+
+    /**
+     * Verwirf alle Messungen.
+     */
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * Liefere das Fach für einen Wert. Werte unter SUB_BUCKETS haben ein eigenes
+     * Fach; darüber bestimmen die Position des höchsten Bits und die
+     * SUB_BITS Bits danach das Fach.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return der größte Wert, der noch in das gegebene Fach fällt
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
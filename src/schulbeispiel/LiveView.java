@@ -0,0 +1,515 @@
+package schulbeispiel;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Eine Ansicht für den Browser. Ein kleiner HTTP-Dienst auf localhost liefert
+ * unter / eine Seite, die das Feld in einem Canvas zeichnet, und unter /live
+ * einen WebSocket, über den die Seite den Zustand des Feldes erhält.
+ *
+ * Ein neuer Zuhörer bekommt mit dem nächsten Schritt die Farben als JSON-Text
+ * und ein Schlüsselbild, danach pro Schritt ein Deltabild mit den geänderten
+ * Positionen. Die Bilder haben das Format eines Bildes im
+ * {@link ReplayRecorder} und werden vom {@link FrameEncoder} kodiert: jedes
+ * Bild wird pro Schritt nur einmal kodiert und als fertiger WebSocket-Rahmen
+ * an alle Zuhörer verteilt.
+ *
+ * Jeder Zuhörer hat einen eigenen Thread zum Senden und eine kurze
+ * Warteschlange. Ist sie voll, weil der Zuhörer nicht schnell genug liest,
+ * verwirft die Simulation seine wartenden Bilder, statt auf ihn zu warten, und
+ * schickt ihm beim nächsten Schritt ein neues Schlüsselbild.
+ */
+public class LiveView implements SimulationView {
+    // Der Standard-Port der Ansicht
+    public static final int DEFAULT_PORT = 47130;
+    // Die Anzahl der Bilder, die für einen Zuhörer höchstens warten
+    private static final int QUEUED_FRAMES = 8;
+    // Die Konstante aus RFC 6455 für die Antwort auf den Verbindungsaufbau
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    // Die Arten von WebSocket-Rahmen
+    private static final int TEXT = 0x1;
+    private static final int BINARY = 0x2;
+    private static final int CLOSE = 0x8;
+    private static final Color EMPTY_COLOR = Color.white;
+
+    private final ServerSocket server;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Map<String, Color> colors = new LinkedHashMap<>();
+    private FrameEncoder encoder;
+    private int clientCount;
+    // Statistik: kodierte Bilder und verworfene Bilder
+    private int frames, dropped;
+
+    /**
+     * Ein Zuhörer mit seiner Warteschlange.
+     */
+    private final class Client implements Runnable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUED_FRAMES);
+        // Braucht der Zuhörer ein Schlüsselbild? Nur der Simulations-Thread ändert es.
+        private boolean needsKeyframe = true;
+        private volatile boolean open = true;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        /**
+         * Stelle ein Bild in die Warteschlange, ohne zu warten. Ist die
+         * Warteschlange voll, werden alle wartenden Bilder verworfen.
+         *
+         * @return false, wenn das Bild verworfen wurde
+         */
+        boolean offer(byte[] packet) {
+            if (queue.offer(packet)) {
+                return true;
+            }
+            dropped += queue.size() + 1;
+            queue.clear();
+            needsKeyframe = true;
+            return false;
+        }
+
+        /**
+         * Sende die Bilder der Warteschlange, bis die Verbindung endet.
+         */
+        public void run() {
+            try {
+                while (open) {
+                    out.write(queue.take());
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Der Zuhörer hat die Verbindung getrennt
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            open = false;
+            clients.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Die Verbindung ist ohnehin verloren
+            }
+        }
+    }
+
+    /**
+     * Erzeuge eine Ansicht, die auf dem gegebenen Port von localhost auf Browser
+     * wartet.
+     *
+     * @param port der Port, 0 für einen freien Port
+     */
+    public LiveView(int port) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "live-view-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return der Port, an dem die Ansicht wartet
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Definiere eine Farbe für die gegebene Tierklasse.
+     */
+    public synchronized void setColor(Class organismClass, Color color) {
+        colors.put(organismClass.getName(), color);
+    }
+
+    /**
+     * Die Ansicht entscheidet nicht über das Ende der Simulation.
+     *
+     * @return immer true
+     */
+    public boolean isActive(Field field) {
+        return true;
+    }
+
+    /**
+     * Kodiere den Schritt und verteile ihn an alle Zuhörer. Ein Deltabild wird
+     * nur kodiert, wenn ein Zuhörer auf dem Stand des letzten Schritts ist, ein
+     * Schlüsselbild nur, wenn ein Zuhörer eines braucht.
+     *
+     * @param step  welcher Iterationsschritt ist dies?
+     * @param field das Feld, das angezeigt werden soll
+     */
+    public void showStatus(int step, Field field) {
+        if (encoder == null || encoder.getField() != field) {
+            if (encoder != null) {
+                encoder.detach();
+            }
+            encoder = new FrameEncoder(field);
+        }
+        // Zuhörer, die sich währenddessen verbinden, kommen im nächsten Schritt dran
+        Client[] current = clients.toArray(new Client[0]);
+        boolean allKeyframes = encoder.isKeyframeNeeded();
+        boolean delta = false;
+        boolean keyframe = false;
+        for (Client client : current) {
+            if (allKeyframes || client.needsKeyframe) {
+                keyframe = true;
+            } else {
+                delta = true;
+            }
+        }
+        // Das Deltabild zuerst, weil das Schlüsselbild den Stand des Kodierers
+        // auf den aktuellen Schritt setzt
+        byte[] deltaPacket = null;
+        if (delta) {
+            encoder.encodeDelta();
+            deltaPacket = frame(BINARY, encoder.toFrame(ReplayRecorder.DELTA, step));
+        }
+        byte[] keyframePacket = null;
+        if (keyframe) {
+            encoder.encodeKeyframe();
+            byte[] header = frame(TEXT, describe(field).getBytes(StandardCharsets.UTF_8));
+            byte[] image = frame(BINARY, encoder.toFrame(ReplayRecorder.KEYFRAME, step));
+            keyframePacket = new byte[header.length + image.length];
+            System.arraycopy(header, 0, keyframePacket, 0, header.length);
+            System.arraycopy(image, 0, keyframePacket, header.length, image.length);
+        }
+        for (Client client : current) {
+            if (allKeyframes || client.needsKeyframe) {
+                client.needsKeyframe = !client.offer(keyframePacket);
+            } else {
+                client.offer(deltaPacket);
+            }
+        }
+        frames += (delta ? 1 : 0) + (keyframe ? 1 : 0);
+        encoder.endStep(delta || keyframe);
+    }
+
+    /**
+     * Die Zuhörer erhalten mit dem nächsten Schritt ein Schlüsselbild.
+     */
+    public void reset() {
+    }
+
+    /**
+     * Trenne alle Zuhörer und nimm keine neuen mehr an.
+     */
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Der Dienst ist ohnehin beendet
+        }
+        for (Client client : clients) {
+            client.close();
+        }
+        if (encoder != null) {
+            encoder.detach();
+        }
+    }
+
+    /**
+     * @return die Anzahl der verbundenen Zuhörer
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * @return die Anzahl der bisher kodierten Bilder
+     */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return die Anzahl der Bilder, die für langsame Zuhörer verworfen wurden
+     */
+    public int getDroppedFrameCount() {
+        return dropped;
+    }
+
+    private synchronized String describe(Field field) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"depth\": ").append(field.getDepth()).append(", \"width\": ").append(field.getWidth());
+        json.append(", \"empty\": \"").append(hex(EMPTY_COLOR)).append("\", \"colors\": {");
+        String separator = "";
+        for (Map.Entry<String, Color> entry : colors.entrySet()) {
+            json.append(separator).append('"').append(entry.getKey()).append("\": \"").append(hex(entry.getValue()))
+                    .append('"');
+            separator = ", ";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String hex(Color color) {
+        return String.format(Locale.ROOT, "#%06x", color.getRGB() & 0xFFFFFF);
+    }
+
+    /**
+     * Verpacke Nutzdaten in einen WebSocket-Rahmen ohne Maske.
+     */
+    private static byte[] frame(int opcode, byte[] payload) {
+        int header = payload.length < 126 ? 2 : payload.length < 65536 ? 4 : 10;
+        byte[] frame = new byte[header + payload.length];
+        frame[0] = (byte) (0x80 | opcode);
+        if (header == 2) {
+            frame[1] = (byte) payload.length;
+        } else if (header == 4) {
+            frame[1] = 126;
+            frame[2] = (byte) (payload.length >>> 8);
+            frame[3] = (byte) payload.length;
+        } else {
+            frame[1] = 127;
+            for (int i = 0; i < 8; i++) {
+                frame[2 + i] = (byte) ((long) payload.length >>> (56 - 8 * i));
+            }
+        }
+        System.arraycopy(payload, 0, frame, header, payload.length);
+        return frame;
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> serve(socket), "live-view-connection-" + ++clientCount);
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                // Der Dienst wurde geschlossen
+            }
+        }
+    }
+
+    /**
+     * Bearbeite eine Verbindung: liefere die Seite aus oder baue den WebSocket
+     * auf und lies dann die Rahmen des Browsers, bis er die Verbindung schließt.
+     */
+    private void serve(Socket socket) {
+        Client client = null;
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String[] request = readRequest(in);
+            String[] line = request[0].split(" ");
+            String path = line.length > 1 ? line[1] : "";
+            String key = header(request, "Sec-WebSocket-Key");
+            OutputStream out = socket.getOutputStream();
+            if (path.equals("/live") && key != null) {
+                String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                        .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+                out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                        + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                client = new Client(socket);
+                clients.add(client);
+                Thread sender = new Thread(client, Thread.currentThread().getName() + "-send");
+                sender.setDaemon(true);
+                sender.start();
+                readFrames(in);
+                sender.interrupt();
+            } else {
+                boolean page = path.equals("/");
+                byte[] body = (page ? PAGE : "Not found\n").getBytes(StandardCharsets.UTF_8);
+                out.write(((page ? "HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=utf-8"
+                        : "HTTP/1.1 404 Not Found\r\nContent-Type: text/plain; charset=utf-8") + "\r\nContent-Length: "
+                        + body.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Der Browser hat die Verbindung getrennt
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Die Verbindung ist ohnehin verloren
+            }
+        }
+    }
+
+    /**
+     * @return die Zeilen der Anfrage bis zur Leerzeile
+     */
+    private static String[] readRequest(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0 || head.size() > 1 << 16) {
+                throw new IOException("Incomplete request");
+            }
+            head.write(b);
+            matched = b == "\r\n\r\n".charAt(matched) ? matched + 1 : b == '\r' ? 1 : 0;
+        }
+        return new String(head.toByteArray(), StandardCharsets.ISO_8859_1).split("\r\n");
+    }
+
+    private static String header(String[] request, String name) {
+        for (int i = 1; i < request.length; i++) {
+            int colon = request[i].indexOf(':');
+            if (colon > 0 && request[i].substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return request[i].substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lies die Rahmen des Browsers und verwirf sie, bis er die Verbindung
+     * schließt.
+     */
+    private static void readFrames(InputStream in) throws IOException {
+        while (true) {
+            int first = in.read();
+            int second = in.read();
+            if (first < 0 || second < 0 || (first & 0x0F) == CLOSE) {
+                return;
+            }
+            long length = second & 0x7F;
+            int extra = length == 126 ? 2 : length == 127 ? 8 : 0;
+            if (extra > 0) {
+                length = 0;
+                for (int i = 0; i < extra; i++) {
+                    int b = in.read();
+                    if (b < 0) {
+                        return;
+                    }
+                    length = length << 8 | b;
+                }
+            }
+            // Die Maske (vier Bytes) und die Nutzdaten überspringen
+            long skip = length + ((second & 0x80) != 0 ? 4 : 0);
+            while (skip > 0) {
+                long skipped = in.skip(skip);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        return;
+                    }
+                    skipped = 1;
+                }
+                skip -= skipped;
+            }
+        }
+    }
+
+    // Die Seite für den Browser: sie entpackt die Bilder mit DecompressionStream
+    // und zeichnet jede Position als ein Pixel
+    private static final String PAGE = String.join("\n",
+            "<!DOCTYPE html>",
+            "<html><head><meta charset=\"utf-8\"><title>Füchse und Hasen</title>",
+            "<style>body{font-family:sans-serif}canvas{image-rendering:pixelated;border:1px solid #888}</style>",
+            "</head><body><div id=\"step\">Verbinde...</div><canvas id=\"field\"></canvas><script>",
+            "const canvas = document.getElementById('field'), label = document.getElementById('step');",
+            "const context = canvas.getContext('2d');",
+            "let info, image, palette = [], done = Promise.resolve();",
+            "function rgb(hex) { const v = parseInt(hex.slice(1), 16); return [v >> 16, (v >> 8) & 255, v & 255]; }",
+            "function reader(bytes) {",
+            "  let p = 0;",
+            "  return { more: () => p < bytes.length, byte: () => bytes[p++], bytes: n => bytes.subarray(p, p += n),",
+            "    varint: () => { let v = 0, s = 1, b; do { b = bytes[p++]; v += (b & 127) * s; s *= 128; }"
+                    + " while (b & 128); return v; } };",
+            "}",
+            "function paint(index, code) {",
+            "  const c = palette[code] || [0, 0, 0], d = image.data, o = index * 4;",
+            "  d[o] = c[0]; d[o + 1] = c[1]; d[o + 2] = c[2]; d[o + 3] = 255;",
+            "}",
+            "async function frame(buffer) {",
+            "  const head = reader(new Uint8Array(buffer));",
+            "  const type = head.byte(), step = head.varint(), length = head.varint(), packed = head.varint();",
+            "  const stream = new Blob([head.bytes(packed)]).stream().pipeThrough(new DecompressionStream('deflate'));",
+            "  const data = reader(new Uint8Array(await new Response(stream).arrayBuffer()));",
+            "  if (type === 1) {",
+            "    const species = data.varint();",
+            "    palette = [rgb(info.empty)];",
+            "    for (let id = 1; id < species; id++) {",
+            "      const name = new TextDecoder().decode(data.bytes(data.varint()));",
+            "      palette[id] = rgb(info.colors[name] || '#000000');",
+            "    }",
+            "    palette.species = species;",
+            "    let index = 0;",
+            "    while (data.more()) { const run = data.varint(), code = data.byte();"
+                    + " for (let i = 0; i < run; i++) paint(index++, code); }",
+            "  } else if (image) {",
+            "    let index = -1;",
+            "    while (data.more()) { const v = data.varint();"
+                    + " index += Math.floor(v / palette.species) + 1; paint(index, v % palette.species); }",
+            "  }",
+            "  if (image) { context.putImageData(image, 0, 0); label.textContent = 'Schritt ' + step; }",
+            "}",
+            "const socket = new WebSocket('ws://' + location.host + '/live');",
+            "socket.binaryType = 'arraybuffer';",
+            "socket.onmessage = event => {",
+            "  if (typeof event.data === 'string') {",
+            "    info = JSON.parse(event.data);",
+            "    if (!image || image.width !== info.width || image.height !== info.depth) {",
+            "      canvas.width = info.width; canvas.height = info.depth;",
+            "      canvas.style.width = info.width * 6 + 'px'; canvas.style.height = info.depth * 6 + 'px';",
+            "      image = context.createImageData(info.width, info.depth);",
+            "    }",
+            "  } else {",
+            "    done = done.then(() => frame(event.data));",
+            "  }",
+            "};",
+            "socket.onclose = () => label.textContent += ' (Verbindung beendet)';",
+            "</script></body></html>",
+            "");
+
+    /**
+     * Starte eine Simulation, die im Browser angezeigt wird.
+     *
+     * @param args optional der Port (Vorgabe 47130), die Pause zwischen zwei
+     *             Schritten in Millisekunden (Vorgabe 100), Tiefe und Breite
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int delay = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 120;
+        List<SimulationView> views = new ArrayList<>();
+        LiveView view = new LiveView(port);
+        view.setColor(Hase.class, Color.ORANGE);
+        view.setColor(Fuchs.class, Color.BLUE);
+        views.add(view);
+        Simulator simulator = new Simulator(new Field(depth, width), views);
+        // Die Ansicht beendet die Simulation nicht; ein leeres Feld wiederholt sich
+        simulator.setStopOnRepeatedState(true);
+        SimulatorControl.register(simulator, "LiveView:" + view.getPort());
+        System.out.println("Live view on http://localhost:" + view.getPort() + "/");
+        while (true) {
+            simulator.simulate(1000000, delay);
+            simulator.reset();
+        }
+    }
+}
@@ -5,19 +5,10 @@ public class Main {
     public static void main(String[] args) {
 
         Simulator sim = new Simulator();
+        // Pause, Fortsetzen und Drosselung über JMX, z.B. mit JConsole
+        SimulatorControl.register(sim, "Main");
 
-        // sim.simuliere(100);
-        while (true) {
-
-            sim.simulateOneStep();
-            try {
-                Thread.sleep(250);
-            } catch (InterruptedException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }
-
-        }
+        sim.simulate(1000000, 250);
 
     }
 
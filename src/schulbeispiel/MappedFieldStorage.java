@@ -0,0 +1,241 @@
+package schulbeispiel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ein Feldspeicher in einer Datei, für Felder, die nicht mehr in den
+ * Arbeitsspeicher passen. Das Feld wird in Bänder aus aufeinanderfolgenden
+ * Zeilen aufgeteilt, die einzeln in den Speicher eingeblendet werden; das Ein-
+ * und Auslagern der Seiten übernimmt das Betriebssystem. Damit der Zugriff auf
+ * die Nachbarzeilen am Rand eines Bandes (die Halo-Zeilen) kein ständiges
+ * Umblenden auslöst, umfasst das Fenster mindestens drei Bänder.
+ *
+ * Das Fenster begrenzt nur, wie viele Bänder der Speicher selbst festhält.
+ * Java kennt keine Methode, eine Einblendung sofort aufzuheben: ein aus dem
+ * Fenster entferntes Band bleibt eingeblendet, bis die Speicherbereinigung
+ * seinen Puffer einsammelt. Wie viel davon tatsächlich im Arbeitsspeicher
+ * liegt, entscheidet ohnehin das Betriebssystem; unveränderte Seiten kann es
+ * jederzeit verwerfen, geänderte schreibt es vorher in die Datei.
+ *
+ * Weil eine Einblendung länger leben kann als das Fenster, wird die Datei nach
+ * dem Anlegen nie gekürzt. Geleert wird sie über die Einblendungen selbst.
+ *
+ * Ein Band belegt in der Datei zuerst die Tabellenverweise (vier Bytes pro
+ * Position) und danach die Tierkennungen (ein Byte pro Position).
+ *
+ * Ausgelagert werden nur diese fünf Bytes pro Position. Jedes lebende Tier ist
+ * weiterhin ein Objekt im Heap, mit einem Eintrag in der Tiertabelle (siehe
+ * {@link SlotFieldStorage}) und in der Tierliste des {@link Simulator}; das
+ * sind etwa 60 bis 80 Bytes pro Tier. Der Heap wächst also ungefähr mit
+ * Positionen * Dichte * 70 Bytes. Bei den Anfangsdichten von 10 % Tieren pro
+ * Position sind das rund 7 Bytes pro Position, mehr als die Datei selbst
+ * belegt. Ein Feld, dessen Tiere nicht in den Heap passen, endet deshalb auch
+ * mit diesem Speicher in einem OutOfMemoryError; der Speicher hilft nur, wenn
+ * das Feld dünn besiedelt ist.
+ */
+public class MappedFieldStorage extends SlotFieldStorage {
+    // Die kleinste sinnvolle Fenstergröße: ein Band und seine beiden Nachbarn
+    private static final int MIN_WINDOW = 3;
+    // Die Anzahl an Bytes pro Position in der Datei
+    private static final int CELL_BYTES = 5;
+    // Ein Block aus Nullen zum Leeren der Bänder
+    private static final byte[] ZEROS = new byte[1 << 16];
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    // Die Anzahl an Zeilen pro Band
+    private final int bandRows;
+    // Die Anzahl an Bändern, die gleichzeitig eingeblendet bleiben
+    private final int windowBands;
+    // Die eingeblendeten Bänder, in der Reihenfolge des letzten Zugriffs
+    private LinkedHashMap<Integer, MappedByteBuffer> window;
+
+    // Die Bänder, die seit dem letzten Leeren eingeblendet wurden. Nur sie
+    // können etwas anderes als Nullen enthalten.
+    private final BitSet touched = new BitSet();
+
+    // Das zuletzt benutzte Band, um die Suche im Fenster zu sparen
+    private int lastBand = -1;
+    private MappedByteBuffer lastBuffer;
+
+    /**
+     * Erzeuge einen Speicher in der gegebenen Datei. Eine vorhandene Datei wird
+     * überschrieben.
+     *
+     * @param file        die Datei für die Positionen
+     * @param depth       die Tiefe des Feldes
+     * @param width       die Breite des Feldes
+     * @param bandRows    die Anzahl an Zeilen pro Band
+     * @param windowBands die Anzahl an Bändern, die eingeblendet bleiben
+     */
+    public MappedFieldStorage(File file, int depth, int width, int bandRows, int windowBands) {
+        super(depth, width);
+        if (bandRows <= 0 || (long) bandRows * width * CELL_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid band size: " + bandRows + " rows");
+        }
+        this.file = file;
+        this.bandRows = bandRows;
+        this.windowBands = Math.max(MIN_WINDOW, windowBands);
+        window = new LinkedHashMap<>(16, 0.75f, true);
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            long existing = raf.length();
+            // Noch ist kein Band eingeblendet, die Länge darf sich ändern
+            if (existing != fileLength()) {
+                raf.setLength(fileLength());
+            }
+            // Eine vorhandene Datei enthält alte Positionen
+            if (existing > 0) {
+                touched.set(0, getBandCount());
+                clearCells();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create field file " + file, e);
+        }
+    }
+
+    /**
+     * @return die Anzahl an Zeilen pro Band
+     */
+    public int getBandRows() {
+        return bandRows;
+    }
+
+    /**
+     * @return die Anzahl der Bänder
+     */
+    public int getBandCount() {
+        return (depth + bandRows - 1) / bandRows;
+    }
+
+    protected int readSlot(long index) {
+        int row = (int) (index / width);
+        return band(row).getInt(slotOffset(row, index));
+    }
+
+    protected void writeSlot(long index, int slot) {
+        int row = (int) (index / width);
+        band(row).putInt(slotOffset(row, index), slot);
+    }
+
+    protected int readCode(long index) {
+        int row = (int) (index / width);
+        return band(row).get(codeOffset(row, index)) & 0xFF;
+    }
+
+    protected void writeCode(long index, int code) {
+        int row = (int) (index / width);
+        band(row).put(codeOffset(row, index), (byte) code);
+    }
+
+    /**
+     * Leere die Datei, indem alle Bänder, die seit dem letzten Leeren
+     * eingeblendet wurden, über ihre Einblendung mit Nullen überschrieben werden.
+     * Die übrigen Bänder enthalten noch die Nullen vom letzten Leeren.
+     */
+    protected void clearCells() {
+        for (int band = touched.nextSetBit(0); band >= 0; band = touched.nextSetBit(band + 1)) {
+            ByteBuffer buffer = band(band * bandRows).duplicate();
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                buffer.put(ZEROS, 0, Math.min(ZEROS.length, buffer.remaining()));
+            }
+        }
+        touched.clear();
+        // Das zuletzt benutzte Band bleibt eingeblendet und wird beim nächsten
+        // Zugriff wieder als benutzt vermerkt
+        lastBand = -1;
+        lastBuffer = null;
+    }
+
+    /**
+     * Gib alle Bänder frei und schließe die Datei. Die Datei selbst bleibt
+     * erhalten; die Einblendungen enden, wenn ihre Puffer eingesammelt werden.
+     */
+    public void release() {
+        super.release();
+        dropWindow();
+        try {
+            channel.close();
+            raf.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close field file " + file, e);
+        }
+    }
+
+    /**
+     * Liefere das eingeblendete Band für die gegebene Zeile. Ist es noch nicht
+     * eingeblendet, wird es eingeblendet und das am längsten unbenutzte Band aus
+     * dem Fenster entfernt.
+     */
+    private MappedByteBuffer band(int row) {
+        int band = row / bandRows;
+        if (band == lastBand) {
+            return lastBuffer;
+        }
+        MappedByteBuffer buffer = window.get(band);
+        touched.set(band);
+        if (buffer == null) {
+            buffer = map(band);
+            window.put(band, buffer);
+            if (window.size() > windowBands) {
+                Iterator<Map.Entry<Integer, MappedByteBuffer>> eldest = window.entrySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        lastBand = band;
+        lastBuffer = buffer;
+        return buffer;
+    }
+
+    private MappedByteBuffer map(int band) {
+        long start = (long) band * bandRows * width * CELL_BYTES;
+        long size = (long) rowsInBand(band) * width * CELL_BYTES;
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+            buffer.order(ByteOrder.nativeOrder());
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map band " + band + " of " + file, e);
+        }
+    }
+
+    private int rowsInBand(int band) {
+        return Math.min(bandRows, depth - band * bandRows);
+    }
+
+    private int slotOffset(int row, long index) {
+        long bandStart = (long) (row / bandRows) * bandRows * width;
+        return (int) (index - bandStart) * 4;
+    }
+
+    private int codeOffset(int row, long index) {
+        int band = row / bandRows;
+        long bandStart = (long) band * bandRows * width;
+        return rowsInBand(band) * width * 4 + (int) (index - bandStart);
+    }
+
+    private long fileLength() {
+        return (long) depth * width * CELL_BYTES;
+    }
+
+    private void dropWindow() {
+        window.clear();
+        lastBand = -1;
+        lastBuffer = null;
+    }
+}
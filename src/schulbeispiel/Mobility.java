@@ -0,0 +1,275 @@
+package schulbeispiel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Weite Sprünge von Tieren über das Feld, z.B. für Pendler und Reisende. In
+ * jedem Schritt springt ein Anteil der Tiere auf eine freie Position in einer
+ * zufälligen Entfernung, die einer Verteilung (dem Sprungkern) folgt. Tiere,
+ * deren Ziel außerhalb des Feldes liegt oder besetzt ist, bleiben stehen.
+ *
+ * Die Arbeit wächst mit der Anzahl der springenden Tiere, nicht mit der Anzahl
+ * aller Tiere: die Springer werden wie beim Bevölkern mit geometrisch
+ * verteilten Abständen aus der Tierliste gezogen. Das geschieht parallel für
+ * Abschnitte der Tierliste, jeder mit einem eigenen Puffer. Danach werden die
+ * Sprünge nach der Kachel ihres Ziels und ihrer Stelle in der Tierliste
+ * sortiert und Kachel für Kachel parallel geprüft: Innerhalb einer Kachel
+ * gewinnt der erste Sprung auf eine Position. Sortiert werden nur die Sprünge
+ * selbst, so dass Kacheln ohne Sprung keine Arbeit machen. Nur das Versetzen
+ * der angenommenen Tiere geschieht der Reihe nach, weil das Feld beim
+ * Schreiben den Hashwert und die Beobachter nachführt.
+ *
+ * Die Abschnitte, ihre Zufallsgeneratoren und die Reihenfolge der Prüfung
+ * hängen nur vom Startwert, vom Schritt und von der Tierliste ab, so dass die
+ * Sprünge unabhängig von der Anzahl der Threads reproduzierbar sind.
+ */
+public class Mobility {
+
+    /**
+     * Die Verteilungen für die Sprungweite.
+     */
+    public enum Kernel {
+        // Exponentiell verteilte Weite mit dem Mittelwert scale
+        EXPONENTIAL,
+        // Pareto-verteilte Weite ab 1 mit dem Exponenten scale; wenige sehr
+        // weite Sprünge
+        POWER_LAW
+    }
+
+    // Die Anzahl der Tiere pro Abschnitt der Tierliste
+    private static final int CHUNK = 1 << 14;
+    // Die Kantenlänge einer Kachel als Zweierpotenz
+    private static final int TILE_BITS = 5;
+    private static final int TILE = 1 << TILE_BITS;
+
+    private final double sprungAnteil;
+    private final Kernel kernel;
+    private final double scale;
+    private final long seed;
+    // Die Anzahl der angenommenen und der abgewiesenen Sprünge im letzten Schritt
+    private int moved;
+    private int rejected;
+
+    /**
+     * @param sprungAnteil der Anteil der Tiere, die pro Schritt springen
+     * @param kernel       die Verteilung der Sprungweite
+     * @param scale        die mittlere Weite bei EXPONENTIAL, der Exponent bei
+     *                     POWER_LAW
+     * @param seed         der Startwert für die Zufallsgeneratoren
+     */
+    public Mobility(double sprungAnteil, Kernel kernel, double scale, long seed) {
+        if (sprungAnteil < 0 || sprungAnteil > 1) {
+            throw new IllegalArgumentException("Sprunganteil muss zwischen 0 und 1 liegen: " + sprungAnteil);
+        }
+        if (scale <= 0) {
+            throw new IllegalArgumentException("scale muss positiv sein: " + scale);
+        }
+        this.sprungAnteil = sprungAnteil;
+        this.kernel = kernel;
+        this.scale = scale;
+        this.seed = seed;
+    }
+
+    /**
+     * Die Sprünge eines Abschnitts der Tierliste.
+     */
+    private static class Buffer {
+        int count;
+        // Der Index des Tieres in der Tierliste und die Zielposition
+        // (Zeile * Breite + Spalte)
+        int[] organism = new int[16];
+        int[] cell = new int[16];
+
+        void add(int index, int target) {
+            if (count == organism.length) {
+                organism = Arrays.copyOf(organism, count * 2);
+                cell = Arrays.copyOf(cell, count * 2);
+            }
+            organism[count] = index;
+            cell[count] = target;
+            count++;
+        }
+    }
+
+    /**
+     * Lasse einen Anteil der Tiere springen.
+     * 
+     * @param field     das Feld der Tiere
+     * @param organisms die Tierliste; gestorbene Tiere springen nicht
+     * @param step      der aktuelle Schritt
+     * @return die Anzahl der Tiere, die gesprungen sind
+     */
+    public int apply(Field field, List<Organism> organisms, int step) {
+        moved = 0;
+        rejected = 0;
+        int size = organisms.size();
+        if (size == 0 || sprungAnteil == 0) {
+            return 0;
+        }
+        final int depth = field.getDepth();
+        final int width = field.getWidth();
+        final int tilesPerRow = (width + TILE - 1) >> TILE_BITS;
+        int chunks = (size + CHUNK - 1) / CHUNK;
+
+        // Die Springer ziehen
+        Buffer[] buffers = new Buffer[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            buffers[chunk] = sample(organisms, chunk, Math.min(size, (chunk + 1) * CHUNK), step, depth, width);
+        });
+        int total = 0;
+        for (Buffer buffer : buffers) {
+            total += buffer.count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        // Die Sprünge in der Reihenfolge der Tierliste aneinanderhängen und nach
+        // (Zielkachel, Stelle) sortieren. Die Stelle ist eindeutig, deshalb ist
+        // die Reihenfolge unabhängig vom Sortierverfahren.
+        int[] jumpOrganism = new int[total];
+        int[] jumpCell = new int[total];
+        long[] keys = new long[total];
+        int jump = 0;
+        for (Buffer buffer : buffers) {
+            for (int i = 0; i < buffer.count; i++, jump++) {
+                jumpOrganism[jump] = buffer.organism[i];
+                jumpCell[jump] = buffer.cell[i];
+                keys[jump] = (long) tileOf(buffer.cell[i], width, tilesPerRow) << 32 | jump;
+            }
+        }
+        Arrays.parallelSort(keys);
+        int[] sortedOrganism = new int[total];
+        int[] sortedCell = new int[total];
+        // Der Beginn jeder getroffenen Kachel in der sortierten Liste
+        int[] runStart = new int[total + 1];
+        int runs = 0;
+        for (int i = 0; i < total; i++) {
+            int index = (int) keys[i];
+            sortedOrganism[i] = jumpOrganism[index];
+            sortedCell[i] = jumpCell[index];
+            if (i == 0 || keys[i] >>> 32 != keys[i - 1] >>> 32) {
+                runStart[runs++] = i;
+            }
+        }
+        runStart[runs] = total;
+
+        // Konflikte Kachel für Kachel auflösen
+        boolean[] accepted = new boolean[total];
+        IntStream runRange = IntStream.range(0, runs);
+        if (field.isConcurrentReadSafe()) {
+            runRange = runRange.parallel();
+        }
+        runRange.forEach(run -> resolve(field, runStart[run], runStart[run + 1], sortedCell, accepted, width));
+
+        // Die angenommenen Tiere versetzen
+        for (int i = 0; i < total; i++) {
+            if (accepted[i]) {
+                int target = sortedCell[i];
+                organisms.get(sortedOrganism[i]).setPosition(field.positionAt(target / width, target % width));
+                moved++;
+            }
+        }
+        rejected = total - moved;
+        return moved;
+    }
+
+    /**
+     * Ziehe die Springer eines Abschnitts der Tierliste und ihre Ziele.
+     */
+    private Buffer sample(List<Organism> organisms, int chunk, int end, int step, int depth, int width) {
+        SplittableRandom random = new SplittableRandom(mix(seed, step, chunk));
+        Buffer buffer = new Buffer();
+        double logStay = Math.log1p(-Math.min(sprungAnteil, 1 - 1e-12));
+        long index = (long) chunk * CHUNK - 1;
+        while (true) {
+            double skip = sprungAnteil >= 1 ? 0 : Math.floor(Math.log(1 - random.nextDouble()) / logStay);
+            index += (long) Math.min(skip, CHUNK) + 1;
+            if (index >= end) {
+                return buffer;
+            }
+            Position position = organisms.get((int) index).getPosition();
+            double distance = distance(random);
+            double angle = 2 * Math.PI * random.nextDouble();
+            if (position == null) {
+                continue;
+            }
+            long row = position.getRow() + Math.round(distance * Math.sin(angle));
+            long column = position.getColumn() + Math.round(distance * Math.cos(angle));
+            if (row < 0 || row >= depth || column < 0 || column >= width
+                    || (row == position.getRow() && column == position.getColumn())) {
+                continue;
+            }
+            int target = (int) row * width + (int) column;
+            buffer.add((int) index, target);
+        }
+    }
+
+    /**
+     * @return eine Sprungweite nach dem Sprungkern
+     */
+    private double distance(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        switch (kernel) {
+        case POWER_LAW:
+            return Math.pow(u, -1 / scale);
+        case EXPONENTIAL:
+        default:
+            return -scale * Math.log(u);
+        }
+    }
+
+    /**
+     * Nimm die Sprünge einer Kachel an, deren Ziel frei ist und noch von keinem
+     * früheren Sprung dieser Kachel belegt wurde. Das Feld wird dabei nur
+     * gelesen.
+     */
+    private static void resolve(Field field, int from, int to, int[] cell, boolean[] accepted, int width) {
+        if (from == to) {
+            return;
+        }
+        // Die schon vergebenen Positionen der Kachel, eine pro Bit
+        long[] taken = new long[TILE * TILE / 64];
+        for (int i = from; i < to; i++) {
+            int row = cell[i] / width;
+            int column = cell[i] % width;
+            int bit = (row & (TILE - 1)) << TILE_BITS | (column & (TILE - 1));
+            if ((taken[bit >>> 6] & 1L << bit) == 0 && field.getCode(row, column) == Species.EMPTY) {
+                taken[bit >>> 6] |= 1L << bit;
+                accepted[i] = true;
+            }
+        }
+    }
+
+    private static int tileOf(int cell, int width, int tilesPerRow) {
+        return (cell / width >> TILE_BITS) * tilesPerRow + (cell % width >> TILE_BITS);
+    }
+
+    /**
+     * Leite den Startwert eines Abschnitts aus dem Startwert, dem Schritt und
+     * dem Abschnitt ab (SplitMix64).
+     */
+    private static long mix(long seed, int step, int chunk) {
+        long z = seed + 0x9E3779B97F4A7C15L * (((long) step << 32 | chunk) + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return die Anzahl der Tiere, die im letzten Schritt gesprungen sind
+     */
+    public int getMoved() {
+        return moved;
+    }
+
+    /**
+     * @return die Anzahl der Sprünge im letzten Schritt, deren Ziel besetzt war
+     */
+    public int getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,101 @@
+package schulbeispiel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Ein Feldspeicher außerhalb des Java-Heaps. Für jede Position werden eine
+ * Tierkennung (ein Byte) und ein Verweis in die Tabelle der lebenden Tiere (ein
+ * int) in direkten Puffern abgelegt. Der Heap wächst damit nur noch mit der
+ * Anzahl der Tiere und nicht mehr mit der Größe des Feldes. Die Positionen
+ * werden über long-Indizes adressiert und auf mehrere Puffer verteilt, so dass
+ * auch Felder mit mehr als Integer.MAX_VALUE Positionen möglich sind.
+ */
+public class OffHeapFieldStorage extends SlotFieldStorage {
+    // Anzahl der Positionen pro Puffer als Zweierpotenz
+    private static final int CHUNK_SHIFT = 27;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Die Verweise in die Tiertabelle (0 = leer), vier Bytes pro Position
+    private ByteBuffer[] slots;
+    // Die Tierkennungen, ein Byte pro Position
+    private ByteBuffer[] codes;
+
+    /**
+     * Erzeuge einen Speicher mit den angegebenen Dimensionen.
+     *
+     * @param depth die Tiefe des Feldes
+     * @param width die Breite des Feldes
+     */
+    public OffHeapFieldStorage(int depth, int width) {
+        super(depth, width);
+        long cells = (long) depth * width;
+        int chunks = (int) ((cells + CHUNK_MASK) >>> CHUNK_SHIFT);
+        slots = new ByteBuffer[chunks];
+        codes = new ByteBuffer[chunks];
+        for (int i = 0; i < chunks; i++) {
+            int size = (int) Math.min(CHUNK_SIZE, cells - ((long) i << CHUNK_SHIFT));
+            slots[i] = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder());
+            codes[i] = ByteBuffer.allocateDirect(size);
+        }
+    }
+
+    protected int readSlot(long index) {
+        return slots[chunk(index)].getInt(offset(index) << 2);
+    }
+
+    protected void writeSlot(long index, int slot) {
+        slots[chunk(index)].putInt(offset(index) << 2, slot);
+    }
+
+    protected int readCode(long index) {
+        return codes[chunk(index)].get(offset(index)) & 0xFF;
+    }
+
+    protected void writeCode(long index, int code) {
+        codes[chunk(index)].put(offset(index), (byte) code);
+    }
+
+    /**
+     * Die Puffer werden überschrieben statt neu angelegt.
+     */
+    protected void clearCells() {
+        for (int i = 0; i < slots.length; i++) {
+            fillZero(slots[i]);
+            fillZero(codes[i]);
+        }
+    }
+
+    /**
+     * Gib die Puffer frei. Der Speicher außerhalb des Heaps wird zurückgegeben,
+     * sobald die Puffer von der Speicherbereinigung eingesammelt werden.
+     */
+    public void release() {
+        super.release();
+        slots = null;
+        codes = null;
+    }
+
+    private static int chunk(long index) {
+        return (int) (index >>> CHUNK_SHIFT);
+    }
+
+    private static int offset(long index) {
+        return (int) (index & CHUNK_MASK);
+    }
+
+    /**
+     * Überschreibe den gegebenen Puffer mit Nullen.
+     */
+    static void fillZero(ByteBuffer buffer) {
+        int limit = buffer.capacity();
+        int i = 0;
+        for (; i + 8 <= limit; i += 8) {
+            buffer.putLong(i, 0L);
+        }
+        for (; i < limit; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+}
@@ -15,6 +15,11 @@ public abstract class Organism {
     private Field field;
     // Die Position dieses Tieres.
     private Position position;
+    // Die Kennung der Tierart (siehe Species)
+    private final int speciesId;
+    // Die Kennung dieses Tieres, nur bei gleichzeitiger Aktualisierung
+    // (siehe SynchronousUpdate)
+    private long id;
 
     /**
      * Erzeuge ein neues Tier an der gegebenen Position im Feld.
@@ -24,10 +29,43 @@ public abstract class Organism {
      */
     public Organism(Field field, Position position) {
         alive = true;
+        speciesId = Species.idOf(getClass());
         this.field = field;
         setPosition(position);
     }
 
+    /**
+     * Belebe ein gestorbenes Tier an der gegebenen Position im Feld wieder, damit
+     * es als neues Tier benutzt werden kann.
+     * 
+     * @param field    das aktuelle belegte Feld
+     * @param position die Position im Feld
+     */
+    protected void reinit(Field field, Position position) {
+        alive = true;
+        this.field = field;
+        this.position = null;
+        setPosition(position);
+    }
+
+    /**
+     * Gib dieses Tier zur Wiederverwendung frei. Es darf danach von niemandem
+     * mehr benutzt werden. Unterklassen rufen zuerst {@link #forget()} auf, damit
+     * ein aufbewahrtes Tier kein Feld am Leben hält.
+     */
+    abstract protected void recycle();
+
+    /**
+     * Vergiss das Feld und die Position, ohne das Feld zu ändern. Wird vor dem
+     * Aufbewahren in einem {@link OrganismPool} aufgerufen, auch für lebende
+     * Tiere, deren Feld gerade geräumt wird.
+     */
+    protected void forget() {
+        alive = false;
+        position = null;
+        field = null;
+    }
+
     /**
      * Lasse dieses Tier agieren - es soll das tun, was es tun muss oder möchte.
      * 
@@ -57,6 +95,32 @@ public abstract class Organism {
         }
     }
 
+    /**
+     * Liefere die Kennung der Tierart dieses Tieres.
+     * 
+     * @return die Kennung der Tierart (siehe {@link Species})
+     */
+    public int getSpeciesId() {
+        return speciesId;
+    }
+
+    /**
+     * @return die Kennung dieses Tieres, eindeutig im Gesamtfeld einer
+     *         Simulation mit gleichzeitiger Aktualisierung
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Setze die Kennung dieses Tieres.
+     * 
+     * @param id die neue Kennung
+     */
+    void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * Liefere die Position dieses Tieres.
      * 
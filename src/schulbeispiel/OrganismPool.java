@@ -0,0 +1,62 @@
+package schulbeispiel;
+
+import java.util.ArrayDeque;
+
+/**
+ * Ein Vorrat an gestorbenen Tieren einer Tierart, die für Geburten
+ * wiederverwendet werden. So muss nicht für jede Geburt ein neues Objekt
+ * erzeugt und für jeden Tod eines von der Speicherbereinigung eingesammelt
+ * werden. Jeder Thread hat seinen eigenen Vorrat, damit Simulationen in
+ * verschiedenen Threads sich nicht gegenseitig Tiere wegnehmen.
+ *
+ * @param <T> die Tierart
+ */
+public class OrganismPool<T extends Organism> {
+    // Die gestorbenen Tiere, die auf ihre Wiederverwendung warten
+    private final ThreadLocal<ArrayDeque<T>> free = new ThreadLocal<ArrayDeque<T>>() {
+        protected ArrayDeque<T> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+    // Die größte Anzahl an Tieren, die pro Thread aufbewahrt werden
+    private final int maxSize;
+
+    /**
+     * Erzeuge einen leeren Vorrat.
+     *
+     * @param maxSize die größte Anzahl an Tieren, die aufbewahrt werden
+     */
+    public OrganismPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Entnimm ein Tier aus dem Vorrat.
+     *
+     * @return ein gestorbenes Tier oder null, wenn der Vorrat leer ist
+     */
+    public T obtain() {
+        return free.get().poll();
+    }
+
+    /**
+     * Lege ein gestorbenes Tier in den Vorrat. Das Tier darf danach nirgends mehr
+     * benutzt werden. Ist der Vorrat voll, wird es der Speicherbereinigung
+     * überlassen.
+     *
+     * @param organism das gestorbene Tier
+     */
+    public void release(T organism) {
+        ArrayDeque<T> deque = free.get();
+        if (deque.size() < maxSize) {
+            deque.push(organism);
+        }
+    }
+
+    /**
+     * @return die Anzahl der Tiere im Vorrat des aktuellen Threads
+     */
+    public int size() {
+        return free.get().size();
+    }
+}
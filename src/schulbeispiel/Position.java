@@ -7,8 +7,8 @@ package schulbeispiel;
  */
 public class Position {
     // Zeilen- und Spaltenposition.
-    private int row;
-    private int column;
+    private final int row;
+    private final int column;
 
     /**
      * Repräsentiere eine Zeile und eine Spalte.
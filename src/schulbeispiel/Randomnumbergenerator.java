@@ -15,8 +15,19 @@ import java.util.Random;
 public class Randomnumbergenerator {
     // Vorgabe für den SEED-Wert, der die Erzeugung der Zufallszahlen steuert
     private static final int SEED = 1111;
-    // Ein gemeinsam genutztes Random-Objekt, falls benötigt
-    private static final Random rand = new Random(SEED);
+    // Der aktuell benutzte SEED-Wert
+    private static volatile long seed = SEED;
+    // Die Zufallsgeneratoren der Threads. Jeder Thread beginnt mit dem aktuellen
+    // SEED-Wert, so dass gleichzeitige Simulationen in verschiedenen Threads
+    // (z.B. im SimulationServer) sich nicht gegenseitig die Zahlenfolge stören.
+    private static final ThreadLocal<ThreadRandom> perThread = new ThreadLocal<ThreadRandom>() {
+        protected ThreadRandom initialValue() {
+            return new ThreadRandom(seed);
+        }
+    };
+    // Ein gemeinsam genutztes Random-Objekt, falls benötigt. Es gibt die Zahlen
+    // des Generators des aufrufenden Threads weiter.
+    private static final Random rand = new SharedRandom();
     // Bestimmt, ob ein gemeinsam genutzer Zufallsgenerator zur Verfügung gestellt
     // wird.
     private static final boolean useTogether = true;
@@ -46,7 +57,74 @@ public class Randomnumbergenerator {
      */
     public static void reset() {
         if (useTogether) {
-            rand.setSeed(SEED);
+            rand.setSeed(seed);
+        }
+    }
+
+    /**
+     * Lege einen neuen SEED-Wert fest und setze die Zufallssteuerung darauf
+     * zurück.
+     * 
+     * @param newSeed der neue SEED-Wert
+     */
+    public static void setSeed(long newSeed) {
+        seed = newSeed;
+        if (useTogether) {
+            // Nicht über seed, das ein anderer Thread inzwischen geändert haben kann
+            rand.setSeed(newSeed);
+        }
+    }
+
+    /**
+     * @return der aktuell benutzte SEED-Wert
+     */
+    public static long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Der Zufallsgenerator eines Threads.
+     */
+    private static class ThreadRandom extends Random {
+        private static final long serialVersionUID = 1L;
+
+        ThreadRandom(long seed) {
+            super(seed);
+        }
+
+        int bits(int bits) {
+            return next(bits);
+        }
+    }
+
+    /**
+     * Das gemeinsam genutzte Random-Objekt. Alle Methoden von Random beruhen auf
+     * next, das hier an den Generator des aufrufenden Threads weitergegeben wird.
+     */
+    private static class SharedRandom extends Random {
+        private static final long serialVersionUID = 1L;
+        // Ist der Konstruktor von Random schon durchlaufen? Er ruft setSeed auf.
+        private final boolean ready;
+
+        SharedRandom() {
+            ready = true;
+        }
+
+        @Override
+        protected int next(int bits) {
+            return perThread.get().bits(bits);
+        }
+
+        @Override
+        public synchronized void setSeed(long seed) {
+            if (ready) {
+                perThread.get().setSeed(seed);
+            }
+        }
+
+        @Override
+        public synchronized double nextGaussian() {
+            return perThread.get().nextGaussian();
         }
     }
 }
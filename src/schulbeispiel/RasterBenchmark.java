@@ -0,0 +1,86 @@
+package schulbeispiel;
+
+import java.awt.Color;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Vergleicht die Laufzeit eines Zeichen- und Zähldurchlaufs über das Feld:
+ * einmal wie früher mit getClass() und HashMap-Zugriffen für Farbe und Zähler
+ * pro Position, einmal mit {@link FieldRaster} über Tierkennungen und Arrays.
+ */
+public class RasterBenchmark {
+    private static final int ROUNDS = 200;
+
+    /**
+     * @param args Tiefe und Breite des Feldes (optional)
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 800;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 1200;
+        Simulator simulator = new Simulator(new Field(depth, width), Collections.<SimulationView>emptyList());
+        simulator.simulate(10);
+        Field field = simulator.getField();
+
+        Map<Class<?>, Color> colors = new HashMap<>();
+        colors.put(Hase.class, Color.ORANGE);
+        colors.put(Fuchs.class, Color.BLUE);
+        int[] palette = new int[Species.count()];
+        palette[Species.EMPTY] = Color.WHITE.getRGB();
+        palette[Species.idOf(Hase.class)] = Color.ORANGE.getRGB();
+        palette[Species.idOf(Fuchs.class)] = Color.BLUE.getRGB();
+        int[] pixels = new int[depth * width];
+
+        long sum = 0;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                sum += hashMapPass(field, colors, pixels);
+            }
+            long hashMapTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                int[] counts = new int[palette.length];
+                FieldRaster.rasterize(field, palette, pixels, counts);
+                sum += counts[1];
+            }
+            long rasterTime = System.nanoTime() - start;
+
+            if (warmup == 1) {
+                double cells = (double) depth * width * ROUNDS;
+                System.out.printf("HashMap<Class,Color>: %.2f ns/Position%n", hashMapTime / cells);
+                System.out.printf("FieldRaster:          %.2f ns/Position%n", rasterTime / cells);
+            }
+        }
+        // Verhindert, dass die Schleifen wegoptimiert werden
+        System.out.println("(" + sum + ")");
+    }
+
+    /**
+     * Der Durchlauf, wie ihn GridView.showStatus früher ausgeführt hat.
+     */
+    private static int hashMapPass(Field field, Map<Class<?>, Color> colors, int[] pixels) {
+        Map<Class<?>, Counter> counter = new HashMap<>();
+        int i = 0;
+        for (int row = 0; row < field.getDepth(); row++) {
+            for (int column = 0; column < field.getWidth(); column++) {
+                Object organism = field.getObjectAt(row, column);
+                if (organism != null) {
+                    Counter count = counter.get(organism.getClass());
+                    if (count == null) {
+                        count = new Counter(organism.getClass().getName());
+                        counter.put(organism.getClass(), count);
+                    }
+                    count.increase();
+                    Color color = colors.get(organism.getClass());
+                    pixels[i++] = (color == null ? Color.GRAY : color).getRGB();
+                } else {
+                    pixels[i++] = Color.WHITE.getRGB();
+                }
+            }
+        }
+        return counter.size();
+    }
+}
@@ -0,0 +1,315 @@
+package schulbeispiel;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Spielt eine Aufzeichnung eines {@link ReplayRecorder} ab. Der Zustand wird in
+ * einem eigenen Feld wiederhergestellt, in dem statt der Tiere nur Platzhalter
+ * für ihre Tierart stehen (siehe {@link Species#markerOf}); das genügt allen
+ * Ansichten.
+ *
+ * Beim Öffnen wird die Datei einmal durchlaufen, um die Lage aller Bilder zu
+ * bestimmen. Ein beliebiger Schritt wird erreicht, indem das nächstgelegene
+ * vorherige Schlüsselbild geladen wird und die Deltabilder bis zu dem Schritt
+ * angewendet werden. Liegt der Schritt hinter dem aktuellen Schritt und vor dem
+ * nächsten Schlüsselbild, werden nur die Deltabilder dazwischen angewendet.
+ */
+public class ReplayPlayer {
+    private final File file;
+    private final ByteBuffer data;
+    private final int depth, width;
+    private final Field field;
+
+    // Die Bilder: Art, Schritt, Lage und Länge der Nutzdaten in der Datei
+    private byte[] types = new byte[64];
+    private int[] steps = new int[64];
+    private int[] offsets = new int[64];
+    private int[] lengths = new int[64];
+    private int[] compressedLengths = new int[64];
+    private int frameCount;
+
+    // Die komprimierten und die entpackten Nutzdaten des aktuellen Bildes
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[1 << 12];
+    private ByteBuffer payload = ByteBuffer.allocate(1 << 12);
+
+    // Das aktuell angezeigte Bild oder -1
+    private int current = -1;
+    // Die Übersetzung der Tierkennungen der Datei in die Kennungen dieses Laufs
+    private int[] translate;
+
+    /**
+     * Öffne eine Aufzeichnung.
+     *
+     * @param file die Datei mit der Aufzeichnung
+     */
+    public ReplayPlayer(File file) {
+        this.file = file;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Replay too large: " + channel.size() + " bytes");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data = mapped;
+            if (data.remaining() < 16 || data.getInt() != ReplayRecorder.MAGIC) {
+                throw new IOException("Not a replay file");
+            }
+            depth = data.getInt();
+            width = data.getInt();
+            data.getInt();
+            indexFrames();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open replay " + file, e);
+        }
+        if (frameCount == 0 || types[0] != ReplayRecorder.KEYFRAME) {
+            throw new UncheckedIOException(new IOException("Replay " + file + " does not start with a keyframe"));
+        }
+        field = new Field(depth, width);
+    }
+
+    /**
+     * @return das Feld, in dem der abgespielte Zustand steht
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return die Anzahl der Bilder in der Aufzeichnung
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return der erste aufgezeichnete Schritt
+     */
+    public int getFirstStep() {
+        return steps[0];
+    }
+
+    /**
+     * @return der letzte aufgezeichnete Schritt
+     */
+    public int getLastStep() {
+        return steps[frameCount - 1];
+    }
+
+    /**
+     * @return der aktuell abgespielte Schritt oder -1, wenn noch keiner geladen
+     *         ist
+     */
+    public int getStep() {
+        return current < 0 ? -1 : steps[current];
+    }
+
+    /**
+     * Stelle den Zustand nach dem gegebenen Schritt her. Wurde genau dieser
+     * Schritt nicht aufgezeichnet, wird der letzte aufgezeichnete Schritt davor
+     * hergestellt.
+     *
+     * @param step der gewünschte Schritt
+     * @return der tatsächlich hergestellte Schritt
+     */
+    public int seek(int step) {
+        int target = Arrays.binarySearch(steps, 0, frameCount, step);
+        if (target < 0) {
+            target = Math.max(0, -target - 2);
+        }
+        int keyframe = target;
+        while (types[keyframe] != ReplayRecorder.KEYFRAME) {
+            keyframe--;
+        }
+        int from = keyframe;
+        if (current >= keyframe && current <= target) {
+            from = current + 1;
+        }
+        for (int frame = from; frame <= target; frame++) {
+            apply(frame);
+        }
+        current = target;
+        return steps[current];
+    }
+
+    /**
+     * Gehe zum nächsten aufgezeichneten Schritt.
+     *
+     * @return false, wenn die Aufzeichnung zu Ende ist
+     */
+    public boolean next() {
+        if (current + 1 >= frameCount) {
+            return false;
+        }
+        apply(++current);
+        return true;
+    }
+
+    /**
+     * Spiele die Schritte von from bis to in den gegebenen Ansichten ab.
+     *
+     * @param views die Ansichten
+     * @param from  der erste Schritt
+     * @param to    der letzte Schritt
+     */
+    public void play(List<SimulationView> views, int from, int to) {
+        for (SimulationView view : views) {
+            view.reset();
+        }
+        seek(from);
+        do {
+            for (SimulationView view : views) {
+                view.showStatus(getStep(), field);
+            }
+        } while (current + 1 < frameCount && steps[current + 1] <= to && next());
+    }
+
+    private void indexFrames() throws IOException {
+        while (data.hasRemaining()) {
+            if (frameCount == steps.length) {
+                types = Arrays.copyOf(types, frameCount * 2);
+                steps = Arrays.copyOf(steps, frameCount * 2);
+                offsets = Arrays.copyOf(offsets, frameCount * 2);
+                lengths = Arrays.copyOf(lengths, frameCount * 2);
+                compressedLengths = Arrays.copyOf(compressedLengths, frameCount * 2);
+            }
+            types[frameCount] = data.get();
+            steps[frameCount] = getVarInt(data);
+            lengths[frameCount] = getVarInt(data);
+            int compressedLength = getVarInt(data);
+            offsets[frameCount] = data.position();
+            compressedLengths[frameCount] = compressedLength;
+            if (compressedLength > data.remaining()) {
+                // Eine abgebrochene Aufzeichnung endet mit dem letzten vollständigen Bild
+                break;
+            }
+            data.position(data.position() + compressedLength);
+            frameCount++;
+        }
+    }
+
+    private void apply(int frame) {
+        if (compressed.length < compressedLengths[frame]) {
+            compressed = new byte[compressedLengths[frame]];
+        }
+        if (payload.capacity() < lengths[frame]) {
+            payload = ByteBuffer.allocate(lengths[frame]);
+        }
+        data.position(offsets[frame]);
+        data.get(compressed, 0, compressedLengths[frame]);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLengths[frame]);
+        try {
+            if (inflater.inflate(payload.array(), 0, lengths[frame]) != lengths[frame]) {
+                throw new DataFormatException("Truncated frame");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt frame at step " + steps[frame] + " in replay " + file, e);
+        }
+        payload.clear();
+        payload.limit(lengths[frame]);
+        if (types[frame] == ReplayRecorder.KEYFRAME) {
+            applyKeyframe();
+        } else {
+            applyDelta();
+        }
+    }
+
+    private void applyKeyframe() {
+        int speciesCount = getVarInt(payload);
+        translate = new int[speciesCount];
+        for (int id = 1; id < speciesCount; id++) {
+            byte[] name = new byte[getVarInt(payload)];
+            payload.get(name);
+            String className = new String(name, StandardCharsets.UTF_8);
+            try {
+                translate[id] = Species.idOf(Class.forName(className));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unknown species in replay " + file + ": " + className, e);
+            }
+        }
+        int index = 0;
+        int cells = depth * width;
+        while (index < cells) {
+            int runLength = getVarInt(payload);
+            int code = translate[payload.get() & 0xFF];
+            for (int end = index + runLength; index < end; index++) {
+                setCode(index / width, index % width, code);
+            }
+        }
+    }
+
+    private void applyDelta() {
+        int speciesCount = translate.length;
+        int index = -1;
+        while (payload.hasRemaining()) {
+            long value = getVarLong(payload);
+            index += (int) (value / speciesCount) + 1;
+            setCode(index / width, index % width, translate[(int) (value % speciesCount)]);
+        }
+    }
+
+    private void setCode(int row, int column, int code) {
+        if (field.getCode(row, column) != code) {
+            if (code == Species.EMPTY) {
+                field.clear(field.positionAt(row, column));
+            } else {
+                field.place(Species.markerOf(code), row, column);
+            }
+        }
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        return (int) getVarLong(buffer);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Spiele eine Aufzeichnung in den üblichen Ansichten ab.
+     *
+     * @param args Datei, erster und letzter Schritt (beide optional)
+     */
+    public static void main(String[] args) {
+        ReplayPlayer player = new ReplayPlayer(new File(args.length > 0 ? args[0] : "simulation.replay"));
+        int from = args.length > 1 ? Integer.parseInt(args[1]) : player.getFirstStep();
+        int to = args.length > 2 ? Integer.parseInt(args[2]) : player.getLastStep();
+
+        List<SimulationView> views = new ArrayList<>();
+        SimulationView view = new GridView(player.depth, player.width);
+        view.setColor(Hase.class, Color.ORANGE);
+        view.setColor(Fuchs.class, Color.BLUE);
+        views.add(view);
+        view = new DiagrammView(500, 150, 500);
+        view.setColor(Hase.class, Color.BLACK);
+        view.setColor(Fuchs.class, Color.RED);
+        views.add(view);
+
+        long start = System.nanoTime();
+        player.play(views, from, to);
+        System.out.printf("Schritte %d bis %d in %.1f s abgespielt%n", from, player.getStep(),
+                (System.nanoTime() - start) / 1e9);
+    }
+}
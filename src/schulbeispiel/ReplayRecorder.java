@@ -0,0 +1,248 @@
+package schulbeispiel;
+
+import java.awt.Color;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+
+/**
+ * Eine Ansicht ohne Fenster, die einen Lauf in eine Datei aufzeichnet, damit er
+ * später mit einem {@link ReplayPlayer} abgespielt werden kann, ohne die
+ * Simulation erneut zu rechnen.
+ *
+ * Für jeden Schritt werden nur die Positionen gespeichert, deren Tierart sich
+ * geändert hat (ein Deltabild). Alle {@code keyInterval} Schritte wird
+ * zusätzlich das ganze Feld gespeichert (ein Schlüsselbild), damit beim
+ * Abspielen jeder Schritt schnell erreicht werden kann. Welche Positionen sich
+ * geändert haben, erfährt der Rekorder über einen {@link FieldListener} vom Feld.
+ *
+ * Aufbau der Datei: ein Kopf (MAGIC, Tiefe, Breite, keyInterval als int), dann
+ * die Bilder. Jedes Bild besteht aus seiner Art (KEYFRAME oder DELTA), der
+ * Schrittnummer, der Länge der Nutzdaten und der Länge der mit Deflate
+ * komprimierten Nutzdaten, gefolgt von den komprimierten Nutzdaten. Alle
+ * Zahlen in Bildern sind als varint abgelegt (sieben Bit pro Byte, das
+ * höchste Bit zeigt ein weiteres Byte an).
+ * <ul>
+ * <li>Schlüsselbild: die Anzahl der Tierkennungen und die Klassennamen zu den
+ * Kennungen ab 1, dann das ganze Feld Zeile für Zeile als Folge von Läufen
+ * (Länge, Kennung) gleicher Kennung.</li>
+ * <li>Deltabild: pro geänderter Position eine Zahl, die den Abstand zur
+ * vorigen geänderten Position (die Anzahl der übersprungenen Positionen) und
+ * die neue Kennung zusammenfasst: Abstand * Anzahl der Tierkennungen +
+ * Kennung. Da sich die Tiere in der Nähe voneinander bewegen, genügt dafür
+ * meist ein Byte.</li>
+ * </ul>
+ * Eine Datei enthält genau einen Lauf; {@link #reset()} beginnt die Datei neu.
+ * Die Bilder kodiert ein {@link FrameEncoder}, den auch die {@link LiveView}
+ * benutzt.
+ */
+public class ReplayRecorder implements SimulationView {
+    // Die Kennung des Dateiformats
+    static final int MAGIC = 0x52504C31;
+    // Die Arten von Bildern
+    static final int KEYFRAME = 1;
+    static final int DELTA = 2;
+
+    private final File file;
+    private final int keyInterval;
+    private DataOutputStream out;
+    // Kodiert die Bilder des aufgezeichneten Feldes
+    private FrameEncoder encoder;
+    // Die Schrittnummer des letzten Bildes
+    private int lastStep = -1;
+    // Zählt die Tiere des Feldes, über das isActive zuletzt entschieden hat
+    private final FieldStatistics stats = new FieldStatistics();
+    private Field countedField;
+
+    // Statistik: Anzahl der Bilder und geschriebene Bytes
+    private int frames, keyframes;
+    private long bytes;
+
+    /**
+     * Erzeuge einen Rekorder, der in die gegebene Datei schreibt. Eine vorhandene
+     * Datei wird überschrieben.
+     *
+     * @param file        die Datei für die Aufzeichnung
+     * @param keyInterval der Abstand der Schlüsselbilder in Schritten
+     */
+    public ReplayRecorder(File file, int keyInterval) {
+        if (keyInterval <= 0) {
+            throw new IllegalArgumentException("Invalid keyframe interval: " + keyInterval);
+        }
+        this.file = file;
+        this.keyInterval = keyInterval;
+    }
+
+    /**
+     * Der Rekorder zeichnet keine Farben auf.
+     */
+    public void setColor(Class organismClass, Color color) {
+    }
+
+    /**
+     * Entscheide, ob die Simulation weiterlaufen soll. Die Tiere werden dafür
+     * bei jeder Änderung des Feldes mitgezählt, nicht bei jedem Schritt neu.
+     *
+     * @return true wenn noch mehr als eine Spezies lebendig ist
+     */
+    public boolean isActive(Field field) {
+        if (field != countedField) {
+            if (countedField != null) {
+                stats.unfollow(countedField);
+            }
+            stats.follow(field);
+            countedField = field;
+        }
+        return stats.istAktiv(field);
+    }
+
+    /**
+     * Speichere den aktuellen Zustand des Feldes als Schlüssel- oder Deltabild.
+     *
+     * @param step  welcher Iterationsschritt ist dies?
+     * @param field das Feld, das aufgezeichnet werden soll
+     */
+    public void showStatus(int step, Field field) {
+        if (step <= lastStep) {
+            throw new IllegalStateException("Steps must increase: " + step + " after " + lastStep);
+        }
+        try {
+            if (encoder == null || encoder.getField() != field) {
+                attach(field);
+            }
+            if (out == null) {
+                open();
+            }
+            if (lastStep < 0 || encoder.isKeyframeNeeded() || step % keyInterval == 0) {
+                encoder.encodeKeyframe();
+                writeFrame(KEYFRAME, step);
+                keyframes++;
+            } else {
+                encoder.encodeDelta();
+                writeFrame(DELTA, step);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write replay " + file, e);
+        }
+        lastStep = step;
+        encoder.endStep(true);
+    }
+
+    /**
+     * Beginne die Aufzeichnung neu.
+     */
+    public void reset() {
+        close();
+        lastStep = -1;
+    }
+
+    /**
+     * Schreibe alle gepufferten Bilder und schließe die Datei. Ein späteres
+     * {@link #showStatus} beginnt die Datei neu.
+     */
+    public void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close replay " + file, e);
+            } finally {
+                out = null;
+            }
+        }
+    }
+
+    /**
+     * @return die Anzahl der bisher geschriebenen Bytes
+     */
+    public long getBytesWritten() {
+        return bytes;
+    }
+
+    /**
+     * @return die Anzahl der bisher geschriebenen Bilder
+     */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return die Anzahl der bisher geschriebenen Schlüsselbilder
+     */
+    public int getKeyframeCount() {
+        return keyframes;
+    }
+
+    private void attach(Field field) {
+        if (encoder != null) {
+            encoder.detach();
+            close();
+            lastStep = -1;
+        }
+        encoder = new FrameEncoder(field);
+    }
+
+    private void open() throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(encoder.getField().getDepth());
+        out.writeInt(encoder.getField().getWidth());
+        out.writeInt(keyInterval);
+        frames = 0;
+        keyframes = 0;
+        bytes = 16;
+    }
+
+    private void writeFrame(int type, int step) throws IOException {
+        int compressedLength = encoder.getCompressedLength();
+        out.writeByte(type);
+        bytes += 1 + writeVarInt(step) + writeVarInt(encoder.getLength()) + writeVarInt(compressedLength)
+                + compressedLength;
+        out.write(encoder.getCompressed(), 0, compressedLength);
+        frames++;
+    }
+
+    /**
+     * @return die Anzahl der geschriebenen Bytes
+     */
+    private int writeVarInt(int value) throws IOException {
+        int count = 1;
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+            count++;
+        }
+        out.writeByte(value);
+        return count;
+    }
+
+    /**
+     * Zeichne eine Simulation ohne Fenster auf und vergleiche die Dateigröße mit
+     * vollständigen Bildern (ein Byte pro Position und Schritt).
+     *
+     * @param args Datei, Anzahl der Schritte, Abstand der Schlüsselbilder, Tiefe
+     *             und Breite (alle optional)
+     */
+    public static void main(String[] args) {
+        File file = new File(args.length > 0 ? args[0] : "simulation.replay");
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int keyInterval = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 80;
+        int width = args.length > 4 ? Integer.parseInt(args[4]) : 120;
+
+        ReplayRecorder recorder = new ReplayRecorder(file, keyInterval);
+        Simulator simulator = new Simulator(new Field(depth, width), Collections.<SimulationView>singletonList(recorder));
+        SimulatorControl.register(simulator, "ReplayRecorder:" + file.getName());
+        long start = System.nanoTime();
+        simulator.simulate(steps);
+        recorder.close();
+        long full = (long) recorder.getFrameCount() * depth * width;
+        System.out.printf("%d Bilder (%d Schlüsselbilder) in %.1f s, %d Bytes (%.1f%% von %d Bytes)%n",
+                recorder.getFrameCount(), recorder.getKeyframeCount(), (System.nanoTime() - start) / 1e9,
+                recorder.getBytesWritten(), 100.0 * recorder.getBytesWritten() / full, full);
+    }
+}
@@ -0,0 +1,344 @@
+package schulbeispiel;
+
+import java.util.Random;
+
+/**
+ * Schnelle Ziehungen aus Binomial-, Poisson- und beliebigen diskreten
+ * Verteilungen, z.B. für die Anzahl der Geburten unter n gebärfähigen Tieren
+ * eines Gebiets, ohne n einzelne Bernoulli-Versuche zu würfeln.
+ *
+ * <ul>
+ * <li>Binomial: für kleine Erwartungswerte durch Inversion (schrittweise
+ * Suche von 0 an, die Wahrscheinlichkeiten werden mit ihrem Quotienten
+ * fortgeschrieben), sonst mit BTPE (Kachitvichyanukul und Schmeiser 1988).</li>
+ * <li>Poisson: für kleine Erwartungswerte durch Multiplikation gleichverteilter
+ * Zahlen, sonst mit PTRS (Hörmann 1993).</li>
+ * <li>Beliebige diskrete Verteilungen mit einer {@link Alias}-Tabelle (Vose)
+ * in konstanter Zeit pro Ziehung.</li>
+ * </ul>
+ *
+ * Der Zufallsgenerator wird bei jeder Ziehung übergeben, z.B. der gemeinsame
+ * Generator aus {@link Randomnumbergenerator} oder ein eigener pro Thread.
+ * Die Ziehungen legen keine Objekte an.
+ */
+public final class Sampler {
+    // Ab diesem Erwartungswert wird BTPE statt der Inversion benutzt
+    private static final double BTPE_MEAN = 30;
+    // Ab diesem Erwartungswert wird PTRS statt der Multiplikation benutzt
+    private static final double PTRS_MEAN = 10;
+    // log(k!) für kleine k, darüber die Stirling-Reihe
+    private static final double[] LOG_FACTORIAL = new double[256];
+
+    static {
+        for (int k = 2; k < LOG_FACTORIAL.length; k++) {
+            LOG_FACTORIAL[k] = LOG_FACTORIAL[k - 1] + Math.log(k);
+        }
+    }
+
+    private Sampler() {
+    }
+
+    /**
+     * Ziehe die Anzahl der Erfolge unter n unabhängigen Versuchen mit der
+     * Erfolgswahrscheinlichkeit p.
+     *
+     * @param random der Zufallsgenerator
+     * @param n      die Anzahl der Versuche
+     * @param p      die Erfolgswahrscheinlichkeit
+     * @return eine Zahl zwischen 0 und n
+     */
+    public static int binomial(Random random, int n, double p) {
+        if (n < 0 || !(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Invalid binomial parameters: n=" + n + ", p=" + p);
+        }
+        if (n == 0 || p == 0) {
+            return 0;
+        } else if (p == 1) {
+            return n;
+        }
+        // Gezogen wird immer mit der kleineren der beiden Wahrscheinlichkeiten
+        double r = Math.min(p, 1 - p);
+        int successes = n * r < BTPE_MEAN ? binomialInversion(random, n, r) : binomialBtpe(random, n, r);
+        return p > 0.5 ? n - successes : successes;
+    }
+
+    private static int binomialInversion(Random random, int n, double p) {
+        double q = 1 - p;
+        double first = Math.exp(n * Math.log1p(-p));
+        // Jenseits dieser Grenze ist die restliche Wahrscheinlichkeit vernachlässigbar
+        // klein; dort wird nur durch Rundungsfehler angekommen
+        double bound = Math.min(n, n * p + 10 * Math.sqrt(n * p * q + 1));
+        int x = 0;
+        double probability = first;
+        double u = random.nextDouble();
+        while (u > probability) {
+            x++;
+            if (x > bound) {
+                x = 0;
+                probability = first;
+                u = random.nextDouble();
+            } else {
+                u -= probability;
+                probability *= (n - x + 1) * p / (x * q);
+            }
+        }
+        return x;
+    }
+
+    private static int binomialBtpe(Random random, int n, double p) {
+        double q = 1 - p;
+        double nrq = n * p * q;
+        double fm = n * p + p;
+        int m = (int) Math.floor(fm);
+        // Das Dreieck um den Modus, die Parallelogramme links und rechts davon
+        // und die exponentiellen Ausläufer
+        double p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+        double xm = m + 0.5;
+        double xl = xm - p1;
+        double xr = xm + p1;
+        double c = 0.134 + 20.5 / (15.3 + m);
+        double a = (fm - xl) / (fm - xl * p);
+        double lambdaLeft = a * (1 + a / 2);
+        a = (xr - fm) / (xr * q);
+        double lambdaRight = a * (1 + a / 2);
+        double p2 = p1 * (1 + 2 * c);
+        double p3 = p2 + c / lambdaLeft;
+        double p4 = p3 + c / lambdaRight;
+
+        while (true) {
+            double u = random.nextDouble() * p4;
+            double v = random.nextDouble();
+            int y;
+            if (u <= p1) {
+                // Im Dreieck wird ohne weiteren Test angenommen
+                return (int) Math.floor(xm - p1 * v + u);
+            } else if (u <= p2) {
+                double x = xl + (u - p1) / c;
+                v = v * c + 1 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1) {
+                    continue;
+                }
+                y = (int) Math.floor(x);
+            } else if (u <= p3) {
+                y = (int) Math.floor(xl + Math.log(v) / lambdaLeft);
+                if (y < 0 || v == 0) {
+                    continue;
+                }
+                v = v * (u - p2) * lambdaLeft;
+            } else {
+                y = (int) Math.floor(xr - Math.log(v) / lambdaRight);
+                if (y > n || v == 0) {
+                    continue;
+                }
+                v = v * (u - p3) * lambdaRight;
+            }
+
+            int k = Math.abs(y - m);
+            if (k <= 20 || k >= nrq / 2 - 1) {
+                // Nahe am Modus: die Dichte direkt über ihre Quotienten berechnen
+                double s = p / q;
+                double t = s * (n + 1);
+                double f = 1;
+                if (m < y) {
+                    for (int i = m + 1; i <= y; i++) {
+                        f *= t / i - s;
+                    }
+                } else if (m > y) {
+                    for (int i = y + 1; i <= m; i++) {
+                        f /= t / i - s;
+                    }
+                }
+                if (v <= f) {
+                    return y;
+                }
+                continue;
+            }
+
+            // Weiter entfernt: zuerst mit Schranken für log(f) vergleichen, nur
+            // dazwischen mit der Stirling-Näherung
+            double rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 0.1666666666666666) / nrq + 0.5);
+            double t = -(double) k * k / (2 * nrq);
+            double logV = Math.log(v);
+            if (logV < t - rho) {
+                return y;
+            }
+            if (logV > t + rho) {
+                continue;
+            }
+            double x1 = y + 1;
+            double f1 = m + 1;
+            double z = n + 1 - m;
+            double w = n - y + 1;
+            double bound = xm * Math.log(f1 / x1) + (n - m + 0.5) * Math.log(z / w)
+                    + (y - m) * Math.log(w * p / (x1 * q)) + stirlingCorrection(f1) + stirlingCorrection(z)
+                    + stirlingCorrection(x1) + stirlingCorrection(w);
+            if (logV <= bound) {
+                return y;
+            }
+        }
+    }
+
+    /**
+     * Der Korrekturterm der Stirling-Formel, wie ihn BTPE benutzt.
+     */
+    private static double stirlingCorrection(double x) {
+        double x2 = x * x;
+        return (13680. - (462. - (132. - (99. - 140. / x2) / x2) / x2) / x2) / x / 166320.;
+    }
+
+    /**
+     * Ziehe eine Poisson-verteilte Zahl.
+     *
+     * @param random der Zufallsgenerator
+     * @param mean   der Erwartungswert
+     * @return eine Zahl ab 0
+     */
+    public static int poisson(Random random, double mean) {
+        if (!(mean >= 0) || mean > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Invalid Poisson mean: " + mean);
+        }
+        if (mean == 0) {
+            return 0;
+        } else if (mean < PTRS_MEAN) {
+            double limit = Math.exp(-mean);
+            int k = 0;
+            double product = random.nextDouble();
+            while (product > limit) {
+                k++;
+                product *= random.nextDouble();
+            }
+            return k;
+        }
+        return poissonPtrs(random, mean);
+    }
+
+    private static int poissonPtrs(Random random, double mean) {
+        double logMean = Math.log(mean);
+        double b = 0.931 + 2.53 * Math.sqrt(mean);
+        double a = -0.059 + 0.02483 * b;
+        double logInverseAlpha = Math.log(1.1239 + 1.1328 / (b - 3.4));
+        double vr = 0.9277 - 3.6224 / (b - 2);
+        while (true) {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + mean + 0.43);
+            if (us >= 0.07 && v <= vr) {
+                return (int) k;
+            }
+            if (k < 0 || us < 0.013 && v > us) {
+                continue;
+            }
+            if (Math.log(v) + logInverseAlpha - Math.log(a / (us * us) + b) <= -mean + k * logMean
+                    - logFactorial(k)) {
+                return (int) k;
+            }
+        }
+    }
+
+    /**
+     * @return log(k!)
+     */
+    static double logFactorial(long k) {
+        if (k < LOG_FACTORIAL.length) {
+            return LOG_FACTORIAL[(int) k];
+        }
+        // Stirling-Reihe für log(Gamma(x)) mit x = k + 1
+        double x = k + 1;
+        double x2 = 1 / (x * x);
+        double series = ((((-1.0 / 1680 * x2 + 1.0 / 1260) * x2 - 1.0 / 360) * x2 + 1.0 / 12)) / x;
+        return (x - 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI) + series;
+    }
+
+    /**
+     * Eine Tabelle zum Ziehen aus einer festen diskreten Verteilung mit der
+     * Alias-Methode: jede Ziehung wählt gleichverteilt eine Spalte und darin
+     * mit einer Vergleichszahl entweder die Spalte selbst oder ihren Alias. Der
+     * Aufbau dauert linear in der Anzahl der Werte, jede Ziehung konstant.
+     */
+    public static final class Alias {
+        // Pro Spalte die Wahrscheinlichkeit, die Spalte selbst zu ziehen
+        private final double[] keep;
+        // Pro Spalte der andere Wert
+        private final int[] alias;
+
+        /**
+         * Baue die Tabelle für die gegebenen Gewichte auf. Die Gewichte müssen
+         * nicht normiert sein.
+         *
+         * @param weights die nicht negativen Gewichte der Werte 0 bis n-1
+         */
+        public Alias(double[] weights) {
+            int n = weights.length;
+            double total = 0;
+            for (double weight : weights) {
+                if (!(weight >= 0) || Double.isInfinite(weight)) {
+                    throw new IllegalArgumentException("Invalid weight: " + weight);
+                }
+                total += weight;
+            }
+            if (n == 0 || total <= 0) {
+                throw new IllegalArgumentException("At least one weight must be positive");
+            }
+            keep = new double[n];
+            alias = new int[n];
+            // Spalten mit zu kleinem Anteil von vorn, mit zu großem von hinten
+            int[] work = new int[n];
+            int small = 0;
+            int large = n;
+            for (int i = 0; i < n; i++) {
+                keep[i] = weights[i] * n / total;
+                if (keep[i] < 1) {
+                    work[small++] = i;
+                } else {
+                    work[--large] = i;
+                }
+            }
+            int nextSmall = 0;
+            while (nextSmall < small && large < n) {
+                int less = work[nextSmall++];
+                int more = work[large];
+                alias[less] = more;
+                keep[more] -= 1 - keep[less];
+                if (keep[more] < 1) {
+                    // Die Spalte ist jetzt selbst zu klein; sie rückt an die Stelle
+                    // der eben verbrauchten kleinen Spalte
+                    work[--nextSmall] = more;
+                    large++;
+                }
+            }
+            // Reste durch Rundungsfehler gelten als volle Spalten
+            for (int i = nextSmall; i < small; i++) {
+                keep[work[i]] = 1;
+            }
+            for (int i = large; i < n; i++) {
+                keep[work[i]] = 1;
+            }
+            for (int i = 0; i < n; i++) {
+                if (keep[i] >= 1) {
+                    alias[i] = i;
+                }
+            }
+        }
+
+        /**
+         * Ziehe einen Wert mit einer einzigen gleichverteilten Zahl.
+         *
+         * @param random der Zufallsgenerator
+         * @return ein Wert zwischen 0 und n-1
+         */
+        public int sample(Random random) {
+            double u = random.nextDouble() * keep.length;
+            // Das Produkt kann für große Tabellen auf die Länge aufrunden
+            int column = Math.min((int) u, keep.length - 1);
+            return u - column < keep[column] ? column : alias[column];
+        }
+
+        /**
+         * @return die Anzahl der Werte
+         */
+        public int size() {
+            return keep.length;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package schulbeispiel;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Vergleicht die Laufzeit der Ziehungen aus {@link Sampler} mit den einfachen
+ * Verfahren: n einzelne Bernoulli-Versuche für eine Binomialverteilung,
+ * Multiplikation gleichverteilter Zahlen für eine Poisson-Verteilung und für
+ * die Wurfgröße die zwei Ziehungen aus traechtig. Jede Messung läuft zweimal;
+ * ausgegeben wird der zweite Durchlauf, wenn der JIT-Compiler die Schleifen
+ * übersetzt hat. Zusätzlich werden die Mittelwerte verglichen und die pro
+ * Ziehung angelegten Bytes ausgegeben.
+ */
+public class SamplerBenchmark {
+    // Die Mindestdauer einer Messung in Nanosekunden
+    private static final long NANOS = 200000000L;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Eine Ziehung, die gemessen wird.
+     */
+    private interface Draw {
+        int draw(Random random);
+    }
+
+    private static long sum;
+
+    /**
+     * @param args optional die Wahrscheinlichkeit der Versuche (Vorgabe 0.12 wie
+     *             für die Geburten der Hasen)
+     */
+    public static void main(String[] args) {
+        final double p = args.length > 0 ? Double.parseDouble(args[0]) : 0.12;
+        for (int round = 0; round < 2; round++) {
+            boolean report = round == 1;
+            if (report) {
+                System.out.printf("%-28s %12s %12s %10s %10s%n", "", "ns/Ziehung", "Mittelwert", "Erwartet",
+                        "Bytes");
+            }
+            for (final int n : new int[] { 10, 100, 1000, 10000, 100000 }) {
+                measure(report, "Bernoulli-Schleife n=" + n, n * p, random -> {
+                    int successes = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (random.nextDouble() <= p) {
+                            successes++;
+                        }
+                    }
+                    return successes;
+                });
+                measure(report, "Sampler.binomial n=" + n, n * p, random -> Sampler.binomial(random, n, p));
+            }
+            for (final double mean : new double[] { 1, 10, 100, 1000 }) {
+                final double limit = Math.exp(-mean);
+                // Die Multiplikation versagt, wenn exp(-mean) unterläuft
+                if (limit > 0) {
+                    measure(report, "Multiplikation mean=" + (int) mean, mean, random -> {
+                        int k = 0;
+                        for (double product = random.nextDouble(); product > limit; k++) {
+                            product *= random.nextDouble();
+                        }
+                        return k;
+                    });
+                }
+                measure(report, "Sampler.poisson mean=" + (int) mean, mean, random -> Sampler.poisson(random, mean));
+            }
+
+            // Die Wurfgröße eines gebärfähigen Hasen wie in Hase.traechtig
+            final int maxLitter = 4;
+            double[] weights = new double[maxLitter + 1];
+            weights[0] = 1 - p;
+            for (int size = 1; size <= maxLitter; size++) {
+                weights[size] = p / maxLitter;
+            }
+            final Sampler.Alias litter = new Sampler.Alias(weights);
+            double expected = p * (maxLitter + 1) / 2;
+            measure(report, "traechtig", expected,
+                    random -> random.nextDouble() <= p ? random.nextInt(maxLitter) + 1 : 0);
+            measure(report, "Sampler.Alias Wurfgröße", expected, litter::sample);
+        }
+        // Verhindert, dass die Schleifen wegoptimiert werden
+        System.out.println("(" + sum + ")");
+    }
+
+    private static void measure(boolean report, String name, double expected, Draw draw) {
+        Random random = new Random(1);
+        long draws = 0;
+        long total = 0;
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                total += draw.draw(random);
+            }
+            draws += 1000;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < NANOS);
+        allocated = allocatedBytes() - allocated;
+        sum += total;
+        if (report) {
+            System.out.printf("%-28s %12.1f %12.3f %10.3f %10.3f%n", name, (double) elapsed / draws,
+                    (double) total / draws, expected, (double) allocated / draws);
+        }
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,349 @@
+package schulbeispiel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Führt ein Szenario (eine Arbeitslast) ohne Fenster aus und misst, wie schnell
+ * die Simulation von Anfang bis Ende läuft, einschließlich aller Phasen mit
+ * Bevölkerungsexplosionen und Zusammenbrüchen. Ein Szenario wird in einer
+ * Properties-Datei beschrieben (siehe das Verzeichnis scenarios):
+ *
+ * <pre>
+ * name, depth, width, seed, storage (heap oder offheap)
+ * warmupSteps, measuredSteps
+ * foxDensity, rabbitDensity
+ * rabbit.breedingAge, rabbit.maxAge, rabbit.breedingProbability, rabbit.maxLitterSize
+ * fox.breedingAge, fox.maxAge, fox.breedingProbability, fox.maxLitterSize, fox.rabbitFoodValue
+ * </pre>
+ *
+ * Fehlende Werte haben die üblichen Vorgaben der Simulation. Das Ergebnis wird
+ * als JSON ausgegeben. Wird ein früheres Ergebnis als Vergleich angegeben,
+ * endet das Programm mit dem Status 1, wenn sich eine Kennzahl um mehr als die
+ * Schwelle verschlechtert hat. Geänderte Eigenschaften der Tiere gelten nur für
+ * den Simulator dieses Laufs; mehrere Läufe in einer JVM verwaltet der
+ * {@link SimulationServer}.
+ *
+ * <pre>
+ * java schulbeispiel.ScenarioRunner scenarios/default.properties -o neu.json -baseline alt.json -threshold 10
+ * </pre>
+ */
+public class ScenarioRunner {
+    // Die Kennzahlen, die verglichen werden, und ob ein größerer Wert besser ist
+    private static final Map<String, Boolean> GATED = new LinkedHashMap<>();
+
+    static {
+        GATED.put("stepsPerSecond", true);
+        GATED.put("stepP50Nanos", false);
+        GATED.put("stepP99Nanos", false);
+        GATED.put("peakHeapBytes", false);
+    }
+
+    private final Properties workload;
+
+    /**
+     * Wird nach jedem Schritt eines Laufs aufgerufen, z.B. um Zwischenstände an
+     * den {@link SimulationServer} zu melden. Eine Ausnahme bricht den Lauf ab.
+     */
+    public interface Progress {
+        /**
+         * @param simulator der laufende Simulator
+         * @param step      die Nummer des Schritts, von 1 an über Aufwärm- und
+         *                  Messphase gezählt
+         * @param measured  true, wenn der Schritt zur Messphase gehört
+         */
+        void step(Simulator simulator, int step, boolean measured);
+    }
+
+    /**
+     * @param workload die Beschreibung des Szenarios
+     */
+    public ScenarioRunner(Properties workload) {
+        this.workload = workload;
+    }
+
+    /**
+     * Führe das Szenario aus.
+     *
+     * @return die Kennzahlen des Laufs in der Reihenfolge der Ausgabe
+     */
+    public Map<String, Object> run() {
+        return run(null);
+    }
+
+    /**
+     * Führe das Szenario aus und melde jeden Schritt.
+     *
+     * @param progress wird nach jedem Schritt aufgerufen, oder null
+     * @return die Kennzahlen des Laufs in der Reihenfolge der Ausgabe
+     */
+    public Map<String, Object> run(Progress progress) {
+        return simulate(progress);
+    }
+
+    private Map<String, Object> simulate(Progress progress) {
+        int depth = intValue("depth", 80);
+        int width = intValue("width", 120);
+        long seed = Long.parseLong(workload.getProperty("seed", "0"));
+
+        Field field;
+        String storage = workload.getProperty("storage", "heap");
+        if (storage.equals("heap")) {
+            field = new Field(depth, width);
+        } else if (storage.equals("offheap")) {
+            field = new Field(new OffHeapFieldStorage(depth, width));
+        } else {
+            throw new IllegalArgumentException("Unknown storage: " + storage);
+        }
+        Simulator simulator = new Simulator(field, Collections.<SimulationView>emptyList());
+        Double foxDensity = decimal("foxDensity");
+        Double rabbitDensity = decimal("rabbitDensity");
+        if (foxDensity != null || rabbitDensity != null) {
+            simulator.setPopulationDensities(foxDensity != null ? foxDensity : Simulator.FUCHSGEBURT_WAHRSCHEINLICH,
+                    rabbitDensity != null ? rabbitDensity : Simulator.HASENGEBURT_WAHRSCHEINLICH);
+        }
+        SpeciesParameters parameters = simulator.getSpeciesParameters();
+        parameters.configureHase(integer("rabbit.breedingAge"), integer("rabbit.maxAge"),
+                decimal("rabbit.breedingProbability"), integer("rabbit.maxLitterSize"));
+        parameters.configureFuchs(integer("fox.breedingAge"), integer("fox.maxAge"),
+                decimal("fox.breedingProbability"), integer("fox.maxLitterSize"), integer("fox.rabbitFoodValue"));
+        Randomnumbergenerator.setSeed(seed);
+        simulator.reset();
+
+        try {
+            return measure(simulator, progress, seed, storage);
+        } finally {
+            // Auch ein abgebrochener Lauf gibt den Speicher des Feldes frei
+            simulator.release();
+        }
+    }
+
+    private Map<String, Object> measure(Simulator simulator, Progress progress, long seed, String storage) {
+        int depth = simulator.getField().getDepth();
+        int width = simulator.getField().getWidth();
+        int warmupSteps = intValue("warmupSteps", 200);
+        int measuredSteps = intValue("measuredSteps", 2000);
+        for (int i = 0; i < warmupSteps; i++) {
+            simulator.simulateOneStep();
+            if (progress != null) {
+                progress.step(simulator, i + 1, false);
+            }
+        }
+
+        StepMetrics metrics = simulator.getMetrics();
+        metrics.reset();
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        long gcTime = -gcTime();
+        long gcCount = -gcCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredSteps; i++) {
+            simulator.simulateOneStep();
+            if (progress != null) {
+                progress.step(simulator, warmupSteps + i + 1, true);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        gcTime += gcTime();
+        gcCount += gcCount();
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scenario", workload.getProperty("name", "unnamed"));
+        result.put("depth", depth);
+        result.put("width", width);
+        result.put("seed", seed);
+        result.put("storage", storage);
+        result.put("warmupSteps", warmupSteps);
+        result.put("measuredSteps", measuredSteps);
+        result.put("seconds", seconds);
+        result.put("stepsPerSecond", measuredSteps / seconds);
+        result.put("cellUpdatesPerSecond", (double) depth * width * measuredSteps / seconds);
+        result.put("stepMeanNanos", metrics.getStepTimes().getMean());
+        result.put("stepP50Nanos", metrics.getStepTimes().getPercentile(0.5));
+        result.put("stepP99Nanos", metrics.getStepTimes().getPercentile(0.99));
+        result.put("stepMaxNanos", metrics.getStepTimes().getMax());
+        result.put("allocatedBytesPerStep", metrics.getAllocatedBytesPerStep());
+        result.put("peakHeapBytes", peakHeap);
+        result.put("gcTimeMillis", gcTime);
+        result.put("gcCount", gcCount);
+        result.put("organisms", simulator.getOrganisms().size());
+        // Gleiche Hashwerte zeigen, dass zwei Builds dieselbe Arbeit geleistet haben
+        result.put("finalStateHash", Long.toString(simulator.getStateHash()));
+        return result;
+    }
+
+    /**
+     * Vergleiche ein Ergebnis mit einem früheren und gib die Unterschiede aus.
+     *
+     * @param baseline         das frühere Ergebnis
+     * @param current          das neue Ergebnis
+     * @param thresholdPercent die erlaubte Verschlechterung in Prozent
+     * @param out              die Ausgabe für den Vergleich
+     * @return true, wenn sich keine Kennzahl um mehr als die Schwelle
+     *         verschlechtert hat
+     */
+    public static boolean compare(Map<String, Object> baseline, Map<String, Object> current, double thresholdPercent,
+            PrintStream out) {
+        boolean ok = true;
+        if (!String.valueOf(baseline.get("finalStateHash")).equals(String.valueOf(current.get("finalStateHash")))) {
+            out.println("Warnung: die Läufe enden in unterschiedlichen Zuständen, die Arbeit ist nicht vergleichbar");
+        }
+        for (Map.Entry<String, Boolean> gated : GATED.entrySet()) {
+            String key = gated.getKey();
+            if (!(baseline.get(key) instanceof Number) || !(current.get(key) instanceof Number)) {
+                continue;
+            }
+            double before = ((Number) baseline.get(key)).doubleValue();
+            double after = ((Number) current.get(key)).doubleValue();
+            if (before <= 0) {
+                continue;
+            }
+            double change = 100 * (after - before) / before;
+            double worse = gated.getValue() ? -change : change;
+            boolean regression = worse > thresholdPercent;
+            out.printf("%-22s %14.1f -> %14.1f  %+6.1f%%%s%n", key, before, after, change,
+                    regression ? "  REGRESSION" : "");
+            ok &= !regression;
+        }
+        return ok;
+    }
+
+    /**
+     * Schreibe ein Ergebnis als JSON-Objekt.
+     */
+    public static String toJson(Map<String, Object> result) {
+        StringBuilder json = new StringBuilder("{\n");
+        int i = 0;
+        for (Map.Entry<String, Object> entry : result.entrySet()) {
+            json.append("  \"").append(entry.getKey()).append("\": ");
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                json.append(value);
+            } else {
+                json.append('"').append(String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            }
+            json.append(++i < result.size() ? ",\n" : "\n");
+        }
+        return json.append("}\n").toString();
+    }
+
+    /**
+     * Lies ein Ergebnis, wie es {@link #toJson} schreibt. Es werden nur flache
+     * Objekte mit Zahlen und Zeichenketten unterstützt.
+     */
+    public static Map<String, Object> fromJson(String json) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Matcher matcher = Pattern.compile("\"(\\w+)\"\\s*:\\s*(\"((?:[^\"\\\\]|\\\\.)*)\"|[-+0-9.eE]+)").matcher(json);
+        while (matcher.find()) {
+            if (matcher.group(3) != null) {
+                result.put(matcher.group(1), matcher.group(3).replace("\\\"", "\"").replace("\\\\", "\\"));
+            } else {
+                result.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+            }
+        }
+        return result;
+    }
+
+    private int intValue(String key, int defaultValue) {
+        Integer value = integer(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private Integer integer(String key) {
+        String value = workload.getProperty(key);
+        return value == null ? null : Integer.valueOf(value.trim());
+    }
+
+    private Double decimal(String key) {
+        String value = workload.getProperty(key);
+        return value == null ? null : Double.valueOf(value.trim());
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    /**
+     * @param args die Szenariodatei, optional gefolgt von -o Ergebnisdatei,
+     *             -baseline früheres Ergebnis und -threshold Schwelle in Prozent
+     *             (Vorgabe 10)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println(
+                    "usage: ScenarioRunner <workload.properties> [-o result.json] [-baseline old.json] [-threshold percent]");
+            System.exit(2);
+        }
+        File output = null;
+        File baseline = null;
+        double threshold = 10;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("-o")) {
+                output = new File(args[i + 1]);
+            } else if (args[i].equals("-baseline")) {
+                baseline = new File(args[i + 1]);
+            } else if (args[i].equals("-threshold")) {
+                threshold = Double.parseDouble(args[i + 1]);
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        Properties workload = new Properties();
+        try (InputStream in = new FileInputStream(args[0])) {
+            workload.load(in);
+        }
+        Map<String, Object> result = new ScenarioRunner(workload).run();
+        String json = toJson(result);
+        if (output != null) {
+            Files.write(output.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        } else {
+            System.out.print(json);
+        }
+
+        if (baseline != null) {
+            String old = new String(Files.readAllBytes(baseline.toPath()), StandardCharsets.UTF_8);
+            if (!compare(fromJson(old), fromJson(json), threshold, System.out)) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package schulbeispiel;
+
+/**
+ * Der Verlauf mehrerer Zahlenreihen über einen ganzen Simulationslauf, z.B. die
+ * Größe jeder Population in jedem Schritt. Die Werte werden in einer festen
+ * Anzahl von Eimern abgelegt, die jeweils das Minimum und das Maximum einer
+ * gleich langen Folge von Schritten speichern. Sind alle Eimer belegt, werden
+ * je zwei benachbarte Eimer zusammengefasst und jeder Eimer deckt danach
+ * doppelt so viele Schritte ab. Der Speicherbedarf und der Aufwand zum Zeichnen
+ * hängen damit nur von der Anzahl der Eimer ab, nicht von der Länge des Laufes.
+ * Minimum und Maximum jedes Abschnitts bleiben dabei exakt erhalten.
+ */
+public class SeriesHistory {
+    private final int series;
+    private final int capacity;
+    // Minimum und Maximum pro Reihe und Eimer
+    private final int[][] min, max;
+    // Die Anzahl der belegten Eimer (der letzte kann unvollständig sein)
+    private int buckets;
+    // Die Anzahl der Schritte pro Eimer
+    private int bucketSteps;
+    // Die Anzahl der Schritte im letzten Eimer
+    private int filled;
+    // Der größte bisher aufgetretene Wert
+    private int maxValue;
+
+    /**
+     * Erzeuge einen leeren Verlauf.
+     *
+     * @param series   die Anzahl der Reihen
+     * @param capacity die Anzahl der Eimer (wird auf eine gerade Zahl aufgerundet)
+     */
+    public SeriesHistory(int series, int capacity) {
+        this.series = series;
+        this.capacity = Math.max(2, capacity + (capacity & 1));
+        min = new int[series][this.capacity];
+        max = new int[series][this.capacity];
+        clear();
+    }
+
+    /**
+     * Verwirf alle Werte.
+     */
+    public void clear() {
+        buckets = 0;
+        bucketSteps = 1;
+        filled = 0;
+        maxValue = 0;
+    }
+
+    /**
+     * Hänge die Werte eines Schrittes an.
+     *
+     * @param values ein Wert pro Reihe
+     */
+    public void add(int[] values) {
+        if (buckets == 0 || filled == bucketSteps) {
+            if (buckets == capacity) {
+                compact();
+            }
+            for (int s = 0; s < series; s++) {
+                min[s][buckets] = values[s];
+                max[s][buckets] = values[s];
+            }
+            buckets++;
+            filled = 0;
+        }
+        int b = buckets - 1;
+        for (int s = 0; s < series; s++) {
+            int value = values[s];
+            if (value < min[s][b]) {
+                min[s][b] = value;
+            }
+            if (value > max[s][b]) {
+                max[s][b] = value;
+            }
+            if (value > maxValue) {
+                maxValue = value;
+            }
+        }
+        filled++;
+    }
+
+    /**
+     * Fasse je zwei benachbarte Eimer zusammen.
+     */
+    private void compact() {
+        int half = capacity / 2;
+        for (int s = 0; s < series; s++) {
+            int[] mins = min[s];
+            int[] maxs = max[s];
+            for (int i = 0; i < half; i++) {
+                mins[i] = Math.min(mins[2 * i], mins[2 * i + 1]);
+                maxs[i] = Math.max(maxs[2 * i], maxs[2 * i + 1]);
+            }
+        }
+        buckets = half;
+        bucketSteps *= 2;
+        filled = bucketSteps;
+    }
+
+    /**
+     * @return die Anzahl der Reihen
+     */
+    public int getSeries() {
+        return series;
+    }
+
+    /**
+     * @return die Anzahl der belegten Eimer
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @return der größte bisher angehängte Wert
+     */
+    public int getMaxValue() {
+        return maxValue;
+    }
+
+    /**
+     * @return das Minimum der gegebenen Reihe im gegebenen Eimer
+     */
+    public int getMin(int serie, int bucket) {
+        return min[serie][bucket];
+    }
+
+    /**
+     * @return das Maximum der gegebenen Reihe im gegebenen Eimer
+     */
+    public int getMax(int serie, int bucket) {
+        return max[serie][bucket];
+    }
+}
@@ -0,0 +1,137 @@
+package schulbeispiel;
+
+/**
+ * Ereignisse für den Java Flight Recorder, mit denen sich eine Aufzeichnung
+ * den Phasen der Simulation zuordnen lässt, z.B. eine GC-Pause einem Schritt
+ * mit vielen Geburten. Alle Ereignisse sind abgeschaltet und kosten dann fast
+ * nichts; eingeschaltet werden sie mit der Einstellungsdatei simulation.jfc im
+ * Projektverzeichnis, z.B.
+ *
+ * <pre>
+ * java -XX:StartFlightRecording=settings=simulation.jfc,filename=run.jfr ...
+ * </pre>
+ *
+ * Diese Klasse selbst benutzt kein jdk.jfr, damit die Simulation auch auf
+ * einer JVM ohne JFR läuft. Die Ereignisse stehen in
+ * {@link JfrSimulationEvents}, die nur geladen wird, wenn es das Paket jdk.jfr
+ * gibt (Java 8u262 oder neuer); sonst bleiben alle Methoden wirkungslos. Wer
+ * eine Dauer misst, bekommt beim Beginn ein Objekt, das er beim Ende wieder
+ * übergibt; ohne JFR ist es null.
+ */
+class SimulationEvents {
+    // Der Anteil der Population, ab dem Geburten oder Todesfälle gemeldet werden
+    static final double BURST_FRACTION = 0.25;
+
+    // Die Ereignisse dieser JVM
+    static final SimulationEvents EVENTS = load();
+
+    SimulationEvents() {
+    }
+
+    /**
+     * Lade die Ereignisse für JFR, falls die JVM jdk.jfr kennt.
+     */
+    private static SimulationEvents load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (SimulationEvents) Class.forName("schulbeispiel.JfrSimulationEvents").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new SimulationEvents();
+        }
+    }
+
+    /**
+     * Beginne einen ganzen Simulationsschritt.
+     */
+    Object beginStep() {
+        return null;
+    }
+
+    /**
+     * Beende einen Simulationsschritt.
+     *
+     * @param event     das Objekt von beginStep
+     * @param step      der Schritt
+     * @param organisms die Anzahl der Tiere nach dem Schritt
+     * @param births    die Anzahl der Geburten
+     * @param deaths    die Anzahl der Todesfälle
+     */
+    void endStep(Object event, int step, int organisms, int births, int deaths) {
+    }
+
+    /**
+     * @return true, wenn die Laufzeit pro Tierart gemessen werden soll
+     */
+    boolean isActBatchEnabled() {
+        return false;
+    }
+
+    /**
+     * Melde das Agieren aller Tiere einer Art in einem Schritt. Die Tiere einer
+     * Art stehen nicht unbedingt hintereinander in der Tierliste; die Laufzeit
+     * ist deshalb die Summe über alle Abschnitte der Liste mit dieser Art.
+     */
+    void actBatch(int step, String species, int count, long actTime) {
+    }
+
+    /**
+     * @return true, wenn die Anzahl der Tiere pro Art gemeldet werden soll
+     */
+    boolean isPopulationEnabled() {
+        return false;
+    }
+
+    /**
+     * Melde die Anzahl der Tiere einer Art nach einem Schritt.
+     */
+    void population(int step, String species, int count) {
+    }
+
+    /**
+     * @return true, wenn gehäufte Geburten oder Todesfälle gemeldet werden sollen
+     */
+    boolean isPopulationBurstEnabled() {
+        return false;
+    }
+
+    /**
+     * Melde eine gehäufte Zahl von Geburten oder Todesfällen in einem Schritt,
+     * d.h. mehr als den Anteil BURST_FRACTION der Population.
+     */
+    void populationBurst(int step, int births, int deaths, int organismsBefore) {
+    }
+
+    /**
+     * Beginne ein vollständiges Auszählen des Feldes in {@link FieldStatistics}.
+     */
+    Object beginRecount() {
+        return null;
+    }
+
+    /**
+     * Beende ein Auszählen des Feldes.
+     *
+     * @param event das Objekt von beginRecount
+     * @param cells die Anzahl der ausgezählten Positionen
+     */
+    void endRecount(Object event, long cells) {
+    }
+
+    /**
+     * Beginne das Zeichnen einer Ansicht nach einem Schritt.
+     */
+    Object beginRepaint() {
+        return null;
+    }
+
+    /**
+     * Beende das Zeichnen einer Ansicht.
+     *
+     * @param event das Objekt von beginRepaint
+     * @param view  der Name der Ansicht
+     * @param step  der gezeichnete Schritt
+     */
+    void endRepaint(Object event, String view, int step) {
+    }
+}
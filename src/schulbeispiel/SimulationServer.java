@@ -0,0 +1,430 @@
+package schulbeispiel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Ein lokaler HTTP-Dienst, der Szenarien des {@link ScenarioRunner} in einer
+ * laufenden JVM ausführt. So entfällt für jeden Lauf der Start einer JVM, und
+ * spätere Läufe nutzen den bereits vom JIT übersetzten Code der Simulation.
+ *
+ * Die Läufe werden von einer festen Anzahl an Threads (Vorgabe: die Anzahl der
+ * Prozessoren) ausgeführt; weitere Läufe warten in einer begrenzten
+ * Warteschlange. Ist sie voll, wird ein Auftrag mit 503 abgelehnt. Die Anfragen
+ * selbst bearbeitet ein eigener, wachsender Thread-Vorrat, damit wartende
+ * Zuhörer die Läufe nicht aufhalten. Jeder Lauf hat einen eigenen
+ * {@link Simulator} mit eigenen Eigenschaften der Tiere, so dass Läufe mit
+ * verschiedenen Eigenschaften gleichzeitig laufen können.
+ *
+ * <pre>
+ * POST   /runs[?reportEvery=n]  Szenario im Properties-Format starten
+ * GET    /runs                  alle Läufe
+ * GET    /runs/{id}             Zustand und Ergebnis eines Laufs
+ * GET    /runs/{id}/events      Zwischenstände als Server-Sent Events
+ * DELETE /runs/{id}             Lauf abbrechen
+ * </pre>
+ *
+ * Die Zwischenstände (Schritt, Phase, Anzahl der Tiere je Art) werden jeden
+ * n-ten Schritt erfasst, Vorgabe 10. Das Zählen gehört zur gemessenen Zeit des
+ * Laufs.
+ */
+public class SimulationServer {
+    // Der Standard-Port des Dienstes
+    public static final int DEFAULT_PORT = 47120;
+    // Die Anzahl der beendeten Läufe, die noch abgefragt werden können
+    private static final int MAX_FINISHED_RUNS = 100;
+
+    /**
+     * Der Zustand eines Laufs.
+     */
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    private final HttpServer server;
+    private final ExecutorService requests;
+    private final ThreadPoolExecutor workers;
+    // Die Läufe in der Reihenfolge ihres Eingangs
+    private final Map<Integer, Run> runs = new LinkedHashMap<>();
+    private int nextId;
+
+    /**
+     * Ein eingereichter Lauf mit seinen Zwischenständen.
+     */
+    private final class Run implements Runnable, ScenarioRunner.Progress {
+        private final int id;
+        private final ScenarioRunner runner;
+        private final String name;
+        private final int reportEvery;
+        private volatile Status status = Status.QUEUED;
+        private volatile boolean cancelled;
+        private Future<?> future;
+        private Map<String, Object> result;
+        private String error;
+        private long started;
+        // Die fertig formatierten Ereignisse, die jeder Zuhörer von vorn liest
+        private final List<String> events = new ArrayList<>();
+
+        Run(int id, Properties workload, int reportEvery) {
+            this.id = id;
+            this.runner = new ScenarioRunner(workload);
+            this.name = workload.getProperty("name", "unnamed");
+            this.reportEvery = reportEvery;
+        }
+
+        public void run() {
+            try {
+                if (cancelled) {
+                    finish(Status.CANCELLED, null, null);
+                    return;
+                }
+                status = Status.RUNNING;
+                started = System.nanoTime();
+                publish("status", describe());
+                finish(Status.DONE, runner.run(this), null);
+            } catch (CancellationException e) {
+                finish(Status.CANCELLED, null, null);
+            } catch (RuntimeException | Error e) {
+                finish(Status.FAILED, null, String.valueOf(e).replace('\n', ' '));
+            }
+        }
+
+        public void step(Simulator simulator, int step, boolean measured) {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (step % reportEvery != 0) {
+                return;
+            }
+            int[] counts = new int[Species.count()];
+            for (Organism organism : simulator.getOrganisms()) {
+                if (organism.isAlive()) {
+                    counts[organism.getSpeciesId()]++;
+                }
+            }
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("run", id);
+            event.put("step", step);
+            event.put("phase", measured ? "measured" : "warmup");
+            event.put("elapsedMillis", (System.nanoTime() - started) / 1000000);
+            for (int species = Species.EMPTY + 1; species < counts.length; species++) {
+                event.put(Species.classOf(species).getSimpleName(), counts[species]);
+            }
+            publish("step", event);
+        }
+
+        private synchronized void finish(Status end, Map<String, Object> result, String error) {
+            // Zuhörer sehen das Ende erst zusammen mit dem letzten Ereignis
+            this.result = result;
+            this.error = error;
+            status = end;
+            publish("done", describe());
+        }
+
+        private synchronized Map<String, Object> describe() {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("id", id);
+            description.put("name", name);
+            description.put("status", status);
+            if (error != null) {
+                description.put("error", error);
+            }
+            if (result != null) {
+                description.putAll(result);
+            }
+            return description;
+        }
+
+        private synchronized void publish(String type, Map<String, Object> data) {
+            events.add("event: " + type + "\ndata: " + compact(data) + "\n\n");
+            notifyAll();
+        }
+
+        private boolean isFinished() {
+            return status != Status.QUEUED && status != Status.RUNNING;
+        }
+
+        /**
+         * Schreibe alle Ereignisse an einen Zuhörer, bis der Lauf beendet ist.
+         */
+        private void stream(OutputStream out) throws IOException, InterruptedException {
+            int next = 0;
+            while (true) {
+                String pending;
+                boolean finished;
+                synchronized (this) {
+                    while (next == events.size() && !isFinished()) {
+                        wait();
+                    }
+                    StringBuilder text = new StringBuilder();
+                    for (; next < events.size(); next++) {
+                        text.append(events.get(next));
+                    }
+                    pending = text.toString();
+                    finished = isFinished();
+                }
+                out.write(pending.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (finished) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Erzeuge einen Dienst auf dem gegebenen Port von localhost.
+     *
+     * @param port    der Port, 0 für einen freien Port
+     * @param threads die Anzahl der gleichzeitigen Läufe
+     * @param queue   die Anzahl der Läufe, die höchstens warten
+     */
+    public SimulationServer(int port, int threads, int queue) throws IOException {
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queue),
+                threadFactory("simulation-run-"));
+        requests = Executors.newCachedThreadPool(threadFactory("simulation-http-"));
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/runs", exchange -> {
+            try {
+                handle(exchange);
+            } catch (RuntimeException e) {
+                respond(exchange, 400, "{\"error\": \"" + String.valueOf(e.getMessage()).replace("\"", "'") + "\"}\n");
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(requests);
+    }
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private int count;
+
+            public synchronized Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, prefix + ++count);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Nimm Anfragen entgegen.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Beende den Dienst und brich alle Läufe ab.
+     */
+    public void stop() {
+        synchronized (runs) {
+            for (Run run : runs.values()) {
+                run.cancelled = true;
+            }
+        }
+        server.stop(0);
+        workers.shutdownNow();
+        requests.shutdownNow();
+    }
+
+    /**
+     * @return der Port, an dem der Dienst wartet
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Reiche ein Szenario ein.
+     *
+     * @param workload    die Beschreibung des Szenarios
+     * @param reportEvery der Abstand der Zwischenstände in Schritten
+     * @return die Kennung des Laufs
+     * @throws RejectedExecutionException wenn die Warteschlange voll ist
+     */
+    public int submit(Properties workload, int reportEvery) {
+        if (reportEvery <= 0) {
+            throw new IllegalArgumentException("reportEvery must be positive: " + reportEvery);
+        }
+        synchronized (runs) {
+            Run run = new Run(++nextId, workload, reportEvery);
+            run.future = workers.submit(run);
+            runs.put(run.id, run);
+            int finished = 0;
+            for (Run other : runs.values()) {
+                finished += other.isFinished() ? 1 : 0;
+            }
+            for (Iterator<Run> i = runs.values().iterator(); finished > MAX_FINISHED_RUNS && i.hasNext();) {
+                if (i.next().isFinished()) {
+                    i.remove();
+                    finished--;
+                }
+            }
+            return run.id;
+        }
+    }
+
+    /**
+     * Brich einen Lauf ab. Ein wartender Lauf wird nicht mehr gestartet, ein
+     * laufender endet nach dem aktuellen Schritt.
+     *
+     * @param id die Kennung des Laufs
+     * @return false, wenn es den Lauf nicht gibt
+     */
+    public boolean cancel(int id) {
+        Run run = find(id);
+        if (run == null) {
+            return false;
+        }
+        run.cancelled = true;
+        if (run.future.cancel(false)) {
+            // Der Lauf hat nie begonnen und meldet sein Ende daher selbst nicht
+            workers.purge();
+            run.finish(Status.CANCELLED, null, null);
+        }
+        return true;
+    }
+
+    /**
+     * @param id die Kennung des Laufs
+     * @return der Zustand des Laufs oder null, wenn es ihn nicht gibt
+     */
+    public Status getStatus(int id) {
+        Run run = find(id);
+        return run == null ? null : run.status;
+    }
+
+    private Run find(int id) {
+        synchronized (runs) {
+            return runs.get(id);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+        // path[0] ist leer, path[1] ist "runs"
+        if (path.length == 2 && method.equals("POST")) {
+            Properties workload = new Properties();
+            workload.load(new StringReader(readBody(exchange.getRequestBody())));
+            String every = query(exchange, "reportEvery");
+            try {
+                int id = submit(workload, every != null ? Integer.parseInt(every) : 10);
+                respond(exchange, 202, ScenarioRunner.toJson(find(id).describe()));
+            } catch (RejectedExecutionException e) {
+                respond(exchange, 503, "{\"error\": \"queue full\"}\n");
+            }
+        } else if (path.length == 2 && method.equals("GET")) {
+            StringBuilder json = new StringBuilder("[");
+            synchronized (runs) {
+                for (Run run : runs.values()) {
+                    json.append(json.length() > 1 ? ",\n" : "\n").append(compact(run.describe()));
+                }
+            }
+            respond(exchange, 200, json.append("\n]\n").toString());
+        } else if (path.length >= 3) {
+            Run run = find(Integer.parseInt(path[2]));
+            if (run == null) {
+                respond(exchange, 404, "{\"error\": \"no such run\"}\n");
+            } else if (path.length == 3 && method.equals("GET")) {
+                respond(exchange, 200, ScenarioRunner.toJson(run.describe()));
+            } else if (path.length == 3 && method.equals("DELETE")) {
+                cancel(run.id);
+                respond(exchange, 202, ScenarioRunner.toJson(run.describe()));
+            } else if (path.length == 4 && path[3].equals("events") && method.equals("GET")) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                // Länge 0: die Antwort wird in Stücken (chunked) gesendet
+                exchange.sendResponseHeaders(200, 0);
+                try {
+                    run.stream(exchange.getResponseBody());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    // Der Zuhörer hat die Verbindung getrennt
+                }
+            } else {
+                respond(exchange, 405, "{\"error\": \"method not allowed\"}\n");
+            }
+        } else {
+            respond(exchange, 405, "{\"error\": \"method not allowed\"}\n");
+        }
+    }
+
+    private static String query(HttpExchange exchange, String key) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(key)) {
+                return URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0;) {
+            body.write(buffer, 0, n);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Schreibe ein Ergebnis als JSON-Objekt in einer Zeile.
+     */
+    private static String compact(Map<String, Object> data) {
+        return ScenarioRunner.toJson(data).replace("\n", "");
+    }
+
+    /**
+     * @param args optional der Port (Vorgabe 47120), die Anzahl der gleichzeitigen
+     *             Läufe (Vorgabe: die Anzahl der Prozessoren) und die Länge der
+     *             Warteschlange (Vorgabe 64)
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int queue = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        SimulationServer server = new SimulationServer(port, threads, queue);
+        server.start();
+        System.out.println("Simulation server listening on http://localhost:" + server.getPort() + "/runs");
+    }
+}
@@ -3,7 +3,11 @@ package schulbeispiel;
 import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.SplittableRandom;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
 import java.awt.Color;
 
 /**
@@ -21,10 +25,12 @@ public class Simulator {
     private static final int DEAFULT_DEPTH = 80;
     // Die Wahrscheinlichkeit für die Geburt eines Fuchses an
     // einer beliebigen Position im Feld.
-    private static final double FUCHSGEBURT_WAHRSCHEINLICH = 0.02;
+    static final double FUCHSGEBURT_WAHRSCHEINLICH = 0.02;
     // Die Wahrscheinlichkeit für die Geburt eines Hasen an
     // einer beliebigen Position im Feld.
-    private static final double HASENGEBURT_WAHRSCHEINLICH = 0.08;
+    static final double HASENGEBURT_WAHRSCHEINLICH = 0.08;
+    // Die ungefähre Anzahl an Positionen pro Band beim Bevölkern
+    private static final int POPULATE_BAND_CELLS = 1 << 16;
 
     // Listen der Tiere im Feld. Getrennte Listen vereinfachen das Iterieren.
     private List<Organism> organisms;
@@ -34,6 +40,45 @@ public class Simulator {
     private int step;
     // Eine grafische Ansicht der Simulation
     private List<SimulationView> viewList;
+    // Die Anzahl an Zeilen pro Band, wenn die Tiere bandweise agieren sollen
+    // (0 = in der Reihenfolge der Tierliste)
+    private int bandRows;
+    // Die Statistik für eine Simulation ohne Ansichten
+    private FieldStatistics stats;
+    // Soll die Simulation anhalten, sobald sich eine Belegung wiederholt?
+    private boolean stopOnRepeatedState;
+    // Die Hashwerte der bisher erreichten Belegungen, nur wenn
+    // stopOnRepeatedState gesetzt ist
+    private final StateHashes seenStates = new StateHashes();
+    // Hat sich die Belegung im letzten Schritt wiederholt?
+    private boolean repeatedState;
+    // Die Laufzeitmessung der Schritte
+    private StepMetrics metrics = new StepMetrics();
+    // Ist die Simulation angehalten? Wird auch von anderen Threads gesetzt.
+    private volatile boolean paused;
+    // Die höchste Anzahl an Schritten pro Sekunde (0 = unbegrenzt)
+    private volatile int maxStepsPerSecond;
+    // Der früheste Zeitpunkt für den nächsten Schritt, wenn gedrosselt wird
+    private long nextStepTime;
+    // Die Wahrscheinlichkeiten, mit denen populate eine Position mit einem
+    // Fuchs bzw. einem Hasen besetzt
+    private double fuchsDichte = FUCHSGEBURT_WAHRSCHEINLICH;
+    private double haseDichte = HASENGEBURT_WAHRSCHEINLICH;
+    // Die weiten Sprünge der Tiere nach jedem Schritt, oder null
+    private Mobility mobility;
+    // Die Eigenschaften der Hasen und Füchse dieser Simulation
+    private final SpeciesParameters parameters = new SpeciesParameters();
+    // Sollen die Tiere ab dem nächsten reset gleichzeitig agieren?
+    private boolean synchronous;
+    // Der gleichzeitige Schritt, oder null, wenn die Tiere der Reihe nach
+    // agieren
+    private SynchronousUpdate update;
+    // Die Zeile im Gesamtfeld, mit der das Feld beginnt, und die Tiefe des
+    // Gesamtfeldes, wenn der Simulator nur einen Streifen simuliert
+    private int firstRow;
+    private int totalDepth;
+    // Der Austausch mit den Nachbarstreifen, oder null
+    private SynchronousUpdate.Boundary boundary;
 
     /**
      * Erzeuge ein Simulationsfeld mit einer Standardgröße.
@@ -56,20 +101,93 @@ public class Simulator {
             width = DEFAULT_WIDTH;
         }
 
-        organisms = new ArrayList<>();
-        field = new Field(depth, width);
+        init(new Field(depth, width));
+    }
+
+    /**
+     * Erzeuge ein Simulationsfeld, das den gegebenen Speicher benutzt, z.B. einen
+     * {@link OffHeapFieldStorage} für sehr große Felder.
+     * 
+     * @param storage der Speicher für das Feld
+     */
+    public Simulator(FieldStorage storage) {
+        if (storage instanceof MappedFieldStorage) {
+            bandRows = ((MappedFieldStorage) storage).getBandRows();
+        }
+        init(new Field(storage));
+    }
+
+    /**
+     * Erzeuge einen Simulator für das gegebene Feld, der nur die gegebenen
+     * Ansichten aktualisiert. Mit einer leeren Liste läuft die Simulation ohne
+     * grafische Oberfläche.
+     * 
+     * @param field das Feld der Simulation
+     * @param views die Ansichten, die nach jedem Schritt aktualisiert werden
+     */
+    public Simulator(Field field, List<SimulationView> views) {
+        init(field, new ArrayList<>(views));
+    }
 
-        viewList = new ArrayList<>();
+    /**
+     * Erzeuge einen Simulator ohne Ansichten für einen Streifen des
+     * Gesamtfeldes ({@link StripWorker}). Die Tiere agieren gleichzeitig, und
+     * das Feld wird so bevölkert wie die entsprechenden Zeilen des
+     * Gesamtfeldes.
+     * 
+     * @param field      das Feld mit den Zeilen des Streifens
+     * @param firstRow   die erste Zeile des Streifens im Gesamtfeld
+     * @param totalDepth die Tiefe des Gesamtfeldes
+     * @param boundary   der Austausch mit den Nachbarstreifen
+     */
+    Simulator(Field field, int firstRow, int totalDepth, SynchronousUpdate.Boundary boundary) {
+        this.synchronous = true;
+        this.firstRow = firstRow;
+        this.totalDepth = totalDepth;
+        this.boundary = boundary;
+        init(field, new ArrayList<SimulationView>());
+    }
+
+    /**
+     * Lege die Standardansichten für das gegebene Feld an.
+     * 
+     * @param field das Feld der Simulation
+     */
+    private void init(Field field) {
+        int depth = field.getDepth();
+        int width = field.getWidth();
+        List<SimulationView> views = new ArrayList<>();
 
         SimulationView simulationView = new GridView(depth, width);
         simulationView.setColor(Hase.class, Color.ORANGE);
         simulationView.setColor(Fuchs.class, Color.BLUE);
-        viewList.add(simulationView);
+        views.add(simulationView);
 
         simulationView = new DiagrammView(500, 150, 500);
         simulationView.setColor(Hase.class, Color.BLACK);
         simulationView.setColor(Fuchs.class, Color.RED);
-        viewList.add(simulationView);
+        views.add(simulationView);
+
+        init(field, views);
+    }
+
+    /**
+     * Lege die Tierliste an und nimm einen gültigen Startzustand ein.
+     * 
+     * @param field das Feld der Simulation
+     * @param views die Ansichten der Simulation
+     */
+    private void init(Field field, List<SimulationView> views) {
+        organisms = new ArrayList<>();
+        this.field = field;
+        if (totalDepth == 0) {
+            totalDepth = field.getDepth();
+        }
+        viewList = views;
+        stats = new FieldStatistics();
+        if (views.isEmpty()) {
+            stats.follow(field);
+        }
 
         // Einen gültigen Startzustand einnehmen.
         reset();
@@ -94,51 +212,357 @@ public class Simulator {
     }
 
     public void simulate(int steps, int delay) {
-        for (int step = 1; step <= steps && viewList.get(0).isActive(field); step++) {
+        for (int step = 1; step <= steps && isActive(); step++) {
+            awaitTurn();
             simulateOneStep();
             if (delay > 0)
                 delay(delay);
         }
     }
 
+    /**
+     * Entscheide, ob die Simulation weiterlaufen soll. Ohne Ansichten zählt der
+     * Simulator die Tiere selbst mit, während sie sich im Feld ändern.
+     * 
+     * @return true wenn noch mehr als eine Spezies lebendig ist und, falls
+     *         gewünscht, sich die Belegung noch nicht wiederholt hat
+     */
+    public boolean isActive() {
+        if (stopOnRepeatedState && repeatedState) {
+            return false;
+        }
+        if (viewList.isEmpty()) {
+            return stats.istAktiv(field);
+        }
+        return viewList.get(0).isActive(field);
+    }
+
     /**
      * Führe einen einzelnen Simulationsschritt aus: Durchlaufe alle Feldpositionen
      * und aktualisiere den Zustand jedes Fuchses und Hasen.
      */
     public void simulateOneStep() {
+        Object stepEvent = SimulationEvents.EVENTS.beginStep();
+        metrics.beginStep();
         step++;
+        int before = organisms.size();
+
+        if (bandRows > 0) {
+            sortByBand();
+        }
+        metrics.endPhase(StepMetrics.Phase.SORT);
 
         // Platz für neugeborenes Tier anlegen.
         List<Organism> newOrganisms = new ArrayList<>();
         // Alle Tiere agieren lassen.
-        for (Iterator<Organism> iter = organisms.iterator(); iter.hasNext();) {
-            Organism organism = iter.next();
-            organism.act(newOrganisms);
-            if (!organism.isAlive()) {
-                iter.remove();
+        if (update != null) {
+            update.step(organisms, newOrganisms, step);
+        } else if (SimulationEvents.EVENTS.isActBatchEnabled()) {
+            actTimed(newOrganisms);
+        } else {
+            for (int i = 0; i < organisms.size(); i++) {
+                organisms.get(i).act(newOrganisms);
+            }
+        }
+        metrics.endPhase(StepMetrics.Phase.ACT);
+
+        // Gestorbene Tiere in einem Durchlauf entfernen und freigeben.
+        int alive = 0;
+        for (int i = 0; i < organisms.size(); i++) {
+            Organism organism = organisms.get(i);
+            if (organism.isAlive()) {
+                organisms.set(alive++, organism);
+            } else {
+                organism.recycle();
             }
         }
+        int deaths = organisms.size() - alive;
+        organisms.subList(alive, organisms.size()).clear();
+        metrics.endPhase(StepMetrics.Phase.COMPACT);
 
         // Neugeborene Füchse und Hasen in die Hauptliste einfügen.
         organisms.addAll(newOrganisms);
+        metrics.endPhase(StepMetrics.Phase.MERGE);
+
+        if (mobility != null) {
+            mobility.apply(field, organisms, step);
+        }
+        metrics.endPhase(StepMetrics.Phase.MOVE);
 
+        if (stopOnRepeatedState) {
+            repeatedState = !seenStates.add(field.getStateHash());
+        }
+        metrics.endPhase(StepMetrics.Phase.HASH);
         refreshViews();
+        metrics.endPhase(StepMetrics.Phase.VIEWS);
+        metrics.endStep();
+
+        SimulationEvents.EVENTS.endStep(stepEvent, step, organisms.size(), newOrganisms.size(), deaths);
+        commitPopulationEvents(before, newOrganisms.size(), deaths);
     }
 
     /**
-     * Setze die Simulation an den Anfang zurück.
+     * Lasse alle Tiere agieren und miss dabei die Laufzeit pro Tierart. Die Uhr
+     * wird nur gelesen, wenn in der Tierliste die Tierart wechselt.
+     */
+    private void actTimed(List<Organism> newOrganisms) {
+        int[] counts = new int[Species.count()];
+        long[] nanos = new long[counts.length];
+        int current = Species.EMPTY;
+        long start = System.nanoTime();
+        for (int i = 0; i < organisms.size(); i++) {
+            Organism organism = organisms.get(i);
+            int id = organism.getSpeciesId();
+            if (id != current) {
+                long now = System.nanoTime();
+                nanos[current] += now - start;
+                start = now;
+                current = id;
+            }
+            counts[id]++;
+            organism.act(newOrganisms);
+        }
+        nanos[current] += System.nanoTime() - start;
+        for (int id = 1; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                SimulationEvents.EVENTS.actBatch(step, Species.classOf(id).getSimpleName(), counts[id], nanos[id]);
+            }
+        }
+    }
+
+    /**
+     * Schreibe die JFR-Ereignisse zu den Populationen, falls sie eingeschaltet
+     * sind.
+     */
+    private void commitPopulationEvents(int before, int births, int deaths) {
+        SimulationEvents events = SimulationEvents.EVENTS;
+        if (events.isPopulationBurstEnabled()
+                && Math.max(births, deaths) > before * SimulationEvents.BURST_FRACTION) {
+            events.populationBurst(step, births, deaths, before);
+        }
+        if (events.isPopulationEnabled()) {
+            int[] counts = new int[Species.count()];
+            for (Organism organism : organisms) {
+                counts[organism.getSpeciesId()]++;
+            }
+            for (int id = 1; id < counts.length; id++) {
+                events.population(step, Species.classOf(id).getSimpleName(), counts[id]);
+            }
+        }
+    }
+
+    /**
+     * Warte, solange die Simulation angehalten ist, und halte bei einer
+     * Drosselung den Abstand zum vorigen Schritt ein.
+     */
+    private void awaitTurn() {
+        if (paused) {
+            synchronized (this) {
+                while (paused) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            nextStepTime = 0;
+        }
+        int limit = maxStepsPerSecond;
+        if (limit > 0) {
+            long now = System.nanoTime();
+            if (nextStepTime > now) {
+                delay((int) ((nextStepTime - now) / 1000000));
+                now = nextStepTime;
+            }
+            nextStepTime = now + 1000000000L / limit;
+        }
+    }
+
+    /**
+     * Halte die Simulation vor dem nächsten Schritt an. Kann aus jedem Thread
+     * aufgerufen werden.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Setze eine angehaltene Simulation fort. Kann aus jedem Thread aufgerufen
+     * werden.
+     */
+    public synchronized void resume() {
+        paused = false;
+        notifyAll();
+    }
+
+    /**
+     * @return true, wenn die Simulation angehalten ist
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Begrenze die Anzahl der Schritte pro Sekunde. Kann aus jedem Thread
+     * aufgerufen werden.
+     * 
+     * @param stepsPerSecond die höchste Anzahl an Schritten pro Sekunde, 0 für
+     *                       unbegrenzt
+     */
+    public void setMaxStepsPerSecond(int stepsPerSecond) {
+        maxStepsPerSecond = Math.max(0, stepsPerSecond);
+    }
+
+    /**
+     * @return die höchste Anzahl an Schritten pro Sekunde, 0 für unbegrenzt
+     */
+    public int getMaxStepsPerSecond() {
+        return maxStepsPerSecond;
+    }
+
+    /**
+     * @return die Laufzeitmessung der Schritte
+     */
+    public StepMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Setze die Simulation an den Anfang zurück. Dabei wird auch der Speicher des
+     * Feldes geleert, statt ein neues Feld anzulegen.
      */
     public void reset() {
         step = 0;
+        for (Organism organism : organisms) {
+            organism.recycle();
+        }
         organisms.clear();
         for (SimulationView view : viewList) {
             view.reset();
         }
 
+        update = null;
+        if (synchronous) {
+            update = new SynchronousUpdate(field, firstRow, totalDepth, Randomnumbergenerator.getRNG().nextLong(),
+                    parameters, boundary);
+        }
         populate();
+        seenStates.clear();
+        if (stopOnRepeatedState) {
+            seenStates.add(field.getStateHash());
+        }
+        repeatedState = false;
         refreshViews();
     }
 
+    /**
+     * Lege fest, ob die Simulation anhalten soll, sobald eine Belegung des Feldes
+     * erneut erreicht wird. Das schließt einen Zustand ein, der sich nicht mehr
+     * ändert, z.B. ein leeres Feld. Die Hashwerte der Belegungen werden erst ab
+     * diesem Aufruf gesammelt; ohne die Einstellung wird nichts gespeichert.
+     * 
+     * @param stop true, um bei einer wiederholten Belegung anzuhalten
+     */
+    public void setStopOnRepeatedState(boolean stop) {
+        if (stop && !stopOnRepeatedState) {
+            seenStates.add(field.getStateHash());
+        } else if (!stop) {
+            seenStates.clear();
+            repeatedState = false;
+        }
+        stopOnRepeatedState = stop;
+    }
+
+    /**
+     * Lege fest, wie dicht das Feld beim nächsten {@link #reset()} mit Füchsen
+     * und Hasen besetzt wird.
+     * 
+     * @param fuchsDichte die Wahrscheinlichkeit für einen Fuchs pro Position
+     * @param haseDichte  die Wahrscheinlichkeit für einen Hasen pro Position, die
+     *                    nicht schon mit einem Fuchs besetzt ist
+     */
+    public void setPopulationDensities(double fuchsDichte, double haseDichte) {
+        this.fuchsDichte = fuchsDichte;
+        this.haseDichte = haseDichte;
+    }
+
+    /**
+     * Lege fest, ob die Tiere ab dem nächsten {@link #reset()} gleichzeitig
+     * agieren ({@link SynchronousUpdate}) statt der Reihe nach. Der Verlauf
+     * hängt dann nicht von der Reihenfolge der Tierliste ab und ist derselbe
+     * wie in einer verteilten Simulation ({@link StripCoordinator}) mit
+     * demselben SEED-Wert, unabhängig von der Anzahl der Streifen.
+     * 
+     * @param synchronous true, damit die Tiere gleichzeitig agieren
+     */
+    public void setSynchronousUpdate(boolean synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * Lasse nach jedem Schritt einen Anteil der Tiere weit springen.
+     * 
+     * @param mobility die Sprünge der Tiere, oder null für keine Sprünge
+     */
+    public void setMobility(Mobility mobility) {
+        this.mobility = mobility;
+    }
+
+    /**
+     * Liefere den Hashwert der aktuellen Belegung des Feldes. Zwei Läufe haben im
+     * selben Schritt denselben Hashwert, wenn ihre Felder gleich belegt sind.
+     * 
+     * @return der Hashwert der Belegung nach dem letzten Schritt
+     */
+    public long getStateHash() {
+        return field.getStateHash();
+    }
+
+    /**
+     * @return der aktuelle Schritt der Simulation
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Liefere die Eigenschaften der Tiere dieser Simulation. Änderungen gelten
+     * für alle Tiere des Simulators, auch für die schon lebenden.
+     *
+     * @return die Eigenschaften der Hasen und Füchse
+     */
+    public SpeciesParameters getSpeciesParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return das Feld der Simulation
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Liefere die Liste der Tiere. Tiere, die außerhalb des Simulators entfernt
+     * werden, müssen auch aus dieser Liste entfernt werden.
+     * 
+     * @return die Liste der Tiere in der Simulation
+     */
+    List<Organism> getOrganisms() {
+        return organisms;
+    }
+
+    /**
+     * Beende die Simulation und gib den Speicher des Feldes frei. Danach darf
+     * der Simulator nicht mehr benutzt werden.
+     */
+    public void release() {
+        organisms.clear();
+        field.release();
+    }
+
     /**
      * Aktualisiere alle bestehenden Ansichten.
      */
@@ -149,25 +573,214 @@ public class Simulator {
     }
 
     /**
-     * Bevölkere das Feld mit Füchsen und Hasen.
+     * Sortiere die Tierliste stabil nach den Bändern des Feldes. Die Tiere agieren
+     * dann Band für Band von oben nach unten, so dass ein Feld in einer Datei
+     * der Reihe nach gelesen wird und nur das aktuelle Band mit seinen
+     * Nachbarzeilen eingeblendet sein muss.
+     */
+    private void sortByBand() {
+        int bands = (field.getDepth() + bandRows - 1) / bandRows;
+        int[] start = new int[bands + 1];
+        for (Organism organism : organisms) {
+            start[band(organism) + 1]++;
+        }
+        for (int b = 0; b < bands; b++) {
+            start[b + 1] += start[b];
+        }
+        Organism[] sorted = new Organism[organisms.size()];
+        for (Organism organism : organisms) {
+            sorted[start[band(organism)]++] = organism;
+        }
+        organisms.clear();
+        Collections.addAll(organisms, sorted);
+    }
+
+    /**
+     * @return das Band, in dem das Tier steht (0 für Tiere ohne Position)
+     */
+    private int band(Organism organism) {
+        Position position = organism.getPosition();
+        return position == null ? 0 : position.getRow() / bandRows;
+    }
+
+    /**
+     * Bevölkere das Feld mit Füchsen und Hasen. Jede Position wird mit der
+     * Wahrscheinlichkeit fuchsDichte mit einem Fuchs besetzt, sonst mit der
+     * Wahrscheinlichkeit haseDichte mit einem Hasen.
+     * 
+     * Statt für jede Position zu würfeln, wird der Abstand zur nächsten besetzten
+     * Position geometrisch verteilt gezogen; die Arbeit wächst so mit der Anzahl
+     * der Tiere, nicht mit der Größe des Feldes. Die besetzten Positionen werden
+     * für Bänder aus Zeilen parallel bestimmt, jedes Band mit einem eigenen
+     * Zufallsgenerator. Die Bänder und ihre Generatoren hängen nur von der Größe
+     * des Feldes und vom Startwert ab, nicht von der Anzahl der Threads, so dass
+     * die Belegung reproduzierbar bleibt. Die Tiere selbst werden danach der
+     * Reihe nach erzeugt. Simuliert der Simulator nur einen Streifen, werden
+     * die Bänder des Gesamtfeldes gezogen, die den Streifen überdecken, und nur
+     * seine Zeilen besetzt.
      */
     private void populate() {
         Random rand = Randomnumbergenerator.getRNG();
         field.clear();
-        for (int row = 0; row < field.getDepth(); row++) {
-            for (int column = 0; column < field.getWidth(); column++) {
-                if (rand.nextDouble() <= FUCHSGEBURT_WAHRSCHEINLICH) {
-                    Position position = new Position(row, column);
-                    Fuchs fuchs = new Fuchs(true, field, position);
-                    organisms.add(fuchs);
-                } else if (rand.nextDouble() <= HASENGEBURT_WAHRSCHEINLICH) {
-                    Position position = new Position(row, column);
-                    Hase hase = new Hase(true, field, position);
-                    organisms.add(hase);
+        final int depth = totalDepth;
+        final int width = field.getWidth();
+        final int rowsPerBand = Math.max(1, POPULATE_BAND_CELLS / width);
+        int bands = (depth + rowsPerBand - 1) / rowsPerBand;
+        int firstBand = firstRow / rowsPerBand;
+        int lastBand = (firstRow + field.getDepth() - 1) / rowsPerBand;
+
+        // Wahrscheinlichkeit, dass eine Position besetzt wird, und der Anteil der
+        // Füchse an den besetzten Positionen
+        final double occupied = fuchsDichte + (1 - fuchsDichte) * haseDichte;
+        final double fuchsAnteil = occupied > 0 ? fuchsDichte / occupied : 0;
+
+        final SplittableRandom[] generators = new SplittableRandom[bands];
+        SplittableRandom root = new SplittableRandom(rand.nextLong());
+        for (int band = 0; band < bands; band++) {
+            generators[band] = root.split();
+        }
+        // Pro Band die besetzten Positionen und welche davon Füchse sind
+        final BandSample[] samples = new BandSample[bands];
+        IntStream.rangeClosed(firstBand, lastBand).parallel().forEach(band -> {
+            long bandCells = (long) Math.min(rowsPerBand, depth - band * rowsPerBand) * width;
+            samples[band] = sampleBand(generators[band], (int) bandCells, occupied, fuchsAnteil);
+        });
+
+        for (int band = firstBand; band <= lastBand; band++) {
+            int bandRow = band * rowsPerBand;
+            BandSample sample = samples[band];
+            for (int i = 0; i < sample.count; i++) {
+                int cell = sample.cells[i];
+                int row = bandRow + cell / width - firstRow;
+                if (row < 0 || row >= field.getDepth()) {
+                    continue;
+                }
+                Position position = field.positionAt(row, cell % width);
+                Organism organism;
+                if (sample.foxes.get(i)) {
+                    organism = Fuchs.create(update == null, field, position, parameters);
+                } else {
+                    organism = Hase.create(update == null, field, position, parameters);
+                }
+                if (update != null) {
+                    update.initialize(organism, (long) (row + firstRow) * width + cell % width);
+                }
+                organisms.add(organism);
+            }
+            samples[band] = null;
+        }
+    }
+
+    /**
+     * Die besetzten Positionen eines Bandes. Ob dort ein Fuchs steht, wird in
+     * einem eigenen Bitfeld vermerkt, damit die Positionen den ganzen
+     * int-Bereich nutzen können.
+     */
+    private static final class BandSample {
+        // Die Anzahl der besetzten Positionen
+        int count;
+        // Die besetzten Positionen als Index im Band, aufsteigend
+        int[] cells;
+        // Gesetzt für die Einträge in cells, die mit einem Fuchs besetzt werden
+        final BitSet foxes = new BitSet();
+    }
+
+    /**
+     * Ziehe die besetzten Positionen eines Bandes mit geometrisch verteilten
+     * Abständen.
+     * 
+     * @return die besetzten Positionen des Bandes
+     */
+    private static BandSample sampleBand(SplittableRandom random, int bandCells, double occupied, double fuchsAnteil) {
+        BandSample sample = new BandSample();
+        sample.cells = new int[(int) Math.min(bandCells, bandCells * occupied * 1.1 + 16)];
+        if (occupied <= 0) {
+            return sample;
+        }
+        double logEmpty = Math.log1p(-Math.min(occupied, 1 - 1e-12));
+        long cell = -1;
+        while (true) {
+            // Die Anzahl der übersprungenen leeren Positionen
+            double skip = occupied >= 1 ? 0 : Math.floor(Math.log(1 - random.nextDouble()) / logEmpty);
+            cell += (long) Math.min(skip, bandCells) + 1;
+            if (cell >= bandCells) {
+                break;
+            }
+            if (sample.count == sample.cells.length) {
+                sample.cells = Arrays.copyOf(sample.cells,
+                        (int) Math.min(bandCells, Math.max(16, 2L * sample.cells.length)));
+            }
+            if (random.nextDouble() < fuchsAnteil) {
+                sample.foxes.set(sample.count);
+            }
+            sample.cells[sample.count++] = (int) cell;
+        }
+        return sample;
+    }
+
+    /**
+     * Eine Menge von Hashwerten mit offener Adressierung in einem long-Array,
+     * damit pro Schritt kein Long-Objekt angelegt wird. Der Wert 0 markiert
+     * einen freien Platz und wird deshalb getrennt vermerkt.
+     */
+    private static final class StateHashes {
+        private long[] table = new long[64];
+        private int size;
+        private boolean containsZero;
+
+        /**
+         * @return true, wenn der Hashwert noch nicht enthalten war
+         */
+        boolean add(long hash) {
+            if (hash == 0) {
+                boolean added = !containsZero;
+                containsZero = true;
+                return added;
+            }
+            int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == hash) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+            if (++size * 2 > table.length) {
+                grow();
+            }
+            return true;
+        }
+
+        void clear() {
+            if (table.length > 64) {
+                table = new long[64];
+            } else {
+                Arrays.fill(table, 0);
+            }
+            size = 0;
+            containsZero = false;
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            int mask = table.length - 1;
+            for (long hash : old) {
+                if (hash != 0) {
+                    int slot = mix(hash) & mask;
+                    while (table[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = hash;
                 }
-                // ansonsten die Position leer lassen
             }
         }
+
+        private static int mix(long hash) {
+            hash *= 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ hash >>> 32);
+        }
     }
 
     /**
@@ -0,0 +1,126 @@
+package schulbeispiel;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Stellt einen {@link Simulator} über JMX bereit, z.B. für JConsole oder
+ * VisualVM. Die Werte werden bei jeder Abfrage aus den {@link StepMetrics}
+ * des Simulators gelesen.
+ */
+public class SimulatorControl implements SimulatorControlMBean {
+    private final Simulator simulator;
+    private final StepMetrics metrics;
+
+    /**
+     * @param simulator der Simulator, der bereitgestellt wird
+     */
+    public SimulatorControl(Simulator simulator) {
+        this.simulator = simulator;
+        metrics = simulator.getMetrics();
+    }
+
+    /**
+     * Melde einen Simulator beim JMX-Server der JVM an.
+     *
+     * @param simulator der Simulator
+     * @param name      ein Name, der den Simulator von anderen unterscheidet
+     * @return der Name, unter dem der Simulator angemeldet wurde
+     */
+    public static ObjectName register(Simulator simulator, String name) {
+        try {
+            ObjectName objectName = new ObjectName("schulbeispiel:type=Simulator,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new SimulatorControl(simulator), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register simulator " + name, e);
+        }
+    }
+
+    public int getStep() {
+        return simulator.getStep();
+    }
+
+    public long getMeasuredSteps() {
+        return metrics.getSteps();
+    }
+
+    public long getStepTimeMean() {
+        return metrics.getStepTimes().getMean();
+    }
+
+    public long getStepTimeP50() {
+        return metrics.getStepTimes().getPercentile(0.5);
+    }
+
+    public long getStepTimeP99() {
+        return metrics.getStepTimes().getPercentile(0.99);
+    }
+
+    public long getStepTimeMax() {
+        return metrics.getStepTimes().getMax();
+    }
+
+    public long getSortTimeMean() {
+        return metrics.getMeanPhaseNanos(StepMetrics.Phase.SORT);
+    }
+
+    public long getActTimeMean() {
+        return metrics.getMeanPhaseNanos(StepMetrics.Phase.ACT);
+    }
+
+    public long getCompactTimeMean() {
+        return metrics.getMeanPhaseNanos(StepMetrics.Phase.COMPACT);
+    }
+
+    public long getMergeTimeMean() {
+        return metrics.getMeanPhaseNanos(StepMetrics.Phase.MERGE);
+    }
+
+    public long getMoveTimeMean() {
+        return metrics.getMeanPhaseNanos(StepMetrics.Phase.MOVE);
+    }
+
+    public long getHashTimeMean() {
+        return metrics.getMeanPhaseNanos(StepMetrics.Phase.HASH);
+    }
+
+    public long getViewsTimeMean() {
+        return metrics.getMeanPhaseNanos(StepMetrics.Phase.VIEWS);
+    }
+
+    public long getAllocatedBytesPerStep() {
+        return metrics.getAllocatedBytesPerStep();
+    }
+
+    public long getAllocatedBytesLastStep() {
+        return metrics.getAllocatedBytesLastStep();
+    }
+
+    public boolean isPaused() {
+        return simulator.isPaused();
+    }
+
+    public int getMaxStepsPerSecond() {
+        return simulator.getMaxStepsPerSecond();
+    }
+
+    public void setMaxStepsPerSecond(int stepsPerSecond) {
+        simulator.setMaxStepsPerSecond(stepsPerSecond);
+    }
+
+    public void pause() {
+        simulator.pause();
+    }
+
+    public void resume() {
+        simulator.resume();
+    }
+
+    public void resetMetrics() {
+        metrics.reset();
+    }
+}
@@ -0,0 +1,75 @@
+package schulbeispiel;
+
+/**
+ * Die JMX-Schnittstelle eines {@link Simulator}s: Laufzeiten der Schritte und
+ * ihrer Phasen, belegter Speicher und Steuerung des Ablaufs. Alle Zeiten sind
+ * in Nanosekunden angegeben.
+ */
+public interface SimulatorControlMBean {
+    /**
+     * @return der aktuelle Schritt der Simulation
+     */
+    int getStep();
+
+    /**
+     * @return die Anzahl der gemessenen Schritte
+     */
+    long getMeasuredSteps();
+
+    long getStepTimeMean();
+
+    long getStepTimeP50();
+
+    long getStepTimeP99();
+
+    long getStepTimeMax();
+
+    long getSortTimeMean();
+
+    long getActTimeMean();
+
+    long getCompactTimeMean();
+
+    long getMergeTimeMean();
+
+    long getMoveTimeMean();
+
+    long getHashTimeMean();
+
+    long getViewsTimeMean();
+
+    /**
+     * @return die im Mittel pro Schritt belegten Bytes, -1 wenn nicht messbar
+     */
+    long getAllocatedBytesPerStep();
+
+    /**
+     * @return die im letzten Schritt belegten Bytes, -1 wenn nicht messbar
+     */
+    long getAllocatedBytesLastStep();
+
+    boolean isPaused();
+
+    int getMaxStepsPerSecond();
+
+    /**
+     * @param stepsPerSecond die höchste Anzahl an Schritten pro Sekunde, 0 für
+     *                       unbegrenzt
+     */
+    void setMaxStepsPerSecond(int stepsPerSecond);
+
+    /**
+     * Halte die Simulation vor dem nächsten Schritt an.
+     */
+    void pause();
+
+    /**
+     * Setze die angehaltene Simulation fort.
+     */
+    void resume();
+
+    /**
+     * Verwirf alle bisherigen Messungen.
+     */
+    void resetMetrics();
+}
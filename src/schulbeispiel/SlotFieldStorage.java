@@ -0,0 +1,155 @@
+package schulbeispiel;
+
+/**
+ * Gemeinsame Grundlage für Feldspeicher, die nur Zahlenwerte pro Position
+ * ablegen können. Für jede Position werden eine Tierkennung und ein Verweis in
+ * eine Tabelle der lebenden Tiere gespeichert. Die Tabelle liegt im Heap und
+ * wächst mit der Anzahl der Tiere, nicht mit der Größe des Feldes. Wo die
+ * Zahlenwerte der Positionen liegen, legen die Unterklassen fest; die Tiere
+ * selbst und die Tabelle bleiben immer im Heap.
+ */
+public abstract class SlotFieldStorage implements FieldStorage {
+    // Anfangsgröße der Tabelle der lebenden Tiere
+    private static final int INITIAL_AGENTS = 1024;
+
+    protected final int depth, width;
+
+    // Die Tabelle der abgelegten Tiere, Index 0 bleibt frei
+    private Object[] agents;
+    // Freigewordene Einträge in der Tiertabelle
+    private int[] freeSlots;
+    private int freeCount;
+    // Der nächste noch nie benutzte Eintrag der Tiertabelle
+    private int nextSlot;
+
+    /**
+     * Erzeuge einen Speicher mit den angegebenen Dimensionen.
+     *
+     * @param depth die Tiefe des Feldes
+     * @param width die Breite des Feldes
+     */
+    protected SlotFieldStorage(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        resetAgents();
+    }
+
+    /**
+     * Liefere den Tabellenverweis an der Position mit dem gegebenen Index.
+     *
+     * @param index der Index der Position (Zeile * Breite + Spalte)
+     * @return der Verweis, 0 für eine leere Position
+     */
+    protected abstract int readSlot(long index);
+
+    /**
+     * Setze den Tabellenverweis an der Position mit dem gegebenen Index.
+     */
+    protected abstract void writeSlot(long index, int slot);
+
+    /**
+     * Liefere die Tierkennung an der Position mit dem gegebenen Index.
+     */
+    protected abstract int readCode(long index);
+
+    /**
+     * Setze die Tierkennung an der Position mit dem gegebenen Index.
+     */
+    protected abstract void writeCode(long index, int code);
+
+    /**
+     * Setze alle Verweise und Kennungen auf null.
+     */
+    protected abstract void clearCells();
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public Object get(int row, int column) {
+        return agents[readSlot(index(row, column))];
+    }
+
+    public int getCode(int row, int column) {
+        return readCode(index(row, column));
+    }
+
+    public void set(int row, int column, Object organism, int code) {
+        long index = index(row, column);
+        int slot = readSlot(index);
+        if (organism == null) {
+            if (slot != 0) {
+                freeSlot(slot);
+                writeSlot(index, 0);
+            }
+        } else {
+            if (slot == 0) {
+                slot = allocateSlot();
+                writeSlot(index, slot);
+            }
+            agents[slot] = organism;
+        }
+        writeCode(index, code);
+    }
+
+    /**
+     * Leere alle Positionen. Die Tiertabelle wird auf ihre Anfangsgröße
+     * zurückgesetzt.
+     */
+    public void clear() {
+        clearCells();
+        resetAgents();
+    }
+
+    public void release() {
+        agents = null;
+        freeSlots = null;
+    }
+
+    /**
+     * @return die Anzahl der momentan abgelegten Tiere
+     */
+    public int getAgentCount() {
+        return nextSlot - 1 - freeCount;
+    }
+
+    /**
+     * @return der Index der gegebenen Position
+     */
+    protected long index(int row, int column) {
+        return (long) row * width + column;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == agents.length) {
+            Object[] grown = new Object[agents.length * 2];
+            System.arraycopy(agents, 0, grown, 0, agents.length);
+            agents = grown;
+        }
+        return nextSlot++;
+    }
+
+    private void freeSlot(int slot) {
+        agents[slot] = null;
+        if (freeCount == freeSlots.length) {
+            int[] grown = new int[freeSlots.length * 2];
+            System.arraycopy(freeSlots, 0, grown, 0, freeSlots.length);
+            freeSlots = grown;
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void resetAgents() {
+        agents = new Object[INITIAL_AGENTS];
+        freeSlots = new int[INITIAL_AGENTS];
+        freeCount = 0;
+        nextSlot = 1;
+    }
+}
@@ -0,0 +1,125 @@
+package schulbeispiel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Verzeichnis der Tierarten einer Simulation. Jede Klasse, die im Feld
+ * abgelegt wird, erhält beim ersten Auftreten eine kleine ganzzahlige Kennung.
+ * Die Kennung 0 steht für eine leere Position, so dass der Zustand einer
+ * Feldposition als einfacher Zahlenwert gespeichert werden kann.
+ */
+public class Species {
+    // Die Kennung für eine leere Position
+    public static final int EMPTY = 0;
+    // Die größte Anzahl an Tierarten, die als Zahlenwert (ein Byte) abgelegt
+    // werden können
+    public static final int MAX_SPECIES = 255;
+
+    // Die bereits vergebenen Kennungen
+    private static final Map<Class<?>, Integer> ids = new HashMap<>();
+    // Die Klassen in der Reihenfolge ihrer Kennungen (Index 0 bleibt frei)
+    private static final List<Class<?>> classes = new ArrayList<>();
+    // Die Platzhalter pro Kennung, siehe markerOf
+    private static final Marker[] markers = new Marker[MAX_SPECIES + 1];
+
+    /**
+     * Ein Platzhalter, der im Feld statt eines Tieres steht und nur dessen
+     * Tierart trägt.
+     */
+    private static final class Marker {
+        private final int id;
+
+        private Marker(int id) {
+            this.id = id;
+        }
+
+        public String toString() {
+            return "Marker(" + Species.classOf(id).getSimpleName() + ")";
+        }
+    }
+
+    static {
+        classes.add(null);
+    }
+
+    /**
+     * Liefere die Kennung der gegebenen Klasse. Ist die Klasse noch nicht
+     * bekannt, wird sie jetzt registriert.
+     *
+     * @param organismClass die Klasse der Tierart
+     * @return die Kennung der Tierart (mindestens 1)
+     */
+    public static synchronized int idOf(Class<?> organismClass) {
+        Integer id = ids.get(organismClass);
+        if (id == null) {
+            if (classes.size() > MAX_SPECIES) {
+                throw new IllegalStateException("Too many species registered: " + organismClass.getName());
+            }
+            id = classes.size();
+            ids.put(organismClass, id);
+            classes.add(organismClass);
+        }
+        return id;
+    }
+
+    /**
+     * Liefere die Kennung für das gegebene Objekt im Feld.
+     *
+     * @param organism das Objekt oder null
+     * @return die Kennung der Tierart oder EMPTY, wenn kein Objekt übergeben wurde
+     */
+    public static int codeOf(Object organism) {
+        if (organism == null) {
+            return EMPTY;
+        } else if (organism instanceof Organism) {
+            return ((Organism) organism).getSpeciesId();
+        } else if (organism instanceof Marker) {
+            return ((Marker) organism).id;
+        } else {
+            return idOf(organism.getClass());
+        }
+    }
+
+    /**
+     * Liefere einen Platzhalter für die gegebene Tierart. Er kann wie ein Tier
+     * im Feld platziert werden, wenn nur die Belegung des Feldes gebraucht wird
+     * und keine lebenden Tiere, z.B. beim Abspielen einer Aufzeichnung. Für
+     * jede Kennung gibt es nur einen Platzhalter.
+     *
+     * @param id die Kennung einer registrierten Tierart
+     * @return der Platzhalter
+     */
+    public static synchronized Object markerOf(int id) {
+        if (id <= EMPTY || id >= classes.size()) {
+            throw new IllegalArgumentException("Unknown species id: " + id);
+        }
+        if (markers[id] == null) {
+            markers[id] = new Marker(id);
+        }
+        return markers[id];
+    }
+
+    /**
+     * Liefere die Klasse zu einer Kennung.
+     *
+     * @param id die Kennung
+     * @return die Klasse oder null, wenn die Kennung nicht vergeben ist
+     */
+    public static synchronized Class<?> classOf(int id) {
+        if (id <= EMPTY || id >= classes.size()) {
+            return null;
+        }
+        return classes.get(id);
+    }
+
+    /**
+     * @return die Anzahl der Kennungen einschließlich der Kennung für leere
+     *         Positionen
+     */
+    public static synchronized int count() {
+        return classes.size();
+    }
+}
@@ -0,0 +1,113 @@
+package schulbeispiel;
+
+/**
+ * Die Eigenschaften der Hasen und Füchse einer Simulation. Jeder
+ * {@link Simulator} hat sein eigenes Objekt und gibt es an alle seine Tiere
+ * weiter, so dass mehrere Simulationen in derselben JVM mit verschiedenen
+ * Eigenschaften laufen können. Änderungen gelten sofort für alle Tiere des
+ * Simulators; sie sollten deshalb vor {@link Simulator#reset()} oder zwischen
+ * zwei Schritten vorgenommen werden.
+ */
+public class SpeciesParameters {
+    // Das Alter, in dem ein Hase gebärfähig wird.
+    private int haseGebaerAlter = 5;
+    // Das Höchstalter eines Hasen.
+    private int haseMaxAlter = 40;
+    // Die Wahrscheinlichkeit, mit der ein Hase Nachwuchs gebärt.
+    private double haseGebaerWahrscheinlichkeit = 0.12;
+    // Die maximale Größe eines Hasenwurfes (Anzahl der Jungen)
+    private int haseMaxWurfgroesse = 4;
+
+    // Das Alter, in dem ein Fuchs gebärfähig wird.
+    private int fuchsGebaerAlter = 15;
+    // Das Höchstalter eines Fuchses.
+    private int fuchsMaxAlter = 150;
+    // Die Wahrscheinlichkeit, mit der ein Fuchs Nachwuchs gebärt.
+    private double fuchsGebaerWahrscheinlichkeit = 0.08;
+    // Die maximale Größe eines Fuchswurfes (Anzahl der Jungen).
+    private int fuchsMaxWurfgroesse = 2;
+    // Der Nährwert eines einzelnen Hasen. Letztendlich ist dies die Anzahl der
+    // Schritte, die ein Fuchs bis zur nächsten Mahlzeit laufen kann.
+    private int hasenNaehrwert = 9;
+
+    /**
+     * Ändere die Eigenschaften der Hasen, z.B. für ein Szenario des
+     * {@link ScenarioRunner}. Für null bleibt der bisherige Wert erhalten.
+     *
+     * @param gebaerAlter              das Alter, in dem ein Hase gebärfähig wird
+     * @param maxAlter                 das Höchstalter eines Hasen
+     * @param gebaerWahrscheinlichkeit die Wahrscheinlichkeit für Nachwuchs
+     * @param maxWurfgroesse           die maximale Größe eines Wurfes
+     */
+    public void configureHase(Integer gebaerAlter, Integer maxAlter, Double gebaerWahrscheinlichkeit,
+            Integer maxWurfgroesse) {
+        if (gebaerAlter != null)
+            haseGebaerAlter = gebaerAlter;
+        if (maxAlter != null)
+            haseMaxAlter = maxAlter;
+        if (gebaerWahrscheinlichkeit != null)
+            haseGebaerWahrscheinlichkeit = gebaerWahrscheinlichkeit;
+        if (maxWurfgroesse != null)
+            haseMaxWurfgroesse = maxWurfgroesse;
+    }
+
+    /**
+     * Ändere die Eigenschaften der Füchse. Für null bleibt der bisherige Wert
+     * erhalten.
+     *
+     * @param gebaerAlter              das Alter, in dem ein Fuchs gebärfähig wird
+     * @param maxAlter                 das Höchstalter eines Fuchses
+     * @param gebaerWahrscheinlichkeit die Wahrscheinlichkeit für Nachwuchs
+     * @param maxWurfgroesse           die maximale Größe eines Wurfes
+     * @param naehrwert                der Nährwert eines Hasen in Schritten
+     */
+    public void configureFuchs(Integer gebaerAlter, Integer maxAlter, Double gebaerWahrscheinlichkeit,
+            Integer maxWurfgroesse, Integer naehrwert) {
+        if (gebaerAlter != null)
+            fuchsGebaerAlter = gebaerAlter;
+        if (maxAlter != null)
+            fuchsMaxAlter = maxAlter;
+        if (gebaerWahrscheinlichkeit != null)
+            fuchsGebaerWahrscheinlichkeit = gebaerWahrscheinlichkeit;
+        if (maxWurfgroesse != null)
+            fuchsMaxWurfgroesse = maxWurfgroesse;
+        if (naehrwert != null)
+            hasenNaehrwert = naehrwert;
+    }
+
+    public int getHaseGebaerAlter() {
+        return haseGebaerAlter;
+    }
+
+    public int getHaseMaxAlter() {
+        return haseMaxAlter;
+    }
+
+    public double getHaseGebaerWahrscheinlichkeit() {
+        return haseGebaerWahrscheinlichkeit;
+    }
+
+    public int getHaseMaxWurfgroesse() {
+        return haseMaxWurfgroesse;
+    }
+
+    public int getFuchsGebaerAlter() {
+        return fuchsGebaerAlter;
+    }
+
+    public int getFuchsMaxAlter() {
+        return fuchsMaxAlter;
+    }
+
+    public double getFuchsGebaerWahrscheinlichkeit() {
+        return fuchsGebaerWahrscheinlichkeit;
+    }
+
+    public int getFuchsMaxWurfgroesse() {
+        return fuchsMaxWurfgroesse;
+    }
+
+    public int getHasenNaehrwert() {
+        return hasenNaehrwert;
+    }
+}
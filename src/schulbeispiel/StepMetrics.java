@@ -0,0 +1,174 @@
+package schulbeispiel;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Misst, wofür die Zeit eines Simulationsschrittes verbraucht wird. Der
+ * Simulator meldet das Ende jeder Phase eines Schrittes; die Zeit seit dem
+ * vorigen Meldepunkt wird der Phase zugerechnet. Zusätzlich werden die
+ * Laufzeit der ganzen Schritte in einem {@link LatencyHistogram} und, wenn
+ * die JVM es unterstützt, die pro Schritt vom Simulations-Thread belegten
+ * Bytes erfasst.
+ *
+ * Die Messpunkte werden nur vom Simulations-Thread aufgerufen; die Werte
+ * dürfen von anderen Threads (z.B. über JMX) gelesen werden.
+ */
+public class StepMetrics {
+
+    /**
+     * Die Phasen eines Simulationsschrittes.
+     */
+    public enum Phase {
+        // Die Tierliste nach Bändern sortieren
+        SORT,
+        // Alle Tiere agieren lassen
+        ACT,
+        // Gestorbene Tiere aus der Tierliste entfernen
+        COMPACT,
+        // Neugeborene Tiere in die Tierliste einfügen
+        MERGE,
+        // Tiere weit springen lassen (siehe Mobility)
+        MOVE,
+        // Die Belegung mit den bisherigen vergleichen
+        HASH,
+        // Die Ansichten aktualisieren
+        VIEWS
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LatencyHistogram stepTimes = new LatencyHistogram();
+    // Die Summe der Laufzeiten pro Phase über alle Schritte
+    private final long[] phaseTotals = new long[PHASES.length];
+    // Die Laufzeiten pro Phase im letzten Schritt
+    private final long[] phaseLast = new long[PHASES.length];
+    private volatile long steps;
+
+    // Die Messung der belegten Bytes, oder null, wenn die JVM sie nicht anbietet
+    private final com.sun.management.ThreadMXBean allocation;
+    private long allocatedTotal;
+    private volatile long allocatedLast;
+
+    // Die Zeitpunkte und Allokationen beim Beginn des Schrittes und beim letzten
+    // Meldepunkt
+    private long stepStart;
+    private long phaseStart;
+    private long allocatedStart;
+    private long threadId;
+
+    /**
+     * Erzeuge eine leere Messung.
+     */
+    public StepMetrics() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+            allocation = (com.sun.management.ThreadMXBean) threads;
+        } else {
+            allocation = null;
+        }
+    }
+
+    /**
+     * Beginne die Messung eines Schrittes.
+     */
+    public void beginStep() {
+        if (allocation != null) {
+            threadId = Thread.currentThread().getId();
+            allocatedStart = allocation.getThreadAllocatedBytes(threadId);
+        }
+        stepStart = System.nanoTime();
+        phaseStart = stepStart;
+    }
+
+    /**
+     * Schließe eine Phase des laufenden Schrittes ab.
+     *
+     * @param phase die Phase, der die Zeit seit dem letzten Meldepunkt
+     *              zugerechnet wird
+     */
+    public void endPhase(Phase phase) {
+        long now = System.nanoTime();
+        long nanos = now - phaseStart;
+        phaseLast[phase.ordinal()] = nanos;
+        phaseTotals[phase.ordinal()] += nanos;
+        phaseStart = now;
+    }
+
+    /**
+     * Schließe die Messung eines Schrittes ab.
+     */
+    public void endStep() {
+        stepTimes.record(System.nanoTime() - stepStart);
+        if (allocation != null) {
+            long allocated = allocation.getThreadAllocatedBytes(threadId) - allocatedStart;
+            allocatedLast = allocated;
+            allocatedTotal += allocated;
+        }
+        steps++;
+    }
+
+    /**
+     * @return die Anzahl der gemessenen Schritte
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return das Histogramm der Laufzeiten ganzer Schritte
+     */
+    public LatencyHistogram getStepTimes() {
+        return stepTimes;
+    }
+
+    /**
+     * @param phase die Phase
+     * @return die mittlere Laufzeit der Phase pro Schritt in Nanosekunden
+     */
+    public long getMeanPhaseNanos(Phase phase) {
+        long count = steps;
+        return count == 0 ? 0 : phaseTotals[phase.ordinal()] / count;
+    }
+
+    /**
+     * @param phase die Phase
+     * @return die Laufzeit der Phase im letzten Schritt in Nanosekunden
+     */
+    public long getLastPhaseNanos(Phase phase) {
+        return phaseLast[phase.ordinal()];
+    }
+
+    /**
+     * @return die im letzten Schritt belegten Bytes oder -1, wenn die JVM das
+     *         nicht misst
+     */
+    public long getAllocatedBytesLastStep() {
+        return allocation == null ? -1 : allocatedLast;
+    }
+
+    /**
+     * @return die im Mittel pro Schritt belegten Bytes oder -1, wenn die JVM das
+     *         nicht misst
+     */
+    public long getAllocatedBytesPerStep() {
+        long count = steps;
+        return allocation == null ? -1 : count == 0 ? 0 : allocatedTotal / count;
+    }
+
+    /**
+     * Verwirf alle bisherigen Messungen.
+     */
+    public void reset() {
+        stepTimes.reset();
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseTotals[i] = 0;
+            phaseLast[i] = 0;
+        }
+        allocatedTotal = 0;
+        allocatedLast = 0;
+        steps = 0;
+    }
+}
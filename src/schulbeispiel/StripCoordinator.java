@@ -0,0 +1,226 @@
+package schulbeispiel;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Der Koordinator einer verteilten Simulation. Das Feld wird in waagerechte
+ * Streifen zerlegt, die jeweils von einem eigenen Prozess ({@link StripWorker})
+ * simuliert werden. In jedem Schritt leitet der Koordinator die Belegung der
+ * Randzeilen und die Ansprüche der Tiere auf Positionen an den
+ * Streifengrenzen an die Nachbarstreifen weiter und fasst die Zählerstände
+ * zusammen.
+ *
+ * Die Tiere agieren gleichzeitig ({@link SynchronousUpdate}) mit
+ * Zufallsströmen pro Tier. Für einen festen SEED-Wert ist der Verlauf deshalb
+ * unabhängig von der Anzahl der Streifen derselbe wie in einem einzelnen
+ * {@link Simulator} mit {@link Simulator#setSynchronousUpdate(boolean)}. Jeder
+ * Streifen braucht mindestens zwei Zeilen.
+ */
+public class StripCoordinator {
+    // Der Standard-Port, an dem der Koordinator auf die Streifen wartet
+    public static final int DEFAULT_PORT = 47110;
+    private final int depth, width;
+    private final long seed;
+    private final ServerSocketChannel server;
+    private final List<SocketChannel> strips;
+    // Die Zählerstände (Hasen, Füchse) des letzten Schrittes
+    private int hasen, fuechse;
+
+    /**
+     * Erzeuge einen Koordinator, der auf dem gegebenen Port auf Streifen wartet.
+     *
+     * @param port  der Port
+     * @param depth die Tiefe des Gesamtfeldes
+     * @param width die Breite des Gesamtfeldes
+     * @param seed  der SEED-Wert der Simulation
+     */
+    public StripCoordinator(int port, int depth, int width, long seed) throws IOException {
+        this.depth = depth;
+        this.width = width;
+        this.seed = seed;
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress("localhost", port));
+        strips = new ArrayList<>();
+    }
+
+    /**
+     * @return der Port, an dem der Koordinator wartet
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Warte auf die gegebene Anzahl an Streifen und teile ihnen ihre Zeilen zu.
+     * Die Streifen werden in der Reihenfolge ihrer Anmeldung von oben nach unten
+     * vergeben.
+     *
+     * @param count die Anzahl der Streifen
+     */
+    public void accept(int count) throws IOException {
+        if (count <= 0 || count > Math.max(1, depth / 2)) {
+            throw new IllegalArgumentException("Invalid number of strips: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            SocketChannel channel = server.accept();
+            StripMessage.expect(channel, StripMessage.HELLO);
+            StripMessage config = new StripMessage(StripMessage.CONFIG);
+            config.putInt(i).putInt(count).putInt(depth).putInt(width);
+            config.putInt(depth * i / count).putInt(depth * (i + 1) / count);
+            config.putLong(seed);
+            config.send(channel);
+            strips.add(channel);
+        }
+        collectCounts();
+    }
+
+    /**
+     * Simuliere die gegebene Anzahl an Schritten. Brich vorzeitig ab, wenn nicht
+     * mehr beide Tierarten leben. Die Zählerstände nach dem letzten Schritt
+     * liefern {@link #getHasen()} und {@link #getFuechse()}.
+     *
+     * @param steps die Anzahl der Schritte
+     * @return die Anzahl der tatsächlich simulierten Schritte
+     */
+    public int simulate(int steps) throws IOException {
+        int step = 0;
+        for (; step < steps && hasen > 0 && fuechse > 0; step++) {
+            for (SocketChannel channel : strips) {
+                new StripMessage(StripMessage.STEP).send(channel);
+            }
+            exchangeHalo();
+            exchangeClaims(StripMessage.PREY, StripMessage.PREY_IN);
+            exchangeClaims(StripMessage.CLAIMS, StripMessage.CLAIMS_IN);
+            collectCounts();
+        }
+        return step;
+    }
+
+    /**
+     * Beende alle Streifen.
+     */
+    public void stop() throws IOException {
+        for (SocketChannel channel : strips) {
+            new StripMessage(StripMessage.STOP).send(channel);
+            channel.close();
+        }
+        strips.clear();
+        server.close();
+    }
+
+    /**
+     * @return die Anzahl der Hasen im Gesamtfeld
+     */
+    public int getHasen() {
+        return hasen;
+    }
+
+    /**
+     * @return die Anzahl der Füchse im Gesamtfeld
+     */
+    public int getFuechse() {
+        return fuechse;
+    }
+
+    /**
+     * Sammle die Ansprüche aller Streifen auf die Zeilen an ihren Grenzen und
+     * leite sie an die Nachbarn weiter. Die Ansprüche werden dabei nicht
+     * ausgepackt.
+     */
+    private void exchangeClaims(byte type, byte inType) throws IOException {
+        int n = strips.size();
+        byte[][] up = new byte[n][];
+        byte[][] down = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            ByteBuffer data = StripMessage.expect(strips.get(i), type).getData();
+            up[i] = new byte[data.getInt() * StripMessage.CLAIM_BYTES];
+            data.get(up[i]);
+            down[i] = new byte[data.getInt() * StripMessage.CLAIM_BYTES];
+            data.get(down[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            byte[] fromAbove = i > 0 ? down[i - 1] : new byte[0];
+            byte[] fromBelow = i < n - 1 ? up[i + 1] : new byte[0];
+            StripMessage message = new StripMessage(inType);
+            message.putInt((fromAbove.length + fromBelow.length) / StripMessage.CLAIM_BYTES);
+            message.putBytes(fromAbove).putBytes(fromBelow);
+            message.send(strips.get(i));
+        }
+    }
+
+    /**
+     * Sammle die Randzeilen aller Streifen und schicke jedem Streifen die
+     * Randzeilen seiner Nachbarn.
+     */
+    private void exchangeHalo() throws IOException {
+        int n = strips.size();
+        byte[][] top = new byte[n][];
+        byte[][] bottom = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            StripMessage message = StripMessage.expect(strips.get(i), StripMessage.HALO);
+            top[i] = message.getBytes(width);
+            bottom[i] = message.getBytes(width);
+        }
+        for (int i = 0; i < n; i++) {
+            StripMessage message = new StripMessage(StripMessage.HALO_IN);
+            if (i > 0) {
+                message.putBytes(bottom[i - 1]);
+            }
+            if (i < n - 1) {
+                message.putBytes(top[i + 1]);
+            }
+            message.send(strips.get(i));
+        }
+    }
+
+    /**
+     * Sammle die Zählerstände aller Streifen.
+     */
+    private void collectCounts() throws IOException {
+        hasen = 0;
+        fuechse = 0;
+        for (SocketChannel channel : strips) {
+            ByteBuffer data = StripMessage.expect(channel, StripMessage.COUNT).getData();
+            hasen += data.getInt();
+            fuechse += data.getInt();
+        }
+    }
+
+    /**
+     * Starte eine verteilte Simulation mit Streifen-Prozessen auf diesem Rechner.
+     *
+     * @param args Anzahl der Streifen, Anzahl der Schritte, Tiefe, Breite und
+     *             SEED-Wert (alle optional)
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 120;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : Randomnumbergenerator.getSeed();
+
+        StripCoordinator coordinator = new StripCoordinator(0, depth, width, seed);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    StripWorker.class.getName(), "localhost", String.valueOf(coordinator.getPort()));
+            processes.add(builder.inheritIO().start());
+        }
+        coordinator.accept(count);
+        for (int step = 1; step <= steps && coordinator.simulate(1) == 1; step++) {
+            System.out.println(step + " Hasen: " + coordinator.getHasen() + " Füchse: " + coordinator.getFuechse());
+        }
+        coordinator.stop();
+        for (Process process : processes) {
+            process.waitFor();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package schulbeispiel;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Eine Nachricht des binären Protokolls zwischen dem Koordinator und den
+ * Streifen-Prozessen einer verteilten Simulation. Eine Nachricht besteht aus
+ * ihrer Länge (int), ihrem Typ (byte) und den Nutzdaten. Alle Zahlen werden in
+ * Big-Endian-Reihenfolge übertragen.
+ */
+public class StripMessage {
+    // Anmeldung eines Streifens beim Koordinator: keine Nutzdaten
+    public static final byte HELLO = 1;
+    // Konfiguration eines Streifens: Index, Anzahl, Feldgröße, Streifengrenzen, SEED
+    public static final byte CONFIG = 2;
+    // Aufforderung, einen Schritt zu simulieren
+    public static final byte STEP = 3;
+    // Ansprüche für Geburten und Bewegungen auf die Zeilen an der oberen und
+    // an der unteren Streifengrenze
+    public static final byte CLAIMS = 4;
+    // Die Ansprüche der Nachbarstreifen auf die Zeilen an den Streifengrenzen
+    public static final byte CLAIMS_IN = 5;
+    // Belegung der ersten und letzten eigenen Zeile nach dem Altern
+    public static final byte HALO = 6;
+    // Belegung der Halo-Zeilen aus den Nachbarstreifen
+    public static final byte HALO_IN = 7;
+    // Aufforderung, die Simulation zu beenden
+    public static final byte STOP = 8;
+    // Ansprüche der Jagd auf die Zeilen an den Streifengrenzen
+    public static final byte PREY = 9;
+    // Die Ansprüche der Jagd aus den Nachbarstreifen
+    public static final byte PREY_IN = 10;
+    // Die Zählerstände (Hasen, Füchse) nach einem Schritt
+    public static final byte COUNT = 11;
+
+    // Die Größe eines übertragenen Anspruchs in Bytes: Position, Priorität und
+    // Kennung (long), Tierart (byte), Alter und Futter-Level (int)
+    public static final int CLAIM_BYTES = 33;
+
+    private byte type;
+    private ByteBuffer data;
+
+    /**
+     * Erzeuge eine leere Nachricht des gegebenen Typs zum Versenden.
+     *
+     * @param type der Typ der Nachricht
+     */
+    public StripMessage(byte type) {
+        this.type = type;
+        data = ByteBuffer.allocate(64);
+    }
+
+    private StripMessage(byte type, ByteBuffer data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    /**
+     * @return der Typ der Nachricht
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * @return die Nutzdaten der Nachricht, zum Lesen oder weiteren Schreiben
+     */
+    public ByteBuffer getData() {
+        return data;
+    }
+
+    public StripMessage putInt(int value) {
+        ensure(4);
+        data.putInt(value);
+        return this;
+    }
+
+    public StripMessage putLong(long value) {
+        ensure(8);
+        data.putLong(value);
+        return this;
+    }
+
+    public StripMessage putByte(int value) {
+        ensure(1);
+        data.put((byte) value);
+        return this;
+    }
+
+    public StripMessage putShort(int value) {
+        ensure(2);
+        data.putShort((short) value);
+        return this;
+    }
+
+    /**
+     * Hänge Bytes an, z.B. die Belegung einer Zeile (ein Byte pro Spalte, siehe
+     * {@link SynchronousUpdate#EMPTY}) oder weitergeleitete Ansprüche.
+     *
+     * @param bytes die Bytes
+     */
+    public StripMessage putBytes(byte[] bytes) {
+        ensure(bytes.length);
+        data.put(bytes);
+        return this;
+    }
+
+    /**
+     * Lies eine mit putBytes angehängte Zeile.
+     *
+     * @param width die Breite der Zeile
+     * @return die Belegung der Zeile
+     */
+    public byte[] getBytes(int width) {
+        byte[] kinds = new byte[width];
+        data.get(kinds);
+        return kinds;
+    }
+
+    /**
+     * Versende diese Nachricht über den gegebenen Kanal.
+     *
+     * @param channel ein blockierender Kanal
+     */
+    public void send(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(5);
+        header.putInt(data.position() + 1).put(type).flip();
+        data.flip();
+        ByteBuffer[] buffers = { header, data };
+        while (header.hasRemaining() || data.hasRemaining()) {
+            channel.write(buffers);
+        }
+        data.clear();
+    }
+
+    /**
+     * Empfange die nächste Nachricht vom gegebenen Kanal.
+     *
+     * @param channel ein blockierender Kanal
+     * @return die empfangene Nachricht, bereit zum Lesen
+     */
+    public static StripMessage receive(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(5);
+        readFully(channel, header);
+        int length = header.getInt(0);
+        byte type = header.get(4);
+        ByteBuffer data = ByteBuffer.allocate(length - 1);
+        readFully(channel, data);
+        return new StripMessage(type, data);
+    }
+
+    /**
+     * Empfange die nächste Nachricht und prüfe ihren Typ.
+     */
+    public static StripMessage expect(SocketChannel channel, byte type) throws IOException {
+        StripMessage message = receive(channel);
+        if (message.getType() != type) {
+            throw new IOException("Unexpected message " + message.getType() + ", expected " + type);
+        }
+        return message;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed");
+            }
+        }
+        buffer.flip();
+    }
+
+    private void ensure(int bytes) {
+        if (data.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(data.capacity() * 2, data.position() + bytes));
+            data.flip();
+            grown.put(data);
+            data = grown;
+        }
+    }
+}
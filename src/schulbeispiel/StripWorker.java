@@ -0,0 +1,190 @@
+package schulbeispiel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Ein Prozess einer verteilten Simulation. Er simuliert einen Streifen aus
+ * aufeinanderfolgenden Zeilen des Feldes, in dem die Tiere gleichzeitig
+ * agieren ({@link SynchronousUpdate}). Über den Koordinator tauscht er in
+ * jedem Schritt mit den Nachbarstreifen aus:
+ *
+ * <ol>
+ * <li>nach dem Altern die Belegung der Randzeilen. Die Randzeilen der Nachbarn
+ * liegen als Halo-Zeilen in einem eigenen Puffer, der nur gelesen wird, und
+ * nicht im Feld;</li>
+ * <li>die Ansprüche der Jagd auf die beiden Zeilen an jeder Streifengrenze, so
+ * dass Füchse auch Hasen jenseits der Grenze fressen;</li>
+ * <li>die Ansprüche für Geburten und Bewegungen auf dieselben Zeilen. Ein Tier
+ * wandert nur aus, wenn sein Anspruch gewonnen hat, und der Nachbar legt es
+ * dann an; ein verlorener Anspruch lässt das Tier stehen.</li>
+ * </ol>
+ *
+ * Beide Streifen an einer Grenze entscheiden die Ansprüche mit denselben Daten
+ * und kommen zum selben Ergebnis. Zum Schluss meldet der Streifen seine
+ * Zählerstände.
+ */
+public class StripWorker implements SynchronousUpdate.Boundary {
+    private final SocketChannel channel;
+    private int width;
+    // Die Tiefe des Gesamtfeldes
+    private int depth;
+    // Die erste und die erste nicht mehr eigene Zeile des Streifens im Gesamtfeld
+    private int start, end;
+    private Simulator simulator;
+
+    /**
+     * Erzeuge einen Streifen-Prozess, der über den gegebenen Kanal mit dem
+     * Koordinator verbunden ist.
+     *
+     * @param channel ein blockierender, verbundener Kanal
+     */
+    public StripWorker(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Melde dich beim Koordinator und simuliere, bis er die Simulation beendet.
+     */
+    public void run() throws IOException {
+        new StripMessage(StripMessage.HELLO).send(channel);
+        configure(StripMessage.expect(channel, StripMessage.CONFIG).getData());
+        sendCount();
+        try {
+            while (true) {
+                StripMessage message = StripMessage.receive(channel);
+                if (message.getType() == StripMessage.STOP) {
+                    break;
+                } else if (message.getType() == StripMessage.STEP) {
+                    simulator.simulateOneStep();
+                    sendCount();
+                } else {
+                    throw new IOException("Unexpected message " + message.getType());
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Lege das Feld des Streifens an und bevölkere es wie die entsprechenden
+     * Zeilen des Gesamtfeldes. Alle Streifen benutzen denselben SEED-Wert.
+     */
+    private void configure(ByteBuffer config) {
+        config.getInt(); // Index des Streifens
+        config.getInt(); // Anzahl der Streifen
+        depth = config.getInt();
+        width = config.getInt();
+        start = config.getInt();
+        end = config.getInt();
+        long seed = config.getLong();
+
+        Randomnumbergenerator.setSeed(seed);
+        simulator = new Simulator(new Field(end - start, width), start, depth, this);
+    }
+
+    public void exchangeHalo(SynchronousUpdate update) {
+        StripMessage message = new StripMessage(StripMessage.HALO);
+        message.putBytes(update.rowKinds(0));
+        message.putBytes(update.rowKinds(end - start - 1));
+        try {
+            message.send(channel);
+            StripMessage in = StripMessage.expect(channel, StripMessage.HALO_IN);
+            byte[] above = start > 0 ? in.getBytes(width) : null;
+            byte[] below = end < depth ? in.getBytes(width) : null;
+            update.setHalo(above, below);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Schicke die Ansprüche auf die Zeilen an der oberen Grenze (die Halo-Zeile
+     * und die erste eigene Zeile) und an der unteren Grenze an den Koordinator
+     * und hänge die Ansprüche der Nachbarn an.
+     */
+    public void exchangeClaims(SynchronousUpdate.Claims claims, boolean prey) {
+        StripMessage message = new StripMessage(prey ? StripMessage.PREY : StripMessage.CLAIMS);
+        putClaims(message, claims, start - 1, start > 0);
+        putClaims(message, claims, end - 1, end < depth);
+        try {
+            message.send(channel);
+            ByteBuffer in = StripMessage.expect(channel, prey ? StripMessage.PREY_IN : StripMessage.CLAIMS_IN)
+                    .getData();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                long cell = in.getLong();
+                long priority = in.getLong();
+                long id = in.getLong();
+                byte kind = in.get();
+                int alter = in.getInt();
+                int futterLevel = in.getInt();
+                claims.add(cell, priority, kind, id, alter, futterLevel, null);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Hänge die eigenen Ansprüche auf die beiden Zeilen ab der gegebenen Zeile
+     * an die Nachricht an, mit ihrer Anzahl vorweg.
+     *
+     * @param row       die obere der beiden Zeilen im Gesamtfeld
+     * @param neighbour gibt es auf dieser Seite einen Nachbarn?
+     */
+    private void putClaims(StripMessage message, SynchronousUpdate.Claims claims, int row, boolean neighbour) {
+        long first = (long) row * width;
+        long last = first + 2L * width;
+        int count = 0;
+        if (neighbour) {
+            for (int c = 0; c < claims.count; c++) {
+                if (claims.organism[c] != null && claims.cell[c] >= first && claims.cell[c] < last) {
+                    count++;
+                }
+            }
+        }
+        message.putInt(count);
+        for (int c = 0; c < claims.count && count > 0; c++) {
+            if (claims.organism[c] != null && claims.cell[c] >= first && claims.cell[c] < last) {
+                message.putLong(claims.cell[c]).putLong(claims.priority[c]).putLong(claims.id[c]);
+                message.putByte(claims.kind[c]).putInt(claims.alter[c]).putInt(claims.futterLevel[c]);
+            }
+        }
+    }
+
+    /**
+     * Schicke die Anzahl der lebenden Hasen und Füchse an den Koordinator.
+     */
+    private void sendCount() throws IOException {
+        int hasen = 0;
+        int fuechse = 0;
+        for (Organism organism : simulator.getOrganisms()) {
+            if (organism.isAlive()) {
+                if (organism instanceof Hase) {
+                    hasen++;
+                } else if (organism instanceof Fuchs) {
+                    fuechse++;
+                }
+            }
+        }
+        new StripMessage(StripMessage.COUNT).putInt(hasen).putInt(fuechse).send(channel);
+    }
+
+    /**
+     * Starte einen Streifen-Prozess.
+     *
+     * @param args Rechnername und Port des Koordinators
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : StripCoordinator.DEFAULT_PORT;
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            new StripWorker(channel).run();
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package schulbeispiel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ein Simulationsschritt, in dem alle Tiere gleichzeitig agieren. Anders als
+ * beim Agieren in der Reihenfolge der Tierliste entscheidet jedes Tier nur
+ * nach der Belegung zu Beginn einer Phase und nach seinem eigenen
+ * Zufallsstrom ({@link CounterRandom}, abhängig von Startwert, Schritt und
+ * Kennung des Tieres). Ein Schritt hat drei Phasen:
+ *
+ * <ol>
+ * <li>Altern: jedes Tier wird älter (Füchse auch hungriger) und stirbt
+ * eventuell.</li>
+ * <li>Jagd: jeder Fuchs beansprucht den ersten Hasen unter seinen gemischten
+ * Nachbarpositionen.</li>
+ * <li>Geburt und Bewegung: jedes nicht gefressene Tier beansprucht freie
+ * Nachbarpositionen für seine Jungen und eine weitere für seine Bewegung.
+ * Findet es keine, stirbt es an Überbevölkerung. Ein Fuchs, der einen Hasen
+ * bekommen hat, zieht stattdessen auf dessen Position.</li>
+ * </ol>
+ *
+ * Frei ist eine Position, die nach dem Altern leer ist. Beanspruchen mehrere
+ * Tiere dieselbe Position, gewinnt der Anspruch mit der höchsten Priorität,
+ * einer Zahl aus dem Zufallsstrom des Anspruchstellers. Ein Tier, dessen
+ * Bewegung verliert, bleibt stehen; ein verlorener Anspruch für ein Junges
+ * verfällt. Erst wenn alle Ansprüche entschieden sind, wird das Feld geändert.
+ *
+ * Das Ergebnis hängt deshalb nicht von der Reihenfolge der Tierliste ab, und
+ * das Feld kann in Streifen zerlegt werden ({@link StripWorker}): ein
+ * Streifen braucht nur die Belegung der angrenzenden Zeilen der Nachbarn nach
+ * dem Altern (die Halo-Zeilen, die nur gelesen werden) und die Ansprüche der
+ * Nachbarn auf die beiden Zeilen an jeder Streifengrenze. Beide Seiten
+ * entscheiden diese Ansprüche mit denselben Daten und kommen so zum selben
+ * Ergebnis. Tiere werden über ihre Kennung im Gesamtfeld identifiziert: Tiere
+ * des Startzustands über ihre Position, neugeborene über Schritt und Position
+ * ihrer Geburt.
+ */
+class SynchronousUpdate {
+    // Die Belegung einer Position in den Halo-Zeilen und die Tierart eines
+    // Anspruchs, auch im Protokoll der Streifen. Die Kennungen aus Species sind
+    // nur innerhalb eines Prozesses gültig und werden deshalb nicht übertragen.
+    static final byte EMPTY = 0;
+    static final byte HASE = 1;
+    static final byte FUCHS = 2;
+    // Eine Position, die mit etwas anderem als einem Hasen oder Fuchs belegt ist
+    static final byte OTHER = 3;
+    // Markiert in der Tierart eines Anspruchs ein neugeborenes Tier
+    static final byte BIRTH = 4;
+
+    // Die Zufallsströme eines Tieres in einem Schritt
+    private static final int NEIGHBORS = 0;
+    private static final int PREY = 1;
+    private static final int OFFSPRING = 2;
+    private static final int START = 3;
+
+    /**
+     * Der Austausch mit den Nachbarstreifen. Ohne Nachbarn (in einem einzelnen
+     * Prozess) gibt es keinen Austausch.
+     */
+    interface Boundary {
+        /**
+         * Schicke die Belegung der eigenen Randzeilen nach dem Altern an die
+         * Nachbarn und übernimm deren Randzeilen mit
+         * {@link SynchronousUpdate#setHalo}.
+         */
+        void exchangeHalo(SynchronousUpdate update);
+
+        /**
+         * Schicke die eigenen Ansprüche auf die Zeilen an den Streifengrenzen
+         * an die Nachbarn und hänge deren Ansprüche an.
+         *
+         * @param claims die Ansprüche dieser Phase
+         * @param prey   true für die Ansprüche der Jagd
+         */
+        void exchangeClaims(Claims claims, boolean prey);
+    }
+
+    /**
+     * Die Ansprüche einer Phase auf Positionen im Gesamtfeld. Ein Anspruch
+     * eines Nachbarstreifens hat kein lokales Tier.
+     */
+    static final class Claims {
+        int count;
+        // Die beanspruchte Position im Gesamtfeld (Zeile * Breite + Spalte)
+        long[] cell = new long[64];
+        long[] priority = new long[64];
+        // Die Kennung des Anspruchstellers
+        long[] id = new long[64];
+        // HASE oder FUCHS, für Junge zusätzlich BIRTH
+        byte[] kind = new byte[64];
+        // Alter und Futter-Level des Anspruchstellers für seine Bewegung
+        int[] alter = new int[64];
+        int[] futterLevel = new int[64];
+        // Das lokale Tier oder null
+        Organism[] organism = new Organism[64];
+        // Hat der Anspruch gewonnen?
+        boolean[] won = new boolean[64];
+
+        int add(long cell, long priority, byte kind, long id, int alter, int futterLevel, Organism organism) {
+            if (count == this.cell.length) {
+                int size = count * 2;
+                this.cell = Arrays.copyOf(this.cell, size);
+                this.priority = Arrays.copyOf(this.priority, size);
+                this.id = Arrays.copyOf(this.id, size);
+                this.kind = Arrays.copyOf(this.kind, size);
+                this.alter = Arrays.copyOf(this.alter, size);
+                this.futterLevel = Arrays.copyOf(this.futterLevel, size);
+                this.organism = Arrays.copyOf(this.organism, size);
+                this.won = Arrays.copyOf(this.won, size);
+            }
+            this.cell[count] = cell;
+            this.priority[count] = priority;
+            this.kind[count] = kind;
+            this.id[count] = id;
+            this.alter[count] = alter;
+            this.futterLevel[count] = futterLevel;
+            this.organism[count] = organism;
+            this.won[count] = false;
+            return count++;
+        }
+
+        void clear() {
+            Arrays.fill(organism, 0, count, null);
+            count = 0;
+        }
+    }
+
+    private final Field field;
+    private final int width;
+    // Die Anzahl der eigenen Zeilen, die erste davon im Gesamtfeld und die
+    // Tiefe des Gesamtfeldes
+    private final int rows;
+    private final int firstRow;
+    private final int totalDepth;
+    private final long seed;
+    private final SpeciesParameters parameters;
+    private final Boundary boundary;
+    // Die Belegung der Zeilen über und unter dem Feld, oder null am Rand des
+    // Gesamtfeldes
+    private final byte[] haloAbove;
+    private final byte[] haloBelow;
+
+    private final CounterRandom random = new CounterRandom();
+    private final Claims prey = new Claims();
+    private final Claims claims = new Claims();
+    // Die gemischten Nachbarpositionen des aktuellen Tieres
+    private final int[] neighborRow = new int[8];
+    private final int[] neighborColumn = new int[8];
+    private int neighbors;
+    // Pro Index der Tierliste der Jagd-Anspruch des Fuchses oder -1
+    private int[] preyOf = new int[64];
+    // Die Indizes der Tiere, die an Überbevölkerung sterben
+    private int[] crowded = new int[64];
+    private int crowdedCount;
+    // Die gefressenen Hasen dieses Feldes
+    private final Set<Organism> eaten = Collections.newSetFromMap(new IdentityHashMap<Organism, Boolean>());
+    // Die nach Position sortierten Ansprüche
+    private long[] keys = new long[64];
+
+    /**
+     * @param field      das Feld mit den eigenen Zeilen
+     * @param firstRow   die Zeile im Gesamtfeld, die die erste Zeile des Feldes
+     *                   ist
+     * @param totalDepth die Tiefe des Gesamtfeldes
+     * @param seed       der Startwert der Zufallsströme
+     * @param parameters die Eigenschaften der Tiere
+     * @param boundary   der Austausch mit den Nachbarstreifen, oder null
+     */
+    SynchronousUpdate(Field field, int firstRow, int totalDepth, long seed, SpeciesParameters parameters,
+            Boundary boundary) {
+        this.field = field;
+        this.width = field.getWidth();
+        this.rows = field.getDepth();
+        this.firstRow = firstRow;
+        this.totalDepth = totalDepth;
+        this.seed = seed;
+        this.parameters = parameters;
+        this.boundary = boundary;
+        haloAbove = firstRow > 0 ? new byte[width] : null;
+        haloBelow = firstRow + rows < totalDepth ? new byte[width] : null;
+    }
+
+    /**
+     * Gib einem Tier des Startzustands seine Kennung und ein zufälliges Alter,
+     * einem Fuchs auch einen zufälligen Futter-Level.
+     *
+     * @param organism das Tier, neu erzeugt ohne zufälliges Alter
+     * @param id       seine Position im Gesamtfeld (Zeile * Breite + Spalte)
+     */
+    void initialize(Organism organism, long id) {
+        organism.setId(id);
+        random.reset(seed, 0, id, START);
+        if (organism instanceof Fuchs) {
+            Fuchs fuchs = (Fuchs) organism;
+            fuchs.setAlter(random.nextInt(parameters.getFuchsMaxAlter()));
+            fuchs.setFutterLevel(random.nextInt(parameters.getHasenNaehrwert()));
+        } else if (organism instanceof Hase) {
+            ((Hase) organism).setAlter(random.nextInt(parameters.getHaseMaxAlter()));
+        }
+    }
+
+    /**
+     * Führe einen Schritt aus. Gestorbene und abgewanderte Tiere bleiben als
+     * nicht mehr lebendig in der Tierliste, eingewanderte Tiere werden an die
+     * Tierliste angehängt.
+     *
+     * @param organisms    die Tierliste
+     * @param newOrganisms eine Liste für die Neugeborenen
+     * @param step         die Nummer des Schritts
+     */
+    void step(List<Organism> organisms, List<Organism> newOrganisms, int step) {
+        int size = organisms.size();
+        for (int i = 0; i < size; i++) {
+            Organism organism = organisms.get(i);
+            if (!organism.isAlive()) {
+                continue;
+            }
+            if (organism instanceof Fuchs) {
+                ((Fuchs) organism).altern();
+            } else if (organism instanceof Hase) {
+                ((Hase) organism).altern();
+            } else {
+                throw new IllegalStateException("Unsupported organism: " + organism.getClass().getName());
+            }
+        }
+        if (boundary != null) {
+            boundary.exchangeHalo(this);
+        }
+        hunt(organisms, size, step);
+        breedAndMove(organisms, size, step);
+        apply(organisms, newOrganisms, step);
+    }
+
+    /**
+     * Die Jagd: jeder Fuchs beansprucht den ersten Hasen unter seinen
+     * Nachbarn.
+     */
+    private void hunt(List<Organism> organisms, int size, int step) {
+        prey.clear();
+        if (preyOf.length < size) {
+            preyOf = new int[Math.max(size, preyOf.length * 2)];
+        }
+        Arrays.fill(preyOf, 0, size, -1);
+        for (int i = 0; i < size; i++) {
+            Organism organism = organisms.get(i);
+            if (!organism.isAlive() || !(organism instanceof Fuchs)) {
+                continue;
+            }
+            Fuchs fuchs = (Fuchs) organism;
+            shuffleNeighbors(fuchs, step);
+            for (int n = 0; n < neighbors; n++) {
+                if (kindAt(neighborRow[n], neighborColumn[n]) == HASE) {
+                    random.reset(seed, step, fuchs.getId(), PREY);
+                    preyOf[i] = prey.add(cell(neighborRow[n], neighborColumn[n]), random.nextLong(), FUCHS,
+                            fuchs.getId(), fuchs.getAlter(), fuchs.getFutterLevel(), fuchs);
+                    break;
+                }
+            }
+        }
+        if (boundary != null) {
+            boundary.exchangeClaims(prey, true);
+        }
+        resolve(prey);
+
+        eaten.clear();
+        for (int c = 0; c < prey.count; c++) {
+            if (!prey.won[c]) {
+                continue;
+            }
+            int row = (int) (prey.cell[c] / width) - firstRow;
+            if (row >= 0 && row < rows) {
+                eaten.add((Organism) field.getObjectAt(row, (int) (prey.cell[c] % width)));
+            }
+            if (prey.organism[c] != null) {
+                ((Fuchs) prey.organism[c]).fressen();
+            }
+        }
+    }
+
+    /**
+     * Geburt und Bewegung: jedes nicht gefressene Tier beansprucht freie
+     * Nachbarpositionen.
+     */
+    private void breedAndMove(List<Organism> organisms, int size, int step) {
+        claims.clear();
+        crowdedCount = 0;
+        for (int i = 0; i < size; i++) {
+            Organism organism = organisms.get(i);
+            if (!organism.isAlive() || eaten.contains(organism)) {
+                continue;
+            }
+            boolean fuchs = organism instanceof Fuchs;
+            byte kind = fuchs ? FUCHS : HASE;
+            long id = organism.getId();
+            shuffleNeighbors(organism, step);
+            random.reset(seed, step, id, OFFSPRING);
+            int geburten = fuchs ? ((Fuchs) organism).traechtig(random) : ((Hase) organism).traechtig(random);
+            // Ein Fuchs, der einen Hasen bekommen hat, bewegt sich schon
+            boolean moved = preyOf[i] >= 0 && prey.won[preyOf[i]];
+            for (int n = 0; n < neighbors && (geburten > 0 || !moved); n++) {
+                if (kindAt(neighborRow[n], neighborColumn[n]) != EMPTY) {
+                    continue;
+                }
+                long cell = cell(neighborRow[n], neighborColumn[n]);
+                if (geburten > 0) {
+                    claims.add(cell, random.nextLong(), (byte) (kind | BIRTH), id, 0, 0, organism);
+                    geburten--;
+                } else if (fuchs) {
+                    Fuchs f = (Fuchs) organism;
+                    claims.add(cell, random.nextLong(), kind, id, f.getAlter(), f.getFutterLevel(), organism);
+                    moved = true;
+                } else {
+                    claims.add(cell, random.nextLong(), kind, id, ((Hase) organism).getAlter(), 0, organism);
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                // Überpopulation
+                if (crowdedCount == crowded.length) {
+                    crowded = Arrays.copyOf(crowded, crowdedCount * 2);
+                }
+                crowded[crowdedCount++] = i;
+            }
+        }
+        if (boundary != null) {
+            boundary.exchangeClaims(claims, false);
+        }
+        resolve(claims);
+    }
+
+    /**
+     * Ändere das Feld nach den gewonnenen Ansprüchen.
+     */
+    private void apply(List<Organism> organisms, List<Organism> newOrganisms, int step) {
+        for (Organism hase : eaten) {
+            hase.die();
+        }
+        eaten.clear();
+        for (int i = 0; i < crowdedCount; i++) {
+            organisms.get(crowded[i]).die();
+        }
+        for (int c = 0; c < prey.count; c++) {
+            if (prey.won[c]) {
+                move(prey, c, organisms);
+            }
+        }
+        long cells = (long) totalDepth * width;
+        for (int c = 0; c < claims.count; c++) {
+            if (!claims.won[c]) {
+                continue;
+            }
+            if ((claims.kind[c] & BIRTH) == 0) {
+                move(claims, c, organisms);
+            } else {
+                Organism jung = create(claims, c);
+                if (jung != null) {
+                    jung.setId(step * cells + claims.cell[c]);
+                    newOrganisms.add(jung);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bewege das Tier eines gewonnenen Anspruchs. Ein lokales Tier, das in
+     * einen Nachbarstreifen zieht, verlässt das Feld; ein Tier aus einem
+     * Nachbarstreifen wird hier neu angelegt.
+     */
+    private void move(Claims claims, int c, List<Organism> organisms) {
+        Organism organism = claims.organism[c];
+        if (organism == null) {
+            organism = create(claims, c);
+            if (organism != null) {
+                organism.setId(claims.id[c]);
+                if (organism instanceof Fuchs) {
+                    Fuchs fuchs = (Fuchs) organism;
+                    fuchs.setAlter(claims.alter[c]);
+                    // Ein Fuchs, der gejagt hat, ist satt
+                    if (claims != prey) {
+                        fuchs.setFutterLevel(claims.futterLevel[c]);
+                    }
+                } else {
+                    ((Hase) organism).setAlter(claims.alter[c]);
+                }
+                organisms.add(organism);
+            }
+            return;
+        }
+        Position position = localPosition(claims.cell[c]);
+        if (position != null) {
+            organism.setPosition(position);
+        } else {
+            organism.die();
+        }
+    }
+
+    /**
+     * Lege ein Tier auf der Position eines Anspruchs an, wenn sie zu diesem
+     * Feld gehört.
+     *
+     * @return das neue Tier (Alter 0, satt) oder null
+     */
+    private Organism create(Claims claims, int c) {
+        Position position = localPosition(claims.cell[c]);
+        if (position == null) {
+            return null;
+        }
+        if ((claims.kind[c] & ~BIRTH) == FUCHS) {
+            return Fuchs.create(false, field, position, parameters);
+        } else {
+            return Hase.create(false, field, position, parameters);
+        }
+    }
+
+    /**
+     * Entscheide die Ansprüche: pro Position gewinnt der Anspruch mit der
+     * höchsten Priorität, bei Gleichstand der mit der größeren Kennung.
+     */
+    private void resolve(Claims claims) {
+        int count = claims.count;
+        if (keys.length < count) {
+            keys = new long[Math.max(count, keys.length * 2)];
+        }
+        // Die Position relativ zur Zeile über dem Feld, damit auch die
+        // Halo-Zeilen einen nicht negativen Index haben
+        long offset = (long) (firstRow - 1) * width;
+        for (int c = 0; c < count; c++) {
+            keys[c] = (claims.cell[c] - offset) << 31 | c;
+        }
+        Arrays.sort(keys, 0, count);
+        int best = -1;
+        for (int k = 0; k < count; k++) {
+            int c = (int) (keys[k] & Integer.MAX_VALUE);
+            if (best >= 0 && claims.cell[best] != claims.cell[c]) {
+                claims.won[best] = true;
+                best = -1;
+            }
+            if (best < 0 || claims.priority[c] > claims.priority[best]
+                    || claims.priority[c] == claims.priority[best] && claims.id[c] > claims.id[best]) {
+                best = c;
+            }
+        }
+        if (best >= 0) {
+            claims.won[best] = true;
+        }
+    }
+
+    /**
+     * Bestimme die Nachbarpositionen eines Tieres im Gesamtfeld und mische sie
+     * mit seinem Zufallsstrom.
+     */
+    private void shuffleNeighbors(Organism organism, int step) {
+        Position position = organism.getPosition();
+        int row = firstRow + position.getRow();
+        int column = position.getColumn();
+        neighbors = 0;
+        for (int zDiff = -1; zDiff <= 1; zDiff++) {
+            int nextRow = row + zDiff;
+            if (nextRow < 0 || nextRow >= totalDepth) {
+                continue;
+            }
+            for (int sDiff = -1; sDiff <= 1; sDiff++) {
+                int nextColumn = column + sDiff;
+                if (nextColumn >= 0 && nextColumn < width && (zDiff != 0 || sDiff != 0)) {
+                    neighborRow[neighbors] = nextRow;
+                    neighborColumn[neighbors] = nextColumn;
+                    neighbors++;
+                }
+            }
+        }
+        random.reset(seed, step, organism.getId(), NEIGHBORS);
+        for (int i = neighbors - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int r = neighborRow[i];
+            int c = neighborColumn[i];
+            neighborRow[i] = neighborRow[j];
+            neighborColumn[i] = neighborColumn[j];
+            neighborRow[j] = r;
+            neighborColumn[j] = c;
+        }
+    }
+
+    /**
+     * @param row    die Zeile im Gesamtfeld, höchstens eine Zeile über oder
+     *               unter dem Feld
+     * @param column die Spalte
+     * @return die Belegung der Position
+     */
+    private byte kindAt(int row, int column) {
+        int local = row - firstRow;
+        if (local < 0) {
+            return haloAbove[column];
+        } else if (local >= rows) {
+            return haloBelow[column];
+        }
+        return kindOf(field.getObjectAt(local, column));
+    }
+
+    private static byte kindOf(Object object) {
+        if (object == null) {
+            return EMPTY;
+        } else if (object instanceof Fuchs) {
+            return FUCHS;
+        } else if (object instanceof Hase) {
+            return HASE;
+        }
+        return OTHER;
+    }
+
+    /**
+     * @return die Position im Feld oder null, wenn die Position im Gesamtfeld
+     *         nicht zu diesem Feld gehört
+     */
+    private Position localPosition(long cell) {
+        int row = (int) (cell / width) - firstRow;
+        if (row < 0 || row >= rows) {
+            return null;
+        }
+        return field.positionAt(row, (int) (cell % width));
+    }
+
+    private long cell(int row, int column) {
+        return (long) row * width + column;
+    }
+
+    /**
+     * Liefere die Belegung einer eigenen Zeile für die Halo-Zeile eines
+     * Nachbarn.
+     *
+     * @param row die Zeile im Feld
+     * @return die Belegung pro Spalte
+     */
+    byte[] rowKinds(int row) {
+        byte[] kinds = new byte[width];
+        for (int column = 0; column < width; column++) {
+            kinds[column] = kindOf(field.getObjectAt(row, column));
+        }
+        return kinds;
+    }
+
+    /**
+     * Übernimm die Belegung der Halo-Zeilen. Sie wird nur gelesen und gehört
+     * nicht zum Feld.
+     *
+     * @param above die Zeile über dem Feld, oder null
+     * @param below die Zeile unter dem Feld, oder null
+     */
+    void setHalo(byte[] above, byte[] below) {
+        if (above != null) {
+            System.arraycopy(above, 0, haloAbove, 0, width);
+        }
+        if (below != null) {
+            System.arraycopy(below, 0, haloBelow, 0, width);
+        }
+    }
+}